@@ -0,0 +1,41 @@
+package com.daniel_araujo.wavio.benchmarks;
+
+import java.io.InputStream;
+
+/**
+ * Input stream over a byte array that never returns more than a fixed number of bytes per read,
+ * like a socket that receives data in small packets.
+ */
+class ChunkedInputStream extends InputStream {
+    private final byte[] data;
+
+    private final int chunkSize;
+
+    private int position;
+
+    ChunkedInputStream(byte[] data, int chunkSize) {
+        this.data = data;
+        this.chunkSize = chunkSize;
+    }
+
+    @Override
+    public int read() {
+        if (position >= data.length) {
+            return -1;
+        }
+
+        return data[position++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] target, int offset, int length) {
+        if (position >= data.length) {
+            return -1;
+        }
+
+        int count = Math.min(Math.min(length, chunkSize), data.length - position);
+        System.arraycopy(data, position, target, offset, count);
+        position += count;
+        return count;
+    }
+}
@@ -0,0 +1,70 @@
+package com.daniel_araujo.wavio.benchmarks;
+
+import java.util.Random;
+
+/**
+ * Generates wav files in memory for benchmarks.
+ */
+abstract class WavFiles {
+    /**
+     * Size of the canonical header that precedes sample data.
+     */
+    static final int HEADER_SIZE = 44;
+
+    /**
+     * Creates a PCM wav file with a canonical 44 byte header followed by random sample data.
+     *
+     * @param channels
+     * @param bitsPerSample
+     * @param dataLength    Will be rounded down to a whole number of frames.
+     * @return
+     */
+    static byte[] create(int channels, int bitsPerSample, int dataLength) {
+        int sampleRate = 48000;
+        int blockAlign = channels * (bitsPerSample / 8);
+        int byteRate = sampleRate * blockAlign;
+
+        dataLength -= dataLength % blockAlign;
+
+        byte[] file = new byte[HEADER_SIZE + dataLength];
+
+        putAscii(file, 0, "RIFF");
+        putInt(file, 4, dataLength + 36);
+        putAscii(file, 8, "WAVE");
+        putAscii(file, 12, "fmt ");
+        putInt(file, 16, 16);
+        putShort(file, 20, 1);
+        putShort(file, 22, channels);
+        putInt(file, 24, sampleRate);
+        putInt(file, 28, byteRate);
+        putShort(file, 32, blockAlign);
+        putShort(file, 34, bitsPerSample);
+        putAscii(file, 36, "data");
+        putInt(file, 40, dataLength);
+
+        // Contents do not matter to the reader but make them look like noise anyway.
+        byte[] samples = new byte[dataLength];
+        new Random(42).nextBytes(samples);
+        System.arraycopy(samples, 0, file, HEADER_SIZE, dataLength);
+
+        return file;
+    }
+
+    private static void putAscii(byte[] target, int index, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            target[index + i] = (byte) value.charAt(i);
+        }
+    }
+
+    private static void putShort(byte[] target, int index, int value) {
+        target[index] = (byte) (value & 0xff);
+        target[index + 1] = (byte) ((value >> 8) & 0xff);
+    }
+
+    private static void putInt(byte[] target, int index, int value) {
+        target[index] = (byte) (value & 0xff);
+        target[index + 1] = (byte) ((value >> 8) & 0xff);
+        target[index + 2] = (byte) ((value >> 16) & 0xff);
+        target[index + 3] = (byte) ((value >> 24) & 0xff);
+    }
+}
@@ -0,0 +1,219 @@
+package com.daniel_araujo.wavio.benchmarks;
+
+import com.daniel_araujo.wavio.WavReader;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures every read path of WavReader.
+ * <p>
+ * Each operation parses an entire in-memory file that is handed to the reader in pieces of
+ * {@code chunkSize} bytes, the way data arrives from a network socket. The {@code megabytes} and
+ * {@code frames} counters report sample throughput in MB/s and frames/s. Run with {@code -prof gc}
+ * to see the allocation rate.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WavReaderBenchmark {
+    /**
+     * How many bytes of samples each file contains.
+     */
+    private static final int DATA_LENGTH = 2 * 1024 * 1024;
+
+    @Param({"8", "16", "24", "32"})
+    public int bitsPerSample;
+
+    @Param({"1", "2", "8", "16", "32"})
+    public int channels;
+
+    @Param({"1", "64", "1024", "65536", "1048576"})
+    public int chunkSize;
+
+    @Param({"interleaved", "noninterleaved"})
+    public String listener;
+
+    private byte[] file;
+
+    private int frameSize;
+
+    /**
+     * The file split into arrays of {@code chunkSize} bytes for read(byte[]), like the buffers a socket
+     * would fill. They are made in advance so that copying them is not measured. The last one may be shorter.
+     */
+    private byte[][] pieces;
+
+    private SinkListener sink;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        file = WavFiles.create(channels, bitsPerSample, DATA_LENGTH);
+        frameSize = channels * (bitsPerSample / 8);
+        pieces = new byte[(file.length + chunkSize - 1) / chunkSize][];
+
+        for (int i = 0; i < pieces.length; i++) {
+            int index = i * chunkSize;
+            pieces[i] = Arrays.copyOfRange(file, index, Math.min(index + chunkSize, file.length));
+        }
+
+        sink = new SinkListener();
+    }
+
+    @Benchmark
+    public long readByteArray(Counters counters) {
+        WavReader reader = createReader();
+
+        for (int i = 0; i < pieces.length; i++) {
+            reader.read(pieces[i]);
+        }
+
+        return count(counters);
+    }
+
+    @Benchmark
+    public long readByteArrayRange(Counters counters) {
+        WavReader reader = createReader();
+
+        for (int index = 0; index < file.length; index += chunkSize) {
+            reader.read(file, index, Math.min(chunkSize, file.length - index));
+        }
+
+        return count(counters);
+    }
+
+    @Benchmark
+    public long readInputStream(Counters counters) {
+        WavReader reader = createReader();
+
+        reader.read(new ChunkedInputStream(file, chunkSize));
+
+        return count(counters);
+    }
+
+    @Benchmark
+    public long readChannel(Counters counters) {
+        WavReader reader = createReader();
+
+        reader.setReadBufferSize(chunkSize);
+        reader.read(Channels.newChannel(new ChunkedInputStream(file, chunkSize)));
+
+        return count(counters);
+    }
+
+    @Benchmark
+    public long readByteBuffer(Counters counters) {
+        WavReader reader = createReader();
+
+        ByteBuffer buffer = ByteBuffer.wrap(file);
+
+        for (int index = 0; index < file.length; index += chunkSize) {
+            buffer.limit(Math.min(index + chunkSize, file.length));
+            reader.read(buffer);
+        }
+
+        return count(counters);
+    }
+
+    private WavReader createReader() {
+        sink.bytes = 0;
+        sink.checksum = 0;
+
+        WavReader reader = new WavReader();
+
+        if (listener.equals("interleaved")) {
+            reader.setOnInterleavedSamplesListener(sink);
+        } else {
+            reader.setOnNoninterleavedSamplesListener(sink);
+        }
+
+        return reader;
+    }
+
+    /**
+     * @param counters
+     * @return The checksum of the samples. JMH consumes it so that reading them cannot be optimized away.
+     */
+    private long count(Counters counters) {
+        counters.megabytes += sink.bytes / (1024.0 * 1024.0);
+        counters.frames += sink.bytes / frameSize;
+        return sink.checksum;
+    }
+
+    /**
+     * Secondary results. JMH reports them per second.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Counters {
+        public double megabytes;
+
+        public long frames;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            megabytes = 0;
+            frames = 0;
+        }
+    }
+
+    /**
+     * Reads every byte of every buffer it receives into a checksum, the way a real listener would look at
+     * the samples. Only counting them would let the JIT skip copying buffers that nobody reads.
+     */
+    private static class SinkListener implements WavReader.OnInterleavedSamplesListener,
+            WavReader.OnNoninterleavedSamplesListener {
+        long bytes;
+
+        long checksum;
+
+        @Override
+        public void onInterleavedSamples(ByteBuffer samples) {
+            consume(samples);
+        }
+
+        @Override
+        public void onNoninterleavedSamples(ByteBuffer[] channels) {
+            for (int i = 0; i < channels.length; i++) {
+                consume(channels[i]);
+            }
+        }
+
+        private void consume(ByteBuffer samples) {
+            int index = samples.position();
+            int limit = samples.limit();
+            long sum = checksum;
+
+            bytes += limit - index;
+
+            // 8 bytes at a time so that the sink costs little next to the reader.
+            for (; index + 8 <= limit; index += 8) {
+                sum = sum * 31 + samples.getLong(index);
+            }
+
+            for (; index < limit; index++) {
+                sum = sum * 31 + samples.get(index);
+            }
+
+            checksum = sum;
+        }
+    }
+}
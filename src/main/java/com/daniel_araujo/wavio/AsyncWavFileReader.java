@@ -0,0 +1,353 @@
+package com.daniel_araujo.wavio;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Feeds a file to a WavReader without blocking the calling thread.
+ * <p>
+ * Several reads are kept in flight at once so that parsing overlaps with I/O. Their results are passed to
+ * the reader in file order, one at a time, on whichever thread completed the read. Listeners of the reader
+ * are therefore called on the threads of the channel and must not block for long. No lock is held while
+ * they run, so they may close the file.
+ */
+public class AsyncWavFileReader implements Closeable {
+    /**
+     * How many bytes each read asks for by default.
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * How many reads are in flight at once by default.
+     */
+    public static final int DEFAULT_READS_IN_FLIGHT = 4;
+
+    private final AsynchronousFileChannel channel;
+
+    private int bufferSize = DEFAULT_BUFFER_SIZE;
+
+    private int readsInFlight = DEFAULT_READS_IN_FLIGHT;
+
+    /**
+     * @param channel Will be read from the start.
+     */
+    public AsyncWavFileReader(AsynchronousFileChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * Opens a file for reading.
+     *
+     * @param path
+     * @return
+     */
+    public static AsyncWavFileReader open(Path path) {
+        try {
+            return new AsyncWavFileReader(AsynchronousFileChannel.open(path, StandardOpenOption.READ));
+        } catch (java.io.IOException ex) {
+            // We wrap it in our own exception object.
+            throw new WavReader.IOException(ex);
+        }
+    }
+
+    /**
+     * Sets how many bytes each read asks for.
+     *
+     * @param size Must be positive.
+     */
+    public void setBufferSize(int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Buffer size must be positive.");
+        }
+
+        bufferSize = size;
+    }
+
+    /**
+     * Sets how many reads are in flight at once. Each of them has its own buffer.
+     *
+     * @param count Must be positive.
+     */
+    public void setReadsInFlight(int count) {
+        if (count <= 0) {
+            throw new IllegalArgumentException("Reads in flight must be positive.");
+        }
+
+        readsInFlight = count;
+    }
+
+    /**
+     * Starts reading the whole file and returns immediately.
+     * <p>
+     * The handler is called exactly once: with the number of bytes that were read when the end of the file
+     * is reached, or with the first exception thrown by the channel or by the reader. Reading stops after
+     * a failure.
+     *
+     * @param reader     Receives the contents of the file.
+     * @param attachment Passed to the handler.
+     * @param handler
+     * @param <A>
+     */
+    public <A> void read(WavReader reader, A attachment, CompletionHandler<Long, ? super A> handler) {
+        long size;
+
+        try {
+            size = channel.size();
+        } catch (java.io.IOException ex) {
+            handler.failed(new WavReader.IOException(ex), attachment);
+            return;
+        }
+
+        new Operation<A>(reader, size, attachment, handler).start();
+    }
+
+    /**
+     * Closes the channel. Reads that are in flight will fail.
+     */
+    @Override
+    public void close() {
+        try {
+            channel.close();
+        } catch (java.io.IOException ex) {
+            // We wrap it in our own exception object.
+            throw new WavReader.IOException(ex);
+        }
+    }
+
+    /**
+     * A single pass over the file.
+     * <p>
+     * Buffers are used in turns. Buffer i holds the ith, (i + n)th, (i + 2n)th... block of the file, where n
+     * is the number of buffers, so handing them to the reader in turns keeps file order.
+     */
+    private class Operation<A> implements CompletionHandler<Integer, Integer> {
+        private final WavReader reader;
+
+        private final long size;
+
+        private final A attachment;
+
+        private final CompletionHandler<Long, ? super A> handler;
+
+        private final ByteBuffer[] buffers;
+
+        /**
+         * Position in the file of the block that each buffer holds.
+         */
+        private final long[] offsets;
+
+        /**
+         * Whether each buffer holds a whole block that has not been passed to the reader yet.
+         */
+        private final boolean[] done;
+
+        /**
+         * Position in the file of the next block that will be read.
+         */
+        private long nextOffset;
+
+        /**
+         * Buffer that will be passed to the reader next.
+         */
+        private int next;
+
+        /**
+         * How many buffers are waiting for a read to complete or to be passed to the reader.
+         */
+        private int busy;
+
+        /**
+         * How many bytes were passed to the reader.
+         */
+        private long total;
+
+        /**
+         * Set while a thread owns delivery. Only the owner passes buffers to the reader. Reads that complete
+         * in the meantime, on the same or on other threads, only mark their buffer as done and leave it to
+         * the owner.
+         */
+        private boolean delivering;
+
+        /**
+         * Set once the handler has been called.
+         */
+        private boolean finished;
+
+        Operation(WavReader reader, long size, A attachment, CompletionHandler<Long, ? super A> handler) {
+            this.reader = reader;
+            this.size = size;
+            this.attachment = attachment;
+            this.handler = handler;
+
+            int count = (int) Math.max(1, Math.min(readsInFlight, (size + bufferSize - 1) / bufferSize));
+
+            buffers = new ByteBuffer[count];
+            offsets = new long[count];
+            done = new boolean[count];
+
+            for (int i = 0; i < count; i++) {
+                buffers[i] = ByteBuffer.allocateDirect(bufferSize);
+            }
+        }
+
+        void start() {
+            synchronized (this) {
+                // Reads that complete right away must wait for all of them to be issued.
+                delivering = true;
+
+                try {
+                    for (int i = 0; i < buffers.length && nextOffset < size; i++) {
+                        prepare(i);
+                        issue(i);
+                    }
+                } finally {
+                    delivering = false;
+                }
+            }
+
+            deliver();
+        }
+
+        @Override
+        public void completed(Integer result, Integer index) {
+            ByteBuffer buffer = buffers[index];
+
+            if (result != -1 && buffer.hasRemaining()) {
+                // Short read. Ask for the rest of the block.
+                issue(index);
+                return;
+            }
+
+            synchronized (this) {
+                done[index] = true;
+            }
+
+            deliver();
+        }
+
+        @Override
+        public void failed(Throwable exc, Integer index) {
+            if (exc instanceof java.io.IOException) {
+                // We wrap it in our own exception object.
+                exc = new WavReader.IOException((java.io.IOException) exc);
+            }
+
+            finish(exc);
+        }
+
+        /**
+         * Passes blocks to the reader in file order for as long as they are available and reads the next
+         * blocks into the buffers that become free. Calls the handler once all blocks have been passed.
+         * <p>
+         * The lock is only held to take ownership and to pick the next block. The reader is called without
+         * it so that listeners do not hold up the threads that complete reads.
+         */
+        private void deliver() {
+            synchronized (this) {
+                if (delivering || finished) {
+                    return;
+                }
+
+                delivering = true;
+            }
+
+            while (true) {
+                int index;
+
+                synchronized (this) {
+                    if (finished || !done[next]) {
+                        // Checked under the lock so that a read that completes now is seen by its own thread.
+                        delivering = false;
+
+                        if (finished || busy != 0) {
+                            return;
+                        }
+
+                        break;
+                    }
+
+                    index = next;
+                    done[index] = false;
+                    busy--;
+                    next = (next + 1) % buffers.length;
+                }
+
+                ByteBuffer block = buffers[index];
+                block.flip();
+                total += block.remaining();
+
+                try {
+                    reader.read(block);
+                } catch (RuntimeException ex) {
+                    synchronized (this) {
+                        delivering = false;
+                    }
+
+                    finish(ex);
+                    return;
+                }
+
+                boolean more;
+
+                synchronized (this) {
+                    more = nextOffset < size && !finished;
+
+                    if (more) {
+                        prepare(index);
+                    }
+                }
+
+                if (more) {
+                    issue(index);
+                }
+            }
+
+            finish(null);
+        }
+
+        /**
+         * Assigns the next block of the file to a buffer.
+         *
+         * @param index
+         */
+        private void prepare(int index) {
+            ByteBuffer buffer = buffers[index];
+            buffer.clear();
+            buffer.limit((int) Math.min(bufferSize, size - nextOffset));
+
+            offsets[index] = nextOffset;
+            nextOffset += buffer.limit();
+            busy++;
+        }
+
+        private void issue(int index) {
+            ByteBuffer buffer = buffers[index];
+
+            try {
+                channel.read(buffer, offsets[index] + buffer.position(), index, this);
+            } catch (RuntimeException ex) {
+                finish(ex);
+            }
+        }
+
+        private void finish(Throwable failure) {
+            synchronized (this) {
+                if (finished) {
+                    return;
+                }
+
+                finished = true;
+            }
+
+            if (failure != null) {
+                handler.failed(failure, attachment);
+            } else {
+                handler.completed(total, attachment);
+            }
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package com.daniel_araujo.wavio;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Converts interleaved samples to another sample size or between integers and floats as they are read.
+ * <p>
+ * Register it as the interleaved samples listener of a reader. It passes the converted samples on to
+ * another interleaved samples listener in a buffer that it reuses, so memory use does not depend on how
+ * long the stream is.
+ * <p>
+ * When integer samples lose bits, triangular (TPDF) dither of 1 LSB of the new size is added before they
+ * are rounded. This turns the distortion caused by rounding into a low level of uncorrelated noise.
+ */
+public class BitDepthConverter implements WavReader.OnInterleavedSamplesListener {
+    private final WavReader reader;
+
+    private final int bitsPerSample;
+
+    private final int audioFormat;
+
+    private final WavReader.OnInterleavedSamplesListener listener;
+
+    private boolean dither = true;
+
+    /**
+     * State of the random number generator used for dither.
+     */
+    private int seed = 0x2545f491;
+
+    private int[] intSamples = new int[0];
+
+    private float[] floatSamples = new float[0];
+
+    private ByteBuffer output = ByteBuffer.allocate(0).order(ByteOrder.LITTLE_ENDIAN);
+
+    /**
+     * @param reader        Reader whose samples will be converted. Tells the format of the samples.
+     * @param bitsPerSample Size of the converted samples. 8, 16, 24 or 32 for integers and 32 or 64 for
+     *                      floats.
+     * @param audioFormat   DataFormat.FORMAT_PCM or DataFormat.FORMAT_IEEE_FLOAT.
+     * @param listener      Receives the converted samples in little endian order.
+     */
+    public BitDepthConverter(WavReader reader, int bitsPerSample, int audioFormat,
+                             WavReader.OnInterleavedSamplesListener listener) {
+        if (audioFormat == WavReader.DataFormat.FORMAT_IEEE_FLOAT) {
+            if (bitsPerSample != 32 && bitsPerSample != 64) {
+                throw new IllegalArgumentException("Float samples must have 32 or 64 bits.");
+            }
+        } else if (audioFormat == WavReader.DataFormat.FORMAT_PCM) {
+            if (bitsPerSample != 8 && bitsPerSample != 16 && bitsPerSample != 24 && bitsPerSample != 32) {
+                throw new IllegalArgumentException("Integer samples must have 8, 16, 24 or 32 bits.");
+            }
+        } else {
+            throw new IllegalArgumentException("Audio format must be PCM or IEEE float.");
+        }
+
+        this.reader = reader;
+        this.bitsPerSample = bitsPerSample;
+        this.audioFormat = audioFormat;
+        this.listener = listener;
+    }
+
+    /**
+     * Sets whether dither is added when integer samples lose bits. Enabled by default.
+     *
+     * @param dither
+     */
+    public void setDither(boolean dither) {
+        this.dither = dither;
+    }
+
+    /**
+     * @return Format of the converted samples or null if the reader has not found it yet.
+     */
+    public WavReader.DataFormat getDataFormat() {
+        WavReader.DataFormat source = reader.getDataFormat();
+
+        if (source == null) {
+            return null;
+        }
+
+        return new WavReader.DataFormat(source.getSampleRate(), source.getChannels(), bitsPerSample,
+                audioFormat);
+    }
+
+    @Override
+    public void onInterleavedSamples(ByteBuffer samples) {
+        WavReader.DataFormat source = reader.getDataFormat();
+        int sourceBytes = source.getBytesPerSample();
+        int targetBytes = bitsPerSample / 8;
+        int count = samples.remaining() / sourceBytes;
+
+        if (intSamples.length < count) {
+            intSamples = new int[count];
+            floatSamples = new float[count];
+        }
+
+        if (output.capacity() < count * targetBytes) {
+            output = ByteBuffer.allocate(count * targetBytes);
+            output.order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        boolean toFloat = audioFormat == WavReader.DataFormat.FORMAT_IEEE_FLOAT;
+
+        if (source.isFloat()) {
+            SampleDecoder.decodeFloat(samples, sourceBytes, 0, 1, count, floatSamples, 0);
+
+            if (!toFloat) {
+                quantize(floatSamples, count, intSamples);
+            }
+        } else {
+            SampleDecoder.decode(samples, sourceBytes, 0, 1, count, intSamples, 0);
+
+            if (toFloat) {
+                SampleDecoder.toFloat(intSamples, sourceBytes, count, floatSamples, 0);
+            } else {
+                requantize(intSamples, count, Math.min(sourceBytes, 4) * 8);
+            }
+        }
+
+        output.clear();
+
+        if (toFloat) {
+            SampleEncoder.encodeFloat(floatSamples, targetBytes, count, output);
+        } else {
+            SampleEncoder.encode(intSamples, targetBytes, count, output);
+        }
+
+        output.flip();
+        listener.onInterleavedSamples(output);
+    }
+
+    /**
+     * Changes the size of integer samples in place.
+     *
+     * @param samples
+     * @param count
+     * @param sourceBits Size of the samples.
+     */
+    private void requantize(int[] samples, int count, int sourceBits) {
+        if (bitsPerSample >= sourceBits) {
+            final int shift = bitsPerSample - sourceBits;
+
+            for (int i = 0; i < count; i++) {
+                samples[i] <<= shift;
+            }
+
+            return;
+        }
+
+        final int shift = sourceBits - bitsPerSample;
+        final long half = 1L << (shift - 1);
+        final long min = -(1L << (bitsPerSample - 1));
+        final long max = (1L << (bitsPerSample - 1)) - 1;
+
+        for (int i = 0; i < count; i++) {
+            long value = samples[i] + half;
+
+            if (dither) {
+                // Difference of two uniform values is triangular, between -1 and 1 LSB of the new size.
+                value += (nextRandom() >>> (32 - shift)) - (long) (nextRandom() >>> (32 - shift));
+            }
+
+            value >>= shift;
+            samples[i] = (int) Math.max(min, Math.min(max, value));
+        }
+    }
+
+    /**
+     * Turns float samples into integer samples.
+     *
+     * @param source
+     * @param count
+     * @param target
+     */
+    private void quantize(float[] source, int count, int[] target) {
+        final double scale = 1L << (bitsPerSample - 1);
+        final double min = -scale;
+        final double max = scale - 1;
+
+        for (int i = 0; i < count; i++) {
+            double value = source[i] * scale;
+
+            if (dither) {
+                // Difference of two uniform values is triangular, between -1 and 1 LSB.
+                value += ((nextRandom() >>> 8) - (nextRandom() >>> 8)) / 16777216.0;
+            }
+
+            target[i] = (int) Math.max(min, Math.min(max, Math.floor(value + 0.5)));
+        }
+    }
+
+    /**
+     * Xorshift generator. Fast and good enough for dither.
+     *
+     * @return
+     */
+    private int nextRandom() {
+        int x = seed;
+        x ^= x << 13;
+        x ^= x >>> 17;
+        x ^= x << 5;
+        seed = x;
+        return x;
+    }
+}
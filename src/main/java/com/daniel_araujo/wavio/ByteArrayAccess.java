@@ -0,0 +1,30 @@
+package com.daniel_araujo.wavio;
+
+/**
+ * Reads and writes little endian numbers in byte arrays.
+ * <p>
+ * This version puts numbers together one byte at a time so that it works on every JDK. The JAR also has a
+ * version for Java 11 and later that reads and writes each number at once.
+ */
+abstract class ByteArrayAccess {
+    static short getShort(byte[] array, int index) {
+        return (short) ((array[index] & 0xff) | (array[index + 1] << 8));
+    }
+
+    static int getInt(byte[] array, int index) {
+        return (array[index] & 0xff) | ((array[index + 1] & 0xff) << 8)
+                | ((array[index + 2] & 0xff) << 16) | (array[index + 3] << 24);
+    }
+
+    static void putShort(byte[] array, int index, short value) {
+        array[index] = (byte) value;
+        array[index + 1] = (byte) (value >> 8);
+    }
+
+    static void putInt(byte[] array, int index, int value) {
+        array[index] = (byte) value;
+        array[index + 1] = (byte) (value >> 8);
+        array[index + 2] = (byte) (value >> 16);
+        array[index + 3] = (byte) (value >> 24);
+    }
+}
@@ -0,0 +1,164 @@
+package com.daniel_araujo.wavio;
+
+import java.util.Arrays;
+
+/**
+ * Describes which channels non-interleaved listeners receive and how they are made from the channels of
+ * the file.
+ * <p>
+ * Each output channel is either a copy of a channel of the file or a weighted sum of several of them.
+ * Channels of the file that no output channel uses are never deinterleaved or decoded.
+ */
+public class ChannelRouting {
+    /**
+     * Channel of the file that each output channel copies. Null if channels are mixed.
+     */
+    private final int[] selection;
+
+    /**
+     * Channels of the file that each output channel is made of.
+     */
+    private final int[][] inputs;
+
+    /**
+     * Weight of each of the channels in inputs.
+     */
+    private final float[][] weights;
+
+    private ChannelRouting(int[] selection, int[][] inputs, float[][] weights) {
+        this.selection = selection;
+        this.inputs = inputs;
+        this.weights = weights;
+    }
+
+    /**
+     * Picks channels of the file. They can be in any order and can be repeated.
+     *
+     * @param channels Index of the channel of the file that each output channel copies.
+     * @return
+     */
+    public static ChannelRouting select(int... channels) {
+        if (channels.length == 0) {
+            throw new IllegalArgumentException("There must be at least one output channel.");
+        }
+
+        int[][] inputs = new int[channels.length][];
+        float[][] weights = new float[channels.length][];
+
+        for (int o = 0; o < channels.length; o++) {
+            if (channels[o] < 0) {
+                throw new IllegalArgumentException("Channel " + channels[o] + " does not exist.");
+            }
+
+            inputs[o] = new int[]{channels[o]};
+            weights[o] = new float[]{1};
+        }
+
+        return new ChannelRouting(channels.clone(), inputs, weights);
+    }
+
+    /**
+     * Mixes channels of the file with a matrix of weights.
+     *
+     * @param matrix One row per output channel with the weight of each channel of the file. Rows can be
+     *               shorter than the number of channels of the file, missing weights are 0.
+     * @return
+     */
+    public static ChannelRouting mix(float[]... matrix) {
+        if (matrix.length == 0) {
+            throw new IllegalArgumentException("There must be at least one output channel.");
+        }
+
+        int[][] inputs = new int[matrix.length][];
+        float[][] weights = new float[matrix.length][];
+
+        for (int o = 0; o < matrix.length; o++) {
+            int used = 0;
+
+            for (int c = 0; c < matrix[o].length; c++) {
+                if (matrix[o][c] != 0) {
+                    used++;
+                }
+            }
+
+            // Channels with a weight of 0 are left out so that they do not cost anything.
+            inputs[o] = new int[used];
+            weights[o] = new float[used];
+
+            for (int c = 0, i = 0; c < matrix[o].length; c++) {
+                if (matrix[o][c] != 0) {
+                    inputs[o][i] = c;
+                    weights[o][i] = matrix[o][c];
+                    i++;
+                }
+            }
+        }
+
+        return new ChannelRouting(null, inputs, weights);
+    }
+
+    /**
+     * Averages channels of the file into a single channel.
+     *
+     * @param channels How many channels the file has.
+     * @return
+     */
+    public static ChannelRouting downmixToMono(int channels) {
+        float[] weights = new float[channels];
+        Arrays.fill(weights, 1.0f / channels);
+        return mix(weights);
+    }
+
+    /**
+     * @return How many channels listeners receive.
+     */
+    public int getOutputChannels() {
+        return inputs.length;
+    }
+
+    /**
+     * @return True if every output channel is a copy of a channel of the file.
+     */
+    boolean isSelection() {
+        return selection != null;
+    }
+
+    /**
+     * @return Channel of the file that each output channel copies. Only available for selections.
+     */
+    int[] getSelection() {
+        return selection;
+    }
+
+    /**
+     * @param output
+     * @return Channels of the file that an output channel is made of.
+     */
+    int[] getInputs(int output) {
+        return inputs[output];
+    }
+
+    /**
+     * @param output
+     * @return Weights of the channels returned by getInputs.
+     */
+    float[] getWeights(int output) {
+        return weights[output];
+    }
+
+    /**
+     * Makes sure that the routing only uses channels that exist.
+     *
+     * @param channels How many channels the file has.
+     */
+    void check(int channels) {
+        for (int o = 0; o < inputs.length; o++) {
+            for (int i = 0; i < inputs[o].length; i++) {
+                if (inputs[o][i] >= channels) {
+                    throw new IllegalArgumentException("Channel routing uses channel " + inputs[o][i]
+                            + " but there are only " + channels + ".");
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,378 @@
+package com.daniel_araujo.wavio;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Splits interleaved frames into one buffer per channel.
+ * <p>
+ * There is a specialized loop for each sample size. All of them walk the interleaved data once, front to
+ * back, and write every channel in the same pass. When all buffers are backed by arrays, the arrays are
+ * accessed directly. Otherwise the widest absolute get and put methods available for the sample size are
+ * used.
+ */
+class Deinterleaver {
+    /**
+     * Arrays of the target buffers. Kept around so that deinterleaving does not allocate.
+     */
+    private byte[][] targetArrays = new byte[0][];
+
+    /**
+     * Array offsets of the target buffers.
+     */
+    private int[] targetOffsets = new int[0];
+
+    /**
+     * Copies frames from the interleaved buffer into the channel buffers.
+     * <p>
+     * Frames are read starting at the position of the interleaved buffer and samples are written starting
+     * at index 0 of each channel buffer. Positions are not changed. All buffers must have the same byte
+     * order.
+     *
+     * @param interleaved    Frames.
+     * @param channels       One buffer per channel. Each must be able to hold all samples of its channel.
+     * @param bytesPerSample Size of a single sample.
+     * @param frames         How many frames to copy.
+     */
+    void deinterleave(ByteBuffer interleaved, ByteBuffer[] channels, int bytesPerSample, int frames) {
+        if (canAccessArrays(interleaved, channels)) {
+            byte[] source = interleaved.array();
+            int sourceOffset = interleaved.arrayOffset() + interleaved.position();
+
+            switch (bytesPerSample) {
+                case 1:
+                    arrays8(source, sourceOffset, channels.length, frames);
+                    break;
+                case 2:
+                    arrays16(source, sourceOffset, channels.length, frames);
+                    break;
+                case 3:
+                    arrays24(source, sourceOffset, channels.length, frames);
+                    break;
+                case 4:
+                    arrays32(source, sourceOffset, channels.length, frames);
+                    break;
+                default:
+                    arrays(source, sourceOffset, channels.length, bytesPerSample, frames);
+                    break;
+            }
+        } else {
+            switch (bytesPerSample) {
+                case 1:
+                    buffers8(interleaved, channels, frames);
+                    break;
+                case 2:
+                    buffers16(interleaved, channels, frames);
+                    break;
+                case 3:
+                    buffers24(interleaved, channels, frames);
+                    break;
+                case 4:
+                    buffers32(interleaved, channels, frames);
+                    break;
+                default:
+                    buffers(interleaved, channels, bytesPerSample, frames);
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Copies some of the channels of the frames into the channel buffers. Channels that are not selected
+     * are never read, so the work depends on how many channel buffers there are rather than on how many
+     * channels the frames have.
+     * <p>
+     * Buffers are handled the same way as in the method that copies all channels.
+     *
+     * @param interleaved    Frames.
+     * @param channels       One buffer per selected channel.
+     * @param bytesPerSample Size of a single sample.
+     * @param frames         How many frames to copy.
+     * @param selection      Channel of the frames that each channel buffer receives.
+     * @param frameChannels  How many channels the frames have.
+     */
+    void deinterleave(ByteBuffer interleaved, ByteBuffer[] channels, int bytesPerSample, int frames,
+                      int[] selection, int frameChannels) {
+        final int frameSize = bytesPerSample * frameChannels;
+
+        if (canAccessArrays(interleaved, channels)) {
+            byte[] source = interleaved.array();
+            int sourceOffset = interleaved.arrayOffset() + interleaved.position();
+
+            for (int c = 0; c < channels.length; c++) {
+                selectedArray(source, sourceOffset + selection[c] * bytesPerSample, frameSize,
+                        targetArrays[c], targetOffsets[c], bytesPerSample, frames);
+            }
+        } else {
+            int sourceOffset = interleaved.position();
+
+            for (int c = 0; c < channels.length; c++) {
+                selectedBuffer(interleaved, sourceOffset + selection[c] * bytesPerSample, frameSize,
+                        channels[c], bytesPerSample, frames);
+            }
+        }
+    }
+
+    /**
+     * Checks whether all buffers are backed by accessible arrays. If so, remembers the arrays of the
+     * channel buffers.
+     *
+     * @param interleaved
+     * @param channels
+     * @return
+     */
+    private boolean canAccessArrays(ByteBuffer interleaved, ByteBuffer[] channels) {
+        if (!interleaved.hasArray()) {
+            return false;
+        }
+
+        for (int c = 0; c < channels.length; c++) {
+            if (!channels[c].hasArray()) {
+                return false;
+            }
+        }
+
+        if (targetArrays.length != channels.length) {
+            targetArrays = new byte[channels.length][];
+            targetOffsets = new int[channels.length];
+        }
+
+        for (int c = 0; c < channels.length; c++) {
+            targetArrays[c] = channels[c].array();
+            targetOffsets[c] = channels[c].arrayOffset();
+        }
+
+        return true;
+    }
+
+    private void arrays8(byte[] source, int s, int channels, int frames) {
+        byte[][] targets = targetArrays;
+        int[] offsets = targetOffsets;
+
+        for (int i = 0; i < frames; i++) {
+            for (int c = 0; c < channels; c++, s++) {
+                targets[c][offsets[c] + i] = source[s];
+            }
+        }
+    }
+
+    private void arrays16(byte[] source, int s, int channels, int frames) {
+        byte[][] targets = targetArrays;
+        int[] offsets = targetOffsets;
+
+        for (int i = 0; i < frames; i++) {
+            final int t = i * 2;
+
+            for (int c = 0; c < channels; c++, s += 2) {
+                ByteArrayAccess.putShort(targets[c], offsets[c] + t, ByteArrayAccess.getShort(source, s));
+            }
+        }
+    }
+
+    private void arrays24(byte[] source, int s, int channels, int frames) {
+        byte[][] targets = targetArrays;
+        int[] offsets = targetOffsets;
+
+        for (int i = 0; i < frames; i++) {
+            final int t = i * 3;
+
+            for (int c = 0; c < channels; c++, s += 3) {
+                byte[] target = targets[c];
+                int index = offsets[c] + t;
+                target[index] = source[s];
+                target[index + 1] = source[s + 1];
+                target[index + 2] = source[s + 2];
+            }
+        }
+    }
+
+    private void arrays32(byte[] source, int s, int channels, int frames) {
+        byte[][] targets = targetArrays;
+        int[] offsets = targetOffsets;
+
+        for (int i = 0; i < frames; i++) {
+            final int t = i * 4;
+
+            for (int c = 0; c < channels; c++, s += 4) {
+                ByteArrayAccess.putInt(targets[c], offsets[c] + t, ByteArrayAccess.getInt(source, s));
+            }
+        }
+    }
+
+    private void arrays(byte[] source, int s, int channels, int bytesPerSample, int frames) {
+        byte[][] targets = targetArrays;
+        int[] offsets = targetOffsets;
+
+        for (int i = 0; i < frames; i++) {
+            final int t = i * bytesPerSample;
+
+            for (int c = 0; c < channels; c++, s += bytesPerSample) {
+                System.arraycopy(source, s, targets[c], offsets[c] + t, bytesPerSample);
+            }
+        }
+    }
+
+    private void buffers8(ByteBuffer source, ByteBuffer[] targets, int frames) {
+        final int channels = targets.length;
+        int s = source.position();
+
+        for (int i = 0; i < frames; i++) {
+            for (int c = 0; c < channels; c++, s++) {
+                targets[c].put(i, source.get(s));
+            }
+        }
+    }
+
+    private void buffers16(ByteBuffer source, ByteBuffer[] targets, int frames) {
+        final int channels = targets.length;
+        int s = source.position();
+
+        if (channels == 2) {
+            // Both samples of a frame in a single read.
+            ByteBuffer left = targets[0];
+            ByteBuffer right = targets[1];
+            boolean little = source.order() == ByteOrder.LITTLE_ENDIAN;
+
+            for (int i = 0; i < frames; i++, s += 4) {
+                int frame = source.getInt(s);
+                short first = (short) (little ? frame : frame >>> 16);
+                short second = (short) (little ? frame >>> 16 : frame);
+                left.putShort(i * 2, first);
+                right.putShort(i * 2, second);
+            }
+
+            return;
+        }
+
+        for (int i = 0; i < frames; i++) {
+            final int t = i * 2;
+
+            for (int c = 0; c < channels; c++, s += 2) {
+                targets[c].putShort(t, source.getShort(s));
+            }
+        }
+    }
+
+    private void buffers24(ByteBuffer source, ByteBuffer[] targets, int frames) {
+        final int channels = targets.length;
+        int s = source.position();
+
+        for (int i = 0; i < frames; i++) {
+            final int t = i * 3;
+
+            for (int c = 0; c < channels; c++, s += 3) {
+                ByteBuffer target = targets[c];
+                target.putShort(t, source.getShort(s));
+                target.put(t + 2, source.get(s + 2));
+            }
+        }
+    }
+
+    private void buffers32(ByteBuffer source, ByteBuffer[] targets, int frames) {
+        final int channels = targets.length;
+        int s = source.position();
+
+        if (channels == 2) {
+            // Both samples of a frame in a single read.
+            ByteBuffer left = targets[0];
+            ByteBuffer right = targets[1];
+            boolean little = source.order() == ByteOrder.LITTLE_ENDIAN;
+
+            for (int i = 0; i < frames; i++, s += 8) {
+                long frame = source.getLong(s);
+                int first = (int) (little ? frame : frame >>> 32);
+                int second = (int) (little ? frame >>> 32 : frame);
+                left.putInt(i * 4, first);
+                right.putInt(i * 4, second);
+            }
+
+            return;
+        }
+
+        for (int i = 0; i < frames; i++) {
+            final int t = i * 4;
+
+            for (int c = 0; c < channels; c++, s += 4) {
+                targets[c].putInt(t, source.getInt(s));
+            }
+        }
+    }
+
+    private void buffers(ByteBuffer source, ByteBuffer[] targets, int bytesPerSample, int frames) {
+        final int channels = targets.length;
+        int s = source.position();
+
+        for (int i = 0; i < frames; i++) {
+            final int t = i * bytesPerSample;
+
+            for (int c = 0; c < channels; c++) {
+                for (int b = 0; b < bytesPerSample; b++, s++) {
+                    targets[c].put(t + b, source.get(s));
+                }
+            }
+        }
+    }
+
+    private void selectedArray(byte[] source, int s, int frameSize, byte[] target, int t, int bytesPerSample,
+                               int frames) {
+        switch (bytesPerSample) {
+            case 1:
+                for (int i = 0; i < frames; i++, s += frameSize, t++) {
+                    target[t] = source[s];
+                }
+                break;
+            case 2:
+                for (int i = 0; i < frames; i++, s += frameSize, t += 2) {
+                    ByteArrayAccess.putShort(target, t, ByteArrayAccess.getShort(source, s));
+                }
+                break;
+            case 3:
+                for (int i = 0; i < frames; i++, s += frameSize, t += 3) {
+                    target[t] = source[s];
+                    target[t + 1] = source[s + 1];
+                    target[t + 2] = source[s + 2];
+                }
+                break;
+            case 4:
+                for (int i = 0; i < frames; i++, s += frameSize, t += 4) {
+                    ByteArrayAccess.putInt(target, t, ByteArrayAccess.getInt(source, s));
+                }
+                break;
+            default:
+                for (int i = 0; i < frames; i++, s += frameSize, t += bytesPerSample) {
+                    System.arraycopy(source, s, target, t, bytesPerSample);
+                }
+                break;
+        }
+    }
+
+    private void selectedBuffer(ByteBuffer source, int s, int frameSize, ByteBuffer target, int bytesPerSample,
+                                int frames) {
+        switch (bytesPerSample) {
+            case 1:
+                for (int i = 0; i < frames; i++, s += frameSize) {
+                    target.put(i, source.get(s));
+                }
+                break;
+            case 2:
+                for (int i = 0; i < frames; i++, s += frameSize) {
+                    target.putShort(i * 2, source.getShort(s));
+                }
+                break;
+            case 4:
+                for (int i = 0; i < frames; i++, s += frameSize) {
+                    target.putInt(i * 4, source.getInt(s));
+                }
+                break;
+            default:
+                for (int i = 0; i < frames; i++, s += frameSize) {
+                    final int t = i * bytesPerSample;
+
+                    for (int b = 0; b < bytesPerSample; b++) {
+                        target.put(t + b, source.get(s + b));
+                    }
+                }
+                break;
+        }
+    }
+}
@@ -0,0 +1,361 @@
+package com.daniel_araujo.wavio;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Analyzes the samples of a file on several threads.
+ * <p>
+ * The data chunk is split into segments that contain whole frames. Each segment is mapped into memory and
+ * reduced to a result on its own, then the results of neighbouring segments are combined until a single
+ * one is left. Segments are reduced on a ForkJoinPool.
+ */
+public class ParallelWavAnalyzer {
+    /**
+     * How many bytes a segment has by default.
+     */
+    public static final int DEFAULT_SEGMENT_SIZE = 4 * 1024 * 1024;
+
+    private final WavFile file;
+
+    private int segmentSize = DEFAULT_SEGMENT_SIZE;
+
+    private ForkJoinPool pool;
+
+    /**
+     * @param file Its position is not used or changed, so it can be read while being analyzed.
+     */
+    public ParallelWavAnalyzer(WavFile file) {
+        this.file = file;
+    }
+
+    /**
+     * Sets how big segments are.
+     *
+     * @param size In bytes. Will be rounded down to a whole number of frames. Must be positive.
+     */
+    public void setSegmentSize(int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Segment size must be positive.");
+        }
+
+        segmentSize = size;
+    }
+
+    /**
+     * Sets the pool that segments are reduced on.
+     *
+     * @param pool Can be null to create a pool with one thread per processor for each analysis.
+     */
+    public void setPool(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Reduces all frames of the file to a single result. Blocks until done.
+     *
+     * @param reducer
+     * @param <R>
+     * @return What the reducer returned for the whole file.
+     */
+    public <R> R analyze(Reducer<R> reducer) {
+        WavReader.DataFormat format = file.getDataFormat();
+        int frameSize = format.getBytesPerSample() * format.getChannels();
+        int segmentFrames = Math.max(1, segmentSize / frameSize);
+
+        Segment<R> task = new Segment<R>(reducer, format, segmentFrames, 0, file.getFrameCount());
+
+        if (pool != null) {
+            return pool.invoke(task);
+        }
+
+        ForkJoinPool ownPool = new ForkJoinPool();
+
+        try {
+            return ownPool.invoke(task);
+        } finally {
+            ownPool.shutdown();
+        }
+    }
+
+    /**
+     * Turns frames into a result and merges results.
+     *
+     * @param <R> Type of result.
+     */
+    public interface Reducer<R> {
+        /**
+         * Called on many threads at once, each time with different frames.
+         *
+         * @param frames Read-only buffer in little endian order with interleaved frames. Always contains
+         *               whole frames.
+         * @param format Sample format.
+         * @return Result for the frames.
+         */
+        R map(ByteBuffer frames, WavReader.DataFormat format);
+
+        /**
+         * Merges the results of two neighbouring ranges of frames.
+         *
+         * @param left  Result of the frames that come first.
+         * @param right Result of the frames that come right after.
+         * @return Result of both ranges.
+         */
+        R combine(R left, R right);
+    }
+
+    /**
+     * Base for reducers that work with samples converted to floats between -1 and 1.
+     *
+     * @param <R> Type of result.
+     */
+    public static abstract class FloatSampleReducer<R> implements Reducer<R> {
+        /**
+         * How many frames are converted at once.
+         */
+        private static final int BLOCK_FRAMES = 1024;
+
+        @Override
+        public R map(ByteBuffer frames, WavReader.DataFormat format) {
+            int channels = format.getChannels();
+            int bytesPerSample = format.getBytesPerSample();
+            int frameSize = bytesPerSample * channels;
+
+            R result = create(channels);
+
+            int[] decoded = new int[BLOCK_FRAMES * channels];
+            float[] samples = new float[BLOCK_FRAMES * channels];
+
+            ByteBuffer block = frames.duplicate();
+            block.order(ByteOrder.LITTLE_ENDIAN);
+
+            while (block.hasRemaining()) {
+                int count = Math.min(BLOCK_FRAMES, block.remaining() / frameSize);
+                int sampleCount = count * channels;
+
+                if (format.isFloat()) {
+                    SampleDecoder.decodeFloat(block, bytesPerSample, 0, 1, sampleCount, samples, 0);
+                } else {
+                    SampleDecoder.decode(block, bytesPerSample, 0, 1, sampleCount, decoded, 0);
+                    SampleDecoder.toFloat(decoded, bytesPerSample, sampleCount, samples, 0);
+                }
+
+                add(result, samples, count, channels);
+
+                block.position(block.position() + count * frameSize);
+            }
+
+            return result;
+        }
+
+        /**
+         * @param channels
+         * @return Result for no frames.
+         */
+        protected abstract R create(int channels);
+
+        /**
+         * Adds frames to a result.
+         *
+         * @param result
+         * @param samples  Interleaved samples.
+         * @param frames   How many frames there are in the samples array.
+         * @param channels
+         */
+        protected abstract void add(R result, float[] samples, int frames, int channels);
+    }
+
+    /**
+     * Finds the highest absolute sample value of each channel.
+     */
+    public static class PeakReducer extends FloatSampleReducer<float[]> {
+        @Override
+        protected float[] create(int channels) {
+            return new float[channels];
+        }
+
+        @Override
+        protected void add(float[] peaks, float[] samples, int frames, int channels) {
+            for (int i = 0, s = 0; i < frames; i++) {
+                for (int c = 0; c < channels; c++, s++) {
+                    float value = Math.abs(samples[s]);
+
+                    if (value > peaks[c]) {
+                        peaks[c] = value;
+                    }
+                }
+            }
+        }
+
+        @Override
+        public float[] combine(float[] left, float[] right) {
+            for (int c = 0; c < left.length; c++) {
+                left[c] = Math.max(left[c], right[c]);
+            }
+
+            return left;
+        }
+    }
+
+    /**
+     * Calculates the root mean square of each channel.
+     */
+    public static class RmsReducer extends FloatSampleReducer<RmsReducer.Result> {
+        @Override
+        protected Result create(int channels) {
+            return new Result(channels);
+        }
+
+        @Override
+        protected void add(Result result, float[] samples, int frames, int channels) {
+            for (int i = 0, s = 0; i < frames; i++) {
+                for (int c = 0; c < channels; c++, s++) {
+                    result.sumOfSquares[c] += samples[s] * samples[s];
+                }
+            }
+
+            result.frames += frames;
+        }
+
+        @Override
+        public Result combine(Result left, Result right) {
+            for (int c = 0; c < left.sumOfSquares.length; c++) {
+                left.sumOfSquares[c] += right.sumOfSquares[c];
+            }
+
+            left.frames += right.frames;
+            return left;
+        }
+
+        public static class Result {
+            private final double[] sumOfSquares;
+
+            private long frames;
+
+            Result(int channels) {
+                sumOfSquares = new double[channels];
+            }
+
+            /**
+             * @param channel
+             * @return Root mean square of the samples of the channel. 0 if there are no samples.
+             */
+            public double getRms(int channel) {
+                if (frames == 0) {
+                    return 0;
+                }
+
+                return Math.sqrt(sumOfSquares[channel] / frames);
+            }
+
+            /**
+             * @return How many frames were analyzed.
+             */
+            public long getFrames() {
+                return frames;
+            }
+        }
+    }
+
+    /**
+     * Counts how many samples of all channels fall into each of a number of equally wide bins between -1
+     * and 1.
+     * <p>
+     * Float samples outside of -1 and 1 are counted in the first or last bin. NaN samples are not counted.
+     */
+    public static class HistogramReducer extends FloatSampleReducer<long[]> {
+        private final int bins;
+
+        /**
+         * @param bins How many bins to have. Must be positive.
+         */
+        public HistogramReducer(int bins) {
+            if (bins <= 0) {
+                throw new IllegalArgumentException("Number of bins must be positive.");
+            }
+
+            this.bins = bins;
+        }
+
+        @Override
+        protected long[] create(int channels) {
+            return new long[bins];
+        }
+
+        @Override
+        protected void add(long[] counts, float[] samples, int frames, int channels) {
+            int count = frames * channels;
+            float scale = bins / 2.0f;
+
+            for (int s = 0; s < count; s++) {
+                float sample = samples[s];
+
+                if (Float.isNaN(sample)) {
+                    // Not a level at all. Would otherwise end up in the first bin.
+                    continue;
+                }
+
+                // Integer samples never reach 1.0 but float samples can reach it and go beyond either end.
+                // The cast saturates at the limits of int, which covers infinities.
+                int bin = (int) ((sample + 1) * scale);
+                counts[Math.max(0, Math.min(bin, bins - 1))]++;
+            }
+        }
+
+        @Override
+        public long[] combine(long[] left, long[] right) {
+            for (int i = 0; i < bins; i++) {
+                left[i] += right[i];
+            }
+
+            return left;
+        }
+    }
+
+    /**
+     * Reduces a range of frames, splitting it in two if it is longer than a segment.
+     */
+    private class Segment<R> extends RecursiveTask<R> {
+        private final Reducer<R> reducer;
+
+        private final WavReader.DataFormat format;
+
+        private final int segmentFrames;
+
+        private final long firstFrame;
+
+        private final long frames;
+
+        Segment(Reducer<R> reducer, WavReader.DataFormat format, int segmentFrames, long firstFrame,
+                long frames) {
+            this.reducer = reducer;
+            this.format = format;
+            this.segmentFrames = segmentFrames;
+            this.firstFrame = firstFrame;
+            this.frames = frames;
+        }
+
+        @Override
+        protected R compute() {
+            if (frames <= segmentFrames) {
+                return reducer.map(file.mapFrames(firstFrame, (int) frames), format);
+            }
+
+            // Splits on a segment boundary so that every segment but the last one is full.
+            long segments = (frames + segmentFrames - 1) / segmentFrames;
+            long leftFrames = segments / 2 * segmentFrames;
+
+            Segment<R> left = new Segment<R>(reducer, format, segmentFrames, firstFrame, leftFrames);
+            Segment<R> right = new Segment<R>(reducer, format, segmentFrames, firstFrame + leftFrames,
+                    frames - leftFrames);
+
+            left.fork();
+            R rightResult = right.compute();
+            R leftResult = left.join();
+
+            return reducer.combine(leftResult, rightResult);
+        }
+    }
+}
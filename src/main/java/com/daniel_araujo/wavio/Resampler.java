@@ -0,0 +1,341 @@
+package com.daniel_araujo.wavio;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Changes the sample rate of non-interleaved float samples as they are read.
+ * <p>
+ * Register it as the non-interleaved float samples listener of a reader. It passes the resampled samples
+ * on to another non-interleaved float samples listener in arrays that it reuses.
+ * <p>
+ * The rate is changed by a ratio of L / M, where L and M are the output and input rates divided by their
+ * greatest common divisor. The filter is a windowed sinc that is split into L phases. Each output sample
+ * is computed by a single phase from the input samples around it, so no work is spent on the samples that
+ * upsampling by L would insert. The phases are computed once per pair of rates and shared by all
+ * resamplers, up to a total number of coefficients. The ones that were used least recently are dropped
+ * first.
+ * <p>
+ * The filter looks ahead, so the last output samples are only produced when flush is called.
+ */
+public class Resampler implements WavReader.OnNoninterleavedFloatSamplesListener {
+    /**
+     * Half the width of the filter, in samples of the lower of the two rates. Wider filters have a
+     * sharper cutoff.
+     */
+    private static final int ZERO_CROSSINGS = 16;
+
+    /**
+     * How many filter coefficients are kept for other resamplers, across all pairs of rates. Ratios such as
+     * 44100 to 44101 need tens of thousands of phases, which are kept only by the resamplers that use them.
+     */
+    static final int MAX_CACHED_COEFFICIENTS = 1024 * 1024;
+
+    /**
+     * Filter phases by pair of rates, in order of use.
+     */
+    private static final LinkedHashMap<String, float[][]> TABLES = new LinkedHashMap<String, float[][]>(16,
+            0.75f, true);
+
+    /**
+     * How many coefficients are in TABLES.
+     */
+    private static long cachedCoefficients;
+
+    private final WavReader reader;
+
+    private final int outputRate;
+
+    private final WavReader.OnNoninterleavedFloatSamplesListener listener;
+
+    /**
+     * Filter phases. Created when the first samples arrive, once the input rate is known.
+     */
+    private float[][] table;
+
+    /**
+     * Upsampling factor.
+     */
+    private int l;
+
+    /**
+     * Downsampling factor.
+     */
+    private int m;
+
+    /**
+     * Input samples of each channel that are still needed, starting with the first tap of the next output
+     * sample.
+     */
+    private float[][] history = new float[0][];
+
+    /**
+     * How many samples each history array holds.
+     */
+    private int historyLength;
+
+    /**
+     * Phase of the next output sample.
+     */
+    private int phase;
+
+    /**
+     * How many input samples have been received.
+     */
+    private long inputCount;
+
+    /**
+     * How many output samples have been passed on.
+     */
+    private long outputCount;
+
+    private float[][] output = new float[0][];
+
+    /**
+     * @param reader     Reader whose samples will be resampled. Tells the input rate.
+     * @param outputRate Rate of the resampled samples.
+     * @param listener   Receives the resampled samples.
+     */
+    public Resampler(WavReader reader, int outputRate, WavReader.OnNoninterleavedFloatSamplesListener listener) {
+        if (outputRate <= 0) {
+            throw new IllegalArgumentException("Output rate must be positive.");
+        }
+
+        this.reader = reader;
+        this.outputRate = outputRate;
+        this.listener = listener;
+    }
+
+    @Override
+    public void onNoninterleavedFloatSamples(float[][] channels, int length) {
+        if (table == null) {
+            int inputRate = reader.getDataFormat().getSampleRate();
+
+            if (inputRate <= 0) {
+                throw new IllegalArgumentException("Input rate must be positive.");
+            }
+
+            start(inputRate, channels.length);
+        }
+
+        append(channels, length);
+        inputCount += length;
+
+        produce(Long.MAX_VALUE);
+    }
+
+    /**
+     * Produces the output samples that depend on input samples that have not arrived, as if the input
+     * ended with silence. Call when the input ends.
+     */
+    public void flush() {
+        if (table == null) {
+            return;
+        }
+
+        // Enough silence for every remaining output sample to have all of its taps.
+        append(null, table[0].length);
+
+        produce((inputCount * l + m - 1) / m);
+    }
+
+    /**
+     * Looks up the filter and fills the history with the silence that comes before the first sample.
+     *
+     * @param inputRate
+     * @param channels
+     */
+    private void start(int inputRate, int channels) {
+        int divisor = gcd(inputRate, outputRate);
+        l = outputRate / divisor;
+        m = inputRate / divisor;
+        table = getTable(l, m);
+
+        int taps = table[0].length;
+
+        history = new float[channels][taps];
+        output = new float[channels][0];
+        // The first output sample is centered on the first input sample.
+        historyLength = taps / 2 - 1;
+    }
+
+    /**
+     * Adds input samples to the history.
+     *
+     * @param channels Null to add silence.
+     * @param length
+     */
+    private void append(float[][] channels, int length) {
+        if (historyLength + length > history[0].length) {
+            for (int c = 0; c < history.length; c++) {
+                float[] grown = new float[historyLength + length];
+                System.arraycopy(history[c], 0, grown, 0, historyLength);
+                history[c] = grown;
+            }
+        }
+
+        for (int c = 0; c < history.length; c++) {
+            if (channels == null) {
+                Arrays.fill(history[c], historyLength, historyLength + length, 0);
+            } else {
+                System.arraycopy(channels[c], 0, history[c], historyLength, length);
+            }
+        }
+
+        historyLength += length;
+    }
+
+    /**
+     * Computes as many output samples as the history allows and passes them on.
+     *
+     * @param limit Total number of output samples not to go over.
+     */
+    private void produce(long limit) {
+        final int taps = table[0].length;
+        final int available = historyLength - taps;
+
+        if (available < 0) {
+            return;
+        }
+
+        // Each output sample moves M / L input samples forward.
+        int count = (int) Math.min(((long) available * l + (l - 1 - phase)) / m + 1, limit - outputCount);
+
+        if (count <= 0) {
+            return;
+        }
+
+        if (output[0].length < count) {
+            for (int c = 0; c < output.length; c++) {
+                output[c] = new float[count];
+            }
+        }
+
+        int position = 0;
+        int p = phase;
+
+        for (int c = 0; c < history.length; c++) {
+            float[] in = history[c];
+            float[] out = output[c];
+            position = 0;
+            p = phase;
+
+            for (int i = 0; i < count; i++) {
+                float[] coefficients = table[p];
+                float sum = 0;
+
+                for (int t = 0; t < taps; t++) {
+                    sum += in[position + t] * coefficients[t];
+                }
+
+                out[i] = sum;
+
+                p += m;
+                position += p / l;
+                p %= l;
+            }
+        }
+
+        phase = p;
+        outputCount += count;
+
+        // Drops the samples that no longer have any effect.
+        for (int c = 0; c < history.length; c++) {
+            System.arraycopy(history[c], position, history[c], 0, historyLength - position);
+        }
+
+        historyLength -= position;
+
+        listener.onNoninterleavedFloatSamples(output, count);
+    }
+
+    /**
+     * Gets the phases of the filter for a ratio, creating them if needed.
+     *
+     * @param l Upsampling factor.
+     * @param m Downsampling factor.
+     * @return One array of coefficients per phase, all with the same number of taps.
+     */
+    private static float[][] getTable(int l, int m) {
+        String key = l + "/" + m;
+
+        synchronized (TABLES) {
+            float[][] table = TABLES.get(key);
+
+            if (table != null) {
+                return table;
+            }
+        }
+
+        // Created outside of the lock. Two resamplers may create the same table, which is harmless.
+        float[][] table = createTable(l, m);
+        long size = (long) table.length * table[0].length;
+
+        if (size > MAX_CACHED_COEFFICIENTS) {
+            return table;
+        }
+
+        synchronized (TABLES) {
+            if (TABLES.put(key, table) == null) {
+                cachedCoefficients += size;
+            }
+
+            Iterator<Map.Entry<String, float[][]>> eldest = TABLES.entrySet().iterator();
+
+            while (cachedCoefficients > MAX_CACHED_COEFFICIENTS) {
+                float[][] removed = eldest.next().getValue();
+                eldest.remove();
+                cachedCoefficients -= (long) removed.length * removed[0].length;
+            }
+        }
+
+        return table;
+    }
+
+    /**
+     * @return How many coefficients are kept for other resamplers.
+     */
+    static long getCachedCoefficients() {
+        synchronized (TABLES) {
+            return cachedCoefficients;
+        }
+    }
+
+    private static float[][] createTable(int l, int m) {
+        // When downsampling, the cutoff drops to the new Nyquist frequency and the filter gets wider.
+        double cutoff = Math.min(1.0, (double) l / m);
+        int halfTaps = (int) Math.ceil(ZERO_CROSSINGS / cutoff);
+        int taps = halfTaps * 2;
+
+        float[][] table = new float[l][taps];
+
+        for (int p = 0; p < l; p++) {
+            for (int t = 0; t < taps; t++) {
+                // Distance between the output sample and the input sample of this tap, in input samples.
+                double distance = (double) p / l - (t - halfTaps + 1);
+                double x = distance * cutoff;
+                double sinc = x == 0 ? 1 : Math.sin(Math.PI * x) / (Math.PI * x);
+                double w = distance / halfTaps;
+                // Blackman window.
+                double window = Math.abs(w) >= 1 ? 0
+                        : 0.42 + 0.5 * Math.cos(Math.PI * w) + 0.08 * Math.cos(2 * Math.PI * w);
+
+                table[p][t] = (float) (cutoff * sinc * window);
+            }
+        }
+
+        return table;
+    }
+
+    private static int gcd(int a, int b) {
+        while (b != 0) {
+            int t = a % b;
+            a = b;
+            b = t;
+        }
+
+        return a;
+    }
+}
@@ -0,0 +1,198 @@
+package com.daniel_araujo.wavio;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Turns little endian PCM samples into numbers.
+ * <p>
+ * Samples are first decoded into sign-extended integers of their own width. 8 bit samples, which are
+ * unsigned in wave files, are centered around 0 as well. The integers can then be converted to
+ * normalized floats or to 16 bit values.
+ * <p>
+ * Float samples are read as they are.
+ */
+abstract class SampleDecoder {
+    /**
+     * Decodes samples into sign-extended integers.
+     * <p>
+     * Samples wider than 4 bytes are truncated to their 4 most significant bytes.
+     *
+     * @param source         Little endian samples, starting at the buffer's position. Position is not changed.
+     * @param bytesPerSample Size of a single sample.
+     * @param first          Index of the first sample to decode.
+     * @param step           Distance, in samples, between decoded samples. Use the number of channels to pick
+     *                       the samples of a single channel out of interleaved frames.
+     * @param count          How many samples to decode.
+     * @param target
+     * @param targetOffset   Where to put the first sample in the target array.
+     */
+    static void decode(ByteBuffer source, int bytesPerSample, int first, int step, int count,
+                       int[] target, int targetOffset) {
+        if (source.hasArray()) {
+            byte[] array = source.array();
+            int s = source.arrayOffset() + source.position() + first * bytesPerSample;
+            int stride = step * bytesPerSample;
+            int end = targetOffset + count;
+
+            switch (bytesPerSample) {
+                case 1:
+                    for (int t = targetOffset; t < end; t++, s += stride) {
+                        target[t] = (array[s] & 0xff) - 128;
+                    }
+                    break;
+                case 2:
+                    SampleKernels.get().decode16(array, s, step, count, target, targetOffset);
+                    break;
+                case 3:
+                    SampleKernels.get().decode24(array, s, step, count, target, targetOffset);
+                    break;
+                default:
+                    // Only the 4 most significant bytes.
+                    s += bytesPerSample - 4;
+                    for (int t = targetOffset; t < end; t++, s += stride) {
+                        target[t] = ByteArrayAccess.getInt(array, s);
+                    }
+                    break;
+            }
+        } else {
+            int s = source.position() + first * bytesPerSample;
+            int stride = step * bytesPerSample;
+            int end = targetOffset + count;
+
+            switch (bytesPerSample) {
+                case 1:
+                    for (int t = targetOffset; t < end; t++, s += stride) {
+                        target[t] = (source.get(s) & 0xff) - 128;
+                    }
+                    break;
+                case 2:
+                    for (int t = targetOffset; t < end; t++, s += stride) {
+                        target[t] = (source.get(s) & 0xff) | (source.get(s + 1) << 8);
+                    }
+                    break;
+                case 3:
+                    for (int t = targetOffset; t < end; t++, s += stride) {
+                        target[t] = (source.get(s) & 0xff) | ((source.get(s + 1) & 0xff) << 8)
+                                | (source.get(s + 2) << 16);
+                    }
+                    break;
+                default:
+                    // Only the 4 most significant bytes.
+                    s += bytesPerSample - 4;
+                    for (int t = targetOffset; t < end; t++, s += stride) {
+                        target[t] = (source.get(s) & 0xff) | ((source.get(s + 1) & 0xff) << 8)
+                                | ((source.get(s + 2) & 0xff) << 16) | (source.get(s + 3) << 24);
+                    }
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Reads 32 or 64 bit float samples.
+     *
+     * @param source         Little endian samples, starting at the buffer's position. Position is not changed.
+     * @param bytesPerSample 4 or 8.
+     * @param first          Index of the first sample to read.
+     * @param step           Distance, in samples, between read samples.
+     * @param count          How many samples to read.
+     * @param target
+     * @param targetOffset   Where to put the first sample in the target array.
+     */
+    static void decodeFloat(ByteBuffer source, int bytesPerSample, int first, int step, int count,
+                            float[] target, int targetOffset) {
+        ByteBuffer view = source.duplicate();
+        view.order(ByteOrder.LITTLE_ENDIAN);
+
+        int s = source.position() + first * bytesPerSample;
+        int stride = step * bytesPerSample;
+        int end = targetOffset + count;
+
+        if (bytesPerSample == 4) {
+            if (step == 1) {
+                // Bulk copy.
+                view.position(s);
+                view.asFloatBuffer().get(target, targetOffset, count);
+                return;
+            }
+
+            for (int t = targetOffset; t < end; t++, s += stride) {
+                target[t] = view.getFloat(s);
+            }
+        } else {
+            for (int t = targetOffset; t < end; t++, s += stride) {
+                target[t] = (float) view.getDouble(s);
+            }
+        }
+    }
+
+    /**
+     * Converts float samples to integers of the given size. Values outside of -1 and 1 are clamped.
+     *
+     * @param source
+     * @param bytesPerSample Size of the integers. Sizes over 4 bytes are treated as 4.
+     * @param count
+     * @param target
+     */
+    static void fromFloat(float[] source, int bytesPerSample, int count, int[] target) {
+        if (bytesPerSample >= 4) {
+            for (int i = 0; i < count; i++) {
+                // Casting saturates at the limits of int.
+                target[i] = (int) (source[i] * 2147483648.0);
+            }
+
+            return;
+        }
+
+        final double scale = 1L << (bytesPerSample * 8 - 1);
+        final double min = -scale;
+        final double max = scale - 1;
+
+        for (int i = 0; i < count; i++) {
+            target[i] = (int) Math.max(min, Math.min(max, Math.floor(source[i] * scale + 0.5)));
+        }
+    }
+
+    /**
+     * Converts decoded samples to floats between -1 and 1.
+     *
+     * @param source
+     * @param bytesPerSample Size of the samples before they were decoded.
+     * @param count
+     * @param target
+     * @param targetOffset   Where to put the first sample in the target array.
+     */
+    static void toFloat(int[] source, int bytesPerSample, int count, float[] target, int targetOffset) {
+        final float scale = 1.0f / (1L << (Math.min(bytesPerSample, 4) * 8 - 1));
+
+        SampleKernels.get().toFloat(source, scale, count, target, targetOffset);
+    }
+
+    /**
+     * Converts decoded samples to 16 bit values. Narrower samples are scaled up and wider samples keep
+     * their 16 most significant bits.
+     *
+     * @param source
+     * @param bytesPerSample Size of the samples before they were decoded.
+     * @param count
+     * @param target
+     */
+    static void toShort(int[] source, int bytesPerSample, int count, short[] target) {
+        final int bits = Math.min(bytesPerSample, 4) * 8;
+
+        if (bits < 16) {
+            final int shift = 16 - bits;
+
+            for (int i = 0; i < count; i++) {
+                target[i] = (short) (source[i] << shift);
+            }
+        } else {
+            final int shift = bits - 16;
+
+            for (int i = 0; i < count; i++) {
+                target[i] = (short) (source[i] >> shift);
+            }
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.daniel_araujo.wavio;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Turns numbers into little endian PCM samples. The opposite of SampleDecoder.
+ */
+abstract class SampleEncoder {
+    /**
+     * Encodes sign-extended integers of the sample's own width.
+     * <p>
+     * Samples wider than 4 bytes get the integer in their 4 most significant bytes and zeros in the rest.
+     *
+     * @param source
+     * @param bytesPerSample Size of a single sample.
+     * @param count          How many samples to encode.
+     * @param target         Samples are written starting at its position, which is moved forward.
+     */
+    static void encode(int[] source, int bytesPerSample, int count, ByteBuffer target) {
+        if (target.hasArray()) {
+            byte[] array = target.array();
+            int t = target.arrayOffset() + target.position();
+
+            switch (bytesPerSample) {
+                case 1:
+                    for (int i = 0; i < count; i++, t++) {
+                        // 8 bit samples are unsigned.
+                        array[t] = (byte) (source[i] + 128);
+                    }
+                    break;
+                case 2:
+                    for (int i = 0; i < count; i++, t += 2) {
+                        ByteArrayAccess.putShort(array, t, (short) source[i]);
+                    }
+                    break;
+                case 3:
+                    for (int i = 0; i < count; i++, t += 3) {
+                        array[t] = (byte) source[i];
+                        array[t + 1] = (byte) (source[i] >> 8);
+                        array[t + 2] = (byte) (source[i] >> 16);
+                    }
+                    break;
+                default:
+                    for (int i = 0; i < count; i++, t += bytesPerSample) {
+                        int s = t + bytesPerSample - 4;
+
+                        for (int b = t; b < s; b++) {
+                            array[b] = 0;
+                        }
+
+                        ByteArrayAccess.putInt(array, s, source[i]);
+                    }
+                    break;
+            }
+        } else {
+            int t = target.position();
+
+            for (int i = 0; i < count; i++) {
+                int value = bytesPerSample == 1 ? source[i] + 128 : source[i];
+                int s = Math.max(t, t + bytesPerSample - 4);
+
+                for (int b = t; b < s; b++) {
+                    target.put(b, (byte) 0);
+                }
+
+                for (int b = s, shift = 0; b < t + bytesPerSample; b++, shift += 8) {
+                    target.put(b, (byte) (value >> shift));
+                }
+
+                t += bytesPerSample;
+            }
+        }
+
+        target.position(target.position() + count * bytesPerSample);
+    }
+
+    /**
+     * Encodes 32 or 64 bit float samples.
+     *
+     * @param source
+     * @param bytesPerSample 4 or 8.
+     * @param count          How many samples to encode.
+     * @param target         Samples are written starting at its position, which is moved forward.
+     */
+    static void encodeFloat(float[] source, int bytesPerSample, int count, ByteBuffer target) {
+        ByteBuffer view = target.duplicate();
+        view.order(ByteOrder.LITTLE_ENDIAN);
+
+        if (bytesPerSample == 4) {
+            // Bulk copy.
+            view.asFloatBuffer().put(source, 0, count);
+        } else {
+            for (int i = 0; i < count; i++) {
+                view.putDouble(source[i]);
+            }
+        }
+
+        target.position(target.position() + count * bytesPerSample);
+    }
+}
@@ -0,0 +1,101 @@
+package com.daniel_araujo.wavio;
+
+/**
+ * The loops that every decoded sample goes through.
+ * <p>
+ * This class does one sample at a time. On Java 21 and later the JAR also has a version that uses the
+ * incubating Vector API to do many samples at once. It is picked when the application adds the
+ * {@code jdk.incubator.vector} module with {@code --add-modules jdk.incubator.vector}. Setting the system
+ * property {@code wavio.vector} to {@code false} always picks this class.
+ */
+class SampleKernels {
+    private static final SampleKernels INSTANCE = load();
+
+    /**
+     * @return The fastest implementation that works on this JVM.
+     */
+    static SampleKernels get() {
+        return INSTANCE;
+    }
+
+    private static SampleKernels load() {
+        if (!Boolean.parseBoolean(System.getProperty("wavio.vector", "true"))) {
+            return new SampleKernels();
+        }
+
+        try {
+            Class<?> type = Class.forName("com.daniel_araujo.wavio.VectorSampleKernels");
+            return (SampleKernels) type.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError | RuntimeException ex) {
+            // Older JDK, module not added or hardware that it does not support.
+            return new SampleKernels();
+        }
+    }
+
+    /**
+     * Decodes 16 bit samples into sign-extended integers.
+     *
+     * @param source Little endian samples.
+     * @param s      Index of the first byte of the first sample.
+     * @param step   Distance, in samples, between decoded samples.
+     * @param count  How many samples to decode.
+     * @param target
+     * @param t      Where to put the first sample in the target array.
+     */
+    void decode16(byte[] source, int s, int step, int count, int[] target, int t) {
+        final int stride = step * 2;
+        final int end = t + count;
+
+        for (; t < end; t++, s += stride) {
+            target[t] = ByteArrayAccess.getShort(source, s);
+        }
+    }
+
+    /**
+     * Decodes 24 bit samples into sign-extended integers.
+     *
+     * @param source Little endian samples.
+     * @param s      Index of the first byte of the first sample.
+     * @param step   Distance, in samples, between decoded samples.
+     * @param count  How many samples to decode.
+     * @param target
+     * @param t      Where to put the first sample in the target array.
+     */
+    void decode24(byte[] source, int s, int step, int count, int[] target, int t) {
+        final int stride = step * 3;
+        final int end = t + count;
+
+        for (; t < end; t++, s += stride) {
+            target[t] = (source[s] & 0xff) | ((source[s + 1] & 0xff) << 8) | (source[s + 2] << 16);
+        }
+    }
+
+    /**
+     * Converts integers to floats and multiplies them by a scale.
+     *
+     * @param source
+     * @param scale
+     * @param count
+     * @param target
+     * @param t      Where to put the first sample in the target array.
+     */
+    void toFloat(int[] source, float scale, int count, float[] target, int t) {
+        for (int i = 0; i < count; i++) {
+            target[t + i] = source[i] * scale;
+        }
+    }
+
+    /**
+     * Multiplies samples by a gain and adds them to the target.
+     *
+     * @param source
+     * @param gain
+     * @param count
+     * @param target
+     */
+    void multiplyAdd(float[] source, float gain, int count, float[] target) {
+        for (int i = 0; i < count; i++) {
+            target[i] += gain * source[i];
+        }
+    }
+}
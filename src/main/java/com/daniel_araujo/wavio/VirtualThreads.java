@@ -0,0 +1,26 @@
+package com.daniel_araujo.wavio;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Creates executors that run every task on a new virtual thread.
+ * <p>
+ * This version looks virtual threads up at runtime because the library is compiled for older JDKs. The JAR
+ * also has a version for Java 21 and later that uses them directly.
+ */
+abstract class VirtualThreads {
+    /**
+     * @return Null if the JDK does not have virtual threads.
+     */
+    static ExecutorService newExecutor() {
+        try {
+            Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) method.invoke(null);
+        } catch (ReflectiveOperationException ex) {
+            // Not available. JDKs that only have them as a preview throw when they are not enabled.
+            return null;
+        }
+    }
+}
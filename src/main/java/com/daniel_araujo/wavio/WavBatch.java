@@ -0,0 +1,348 @@
+package com.daniel_araujo.wavio;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Processes many wav files at the same time.
+ * <p>
+ * Each file is opened as a WavFile and handed to a processor. At most a fixed number of files are
+ * processed at once. Files run on virtual threads when the JDK has them and on a pool with one thread per
+ * file otherwise.
+ * <p>
+ * Paths are only taken from the iterable as they are needed, so it can be a lazy listing of a huge
+ * directory. A window of upcoming paths is kept and ordered by file size. Files are started alternately
+ * from the large and the small end of the window so that a few big files do not end up running alone at
+ * the end while the other workers sit idle.
+ * <p>
+ * A file that fails is recorded and the batch goes on with the rest.
+ */
+public class WavBatch {
+    /**
+     * How many upcoming paths are looked at when choosing the next file by default.
+     */
+    public static final int DEFAULT_LOOKAHEAD = 64;
+
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+
+    private int lookahead = DEFAULT_LOOKAHEAD;
+
+    private boolean virtualThreads = true;
+
+    /**
+     * Sets how many files are processed at once. Defaults to the number of processors.
+     *
+     * @param parallelism
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("Parallelism must be positive.");
+        }
+
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Sets how many upcoming paths are looked at when choosing the next file. 1 processes files in the
+     * order in which they come. Defaults to DEFAULT_LOOKAHEAD.
+     *
+     * @param lookahead
+     */
+    public void setLookahead(int lookahead) {
+        if (lookahead <= 0) {
+            throw new IllegalArgumentException("Lookahead must be positive.");
+        }
+
+        this.lookahead = lookahead;
+    }
+
+    /**
+     * Sets whether virtual threads are used when the JDK has them. Enabled by default.
+     *
+     * @param virtualThreads
+     */
+    public void setVirtualThreads(boolean virtualThreads) {
+        this.virtualThreads = virtualThreads;
+    }
+
+    /**
+     * Processes every file and waits for all of them to finish.
+     *
+     * @param paths     Files to process.
+     * @param processor Called once per file, from several threads at the same time.
+     * @return What happened.
+     * @throws InterruptedException If the thread is interrupted while waiting. Files that have already
+     *                              started are left to finish in the background.
+     */
+    public Report run(Iterable<Path> paths, final FileProcessor processor) throws InterruptedException {
+        final Report report = new Report();
+        final Semaphore permits = new Semaphore(parallelism);
+        final long start = System.nanoTime();
+
+        ExecutorService executor = createExecutor();
+
+        try {
+            Scheduler scheduler = new Scheduler(paths.iterator(), lookahead);
+            Scheduler.Item item;
+
+            while ((item = scheduler.next()) != null) {
+                final Path path = item.path;
+
+                permits.acquire();
+
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            process(path, processor, report);
+                        } finally {
+                            permits.release();
+                        }
+                    }
+                });
+            }
+
+            // Every permit is back once every file is done.
+            permits.acquire(parallelism);
+            permits.release(parallelism);
+        } finally {
+            executor.shutdown();
+        }
+
+        report.nanos = System.nanoTime() - start;
+        return report;
+    }
+
+    private static void process(Path path, FileProcessor processor, Report report) {
+        try {
+            WavFile file = WavFile.open(path);
+
+            try {
+                processor.process(path, file);
+
+                report.files.incrementAndGet();
+                report.bytes.addAndGet(file.getDataLength());
+                report.frames.addAndGet(file.getFrameCount());
+            } finally {
+                file.close();
+            }
+        } catch (Throwable ex) {
+            report.addFailure(path, ex);
+
+            if (ex instanceof VirtualMachineError) {
+                // Out of memory or a broken JVM. Nothing else will run well either.
+                throw (VirtualMachineError) ex;
+            }
+        }
+    }
+
+    /**
+     * Creates an executor with virtual threads if they are wanted and available, otherwise one with a
+     * thread per file that can run at once.
+     *
+     * @return
+     */
+    private ExecutorService createExecutor() {
+        if (virtualThreads) {
+            ExecutorService executor = VirtualThreads.newExecutor();
+
+            if (executor != null) {
+                return executor;
+            }
+        }
+
+        return Executors.newFixedThreadPool(parallelism);
+    }
+
+    /**
+     * Does something with a file of a batch.
+     */
+    public interface FileProcessor {
+        /**
+         * @param path Path of the file.
+         * @param file Open file, positioned at the first frame. Closed by the batch afterwards.
+         * @throws Exception To mark the file as failed.
+         */
+        void process(Path path, WavFile file) throws Exception;
+    }
+
+    /**
+     * Totals of a batch.
+     */
+    public static class Report {
+        private final AtomicLong files = new AtomicLong();
+
+        private final AtomicLong bytes = new AtomicLong();
+
+        private final AtomicLong frames = new AtomicLong();
+
+        private final List<Failure> failures = Collections.synchronizedList(new ArrayList<Failure>());
+
+        private long nanos;
+
+        /**
+         * @return How many files were processed without failing.
+         */
+        public long getFiles() {
+            return files.get();
+        }
+
+        /**
+         * @return How many bytes of samples the files that did not fail contain.
+         */
+        public long getBytes() {
+            return bytes.get();
+        }
+
+        /**
+         * @return How many frames the files that did not fail contain.
+         */
+        public long getFrames() {
+            return frames.get();
+        }
+
+        /**
+         * @return Files that failed, in the order in which they failed.
+         */
+        public List<Failure> getFailures() {
+            synchronized (failures) {
+                return new ArrayList<>(failures);
+            }
+        }
+
+        /**
+         * @param unit
+         * @return How long the batch took.
+         */
+        public long getDuration(TimeUnit unit) {
+            return unit.convert(nanos, TimeUnit.NANOSECONDS);
+        }
+
+        /**
+         * @return Files that did not fail per second.
+         */
+        public double getFilesPerSecond() {
+            return perSecond(getFiles());
+        }
+
+        /**
+         * @return Bytes of samples per second.
+         */
+        public double getBytesPerSecond() {
+            return perSecond(getBytes());
+        }
+
+        private double perSecond(long count) {
+            return nanos == 0 ? 0 : count * 1e9 / nanos;
+        }
+
+        private void addFailure(Path path, Throwable error) {
+            failures.add(new Failure(path, error));
+        }
+    }
+
+    /**
+     * A file that could not be processed.
+     */
+    public static class Failure {
+        private final Path path;
+
+        private final Throwable error;
+
+        Failure(Path path, Throwable error) {
+            this.path = path;
+            this.error = error;
+        }
+
+        public Path getPath() {
+            return path;
+        }
+
+        /**
+         * @return Thrown while opening or processing the file. Errors, such as a failed assertion, are
+         * recorded too.
+         */
+        public Throwable getError() {
+            return error;
+        }
+    }
+
+    /**
+     * Chooses the next file from a window of upcoming paths, alternating between the largest and the
+     * smallest.
+     */
+    private static class Scheduler {
+        private final Iterator<Path> paths;
+
+        private final int lookahead;
+
+        /**
+         * Upcoming files from the smallest to the largest.
+         */
+        private final List<Item> window = new ArrayList<>();
+
+        private boolean takeLargest = true;
+
+        Scheduler(Iterator<Path> paths, int lookahead) {
+            this.paths = paths;
+            this.lookahead = lookahead;
+        }
+
+        /**
+         * @return Null when there are no more files.
+         */
+        Item next() {
+            while (window.size() < lookahead && paths.hasNext()) {
+                add(new Item(paths.next()));
+            }
+
+            if (window.isEmpty()) {
+                return null;
+            }
+
+            Item item = takeLargest ? window.remove(window.size() - 1) : window.remove(0);
+            takeLargest = !takeLargest;
+            return item;
+        }
+
+        private void add(Item item) {
+            int index = window.size();
+
+            // Files of the same size keep the order in which they came.
+            while (index > 0 && window.get(index - 1).size > item.size) {
+                index--;
+            }
+
+            window.add(index, item);
+        }
+
+        static class Item {
+            final Path path;
+
+            final long size;
+
+            Item(Path path) {
+                this.path = path;
+                this.size = sizeOf(path);
+            }
+
+            private static long sizeOf(Path path) {
+                try {
+                    return Files.size(path);
+                } catch (java.io.IOException ex) {
+                    // It will fail again when it is opened and be reported then.
+                    return 0;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,482 @@
+package com.daniel_araujo.wavio;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reads samples of a wav file that is stored on disk by mapping it into memory.
+ * <p>
+ * The header is parsed once when the file is opened. Samples are then served straight from the mapped
+ * data chunk without being copied. Files that are too big to be mapped at once are mapped in windows
+ * that slide over the data chunk. The last window is kept, so that small reads after seeking do not map
+ * the file again.
+ * <p>
+ * Reading starts at the first frame and continues where the last read stopped. Use seekToFrame or
+ * seekToTime to jump anywhere in the file.
+ */
+public class WavFile implements Closeable {
+    /**
+     * How many bytes are mapped at once by default.
+     */
+    public static final int DEFAULT_WINDOW_SIZE = 64 * 1024 * 1024;
+
+    /**
+     * How many bytes are read at a time while looking for the data chunk.
+     */
+    private static final int HEADER_READ_SIZE = 4096;
+
+    private final FileChannel channel;
+
+    private final WavReader.DataFormat format;
+
+    /**
+     * Position of the first sample in the file.
+     */
+    private final long dataOffset;
+
+    /**
+     * How many bytes of samples there are. Always a whole number of frames.
+     */
+    private final long dataLength;
+
+    /**
+     * Length of the data chunk. The declared one or, if it is 0 or too big, the bytes that are left in the
+     * file. Unlike dataLength, it may not be a whole number of frames.
+     */
+    private final long dataChunkLength;
+
+    /**
+     * How many bytes are mapped at once. Always a whole number of frames.
+     */
+    private final int windowSize;
+
+    /**
+     * Index of the next frame that will be read.
+     */
+    private long framePosition;
+
+    /**
+     * The window that was mapped last. Kept so that many small reads do not map the same region again.
+     */
+    private ByteBuffer window;
+
+    /**
+     * Position in the file where the last mapped window starts. -1 if none has been mapped.
+     */
+    private long windowStart = -1;
+
+    /**
+     * How many regions have been mapped. mapFrames may be called from several threads at once.
+     */
+    private final AtomicLong mapCount = new AtomicLong();
+
+    /**
+     * Chunks of the file. Found the first time they are asked for.
+     */
+    private List<Chunk> chunks;
+
+    private WavFile(FileChannel channel, int windowSize) throws java.io.IOException {
+        this.channel = channel;
+
+        WavReader reader = new WavReader();
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_READ_SIZE);
+        long position = 0;
+
+        while (true) {
+            buffer.clear();
+
+            if (channel.read(buffer, position) == -1) {
+                throw new WavReader.ChunkNotFoundException("data");
+            }
+
+            buffer.flip();
+
+            boolean found = reader.readHeader(buffer);
+
+            position += buffer.position();
+
+            if (found) {
+                break;
+            }
+        }
+
+        format = reader.getDataFormat();
+        dataOffset = position;
+
+        int frameSize = getFrameSize();
+        long available = channel.size() - dataOffset;
+        long declared = reader.getDataChunkLength();
+
+        // Writers that stream their output may leave the length at 0 if they never get to update it.
+        dataChunkLength = declared == 0 || declared > available ? available : declared;
+        dataLength = dataChunkLength - dataChunkLength % frameSize;
+
+        this.windowSize = Math.max(frameSize, windowSize - windowSize % frameSize);
+    }
+
+    /**
+     * Opens a wav file and parses its header.
+     *
+     * @param path
+     * @return
+     */
+    public static WavFile open(Path path) {
+        return open(path, DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * Opens a wav file and parses its header.
+     *
+     * @param path
+     * @param windowSize How many bytes to map at once. Will be rounded down to a whole number of frames.
+     * @return
+     */
+    public static WavFile open(Path path, int windowSize) {
+        FileChannel channel = null;
+
+        try {
+            channel = FileChannel.open(path, StandardOpenOption.READ);
+            return new WavFile(channel, windowSize);
+        } catch (java.io.IOException ex) {
+            closeQuietly(channel);
+            // We wrap it in our own exception object.
+            throw new WavReader.IOException(ex);
+        } catch (RuntimeException ex) {
+            closeQuietly(channel);
+            throw ex;
+        }
+    }
+
+    /**
+     * @return Sample format.
+     */
+    public WavReader.DataFormat getDataFormat() {
+        return format;
+    }
+
+    /**
+     * @return How many frames the data chunk contains.
+     */
+    public long getFrameCount() {
+        return dataLength / getFrameSize();
+    }
+
+    /**
+     * @return Position of the first sample in the file.
+     */
+    public long getDataOffset() {
+        return dataOffset;
+    }
+
+    /**
+     * @return How many bytes of samples the file contains.
+     */
+    public long getDataLength() {
+        return dataLength;
+    }
+
+    /**
+     * Lists the chunks of the file in the order in which they appear. Only the headers of the chunks are
+     * read.
+     *
+     * @return
+     */
+    public List<Chunk> getChunks() {
+        if (chunks != null) {
+            return chunks;
+        }
+
+        List<Chunk> list = new ArrayList<>();
+        ByteBuffer header = ByteBuffer.allocate(8);
+        header.order(ByteOrder.LITTLE_ENDIAN);
+
+        try {
+            final long size = channel.size();
+            // Chunks start after the RIFF header and the WAVE identifier.
+            long position = 12;
+
+            while (position + 8 <= size) {
+                header.clear();
+
+                while (header.hasRemaining()) {
+                    if (channel.read(header, position + header.position()) == -1) {
+                        break;
+                    }
+                }
+
+                header.flip();
+
+                byte[] id = new byte[4];
+                header.get(id);
+                long length = header.getInt() & 0xffffffffL;
+
+                if (position + 8 == dataOffset) {
+                    // RF64 and streamed files do not have the real length in the header of the data chunk.
+                    length = dataChunkLength;
+                }
+
+                list.add(new Chunk(new String(id, StandardCharsets.US_ASCII), position, length));
+
+                // Chunks are padded to an even size.
+                position += 8 + length + (length & 1);
+            }
+        } catch (java.io.IOException ex) {
+            // We wrap it in our own exception object.
+            throw new WavReader.IOException(ex);
+        }
+
+        chunks = Collections.unmodifiableList(list);
+        return chunks;
+    }
+
+    /**
+     * Maps frames into memory.
+     *
+     * @param firstFrame Index of the first frame.
+     * @param frames     How many frames to map. Must fit in a single buffer.
+     * @return Read-only buffer in little endian order containing the frames.
+     */
+    public ByteBuffer mapFrames(long firstFrame, int frames) {
+        int frameSize = getFrameSize();
+
+        if (firstFrame < 0 || frames < 0 || firstFrame + frames > getFrameCount()) {
+            throw new IndexOutOfBoundsException("Frames " + firstFrame + " to " + (firstFrame + frames)
+                    + " are not in the file.");
+        }
+
+        return map(dataOffset + firstFrame * frameSize, (long) frames * frameSize);
+    }
+
+    /**
+     * Copies frames into a new wav file with the same format, including the speaker positions and valid bits
+     * of WAVE_FORMAT_EXTENSIBLE files. The samples are copied from file to file by the operating system, when
+     * it is able to, without passing through the JVM.
+     *
+     * @param firstFrame Index of the first frame.
+     * @param frames     How many frames to copy.
+     * @param target     File to create. Will be replaced if it already exists.
+     */
+    public void extractFrames(long firstFrame, long frames, Path target) {
+        int frameSize = getFrameSize();
+
+        if (firstFrame < 0 || frames < 0 || firstFrame + frames > getFrameCount()) {
+            throw new IndexOutOfBoundsException("Frames " + firstFrame + " to " + (firstFrame + frames)
+                    + " are not in the file.");
+        }
+
+        WavWriter writer = WavWriter.create(target, format);
+
+        try {
+            writer.transferFrom(channel, dataOffset + firstFrame * frameSize, frames * frameSize);
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * @return Index of the next frame that will be read.
+     */
+    public long getFramePosition() {
+        return framePosition;
+    }
+
+    /**
+     * Moves to a frame. The next read will start from it.
+     *
+     * @param frame Index of the frame. Can be equal to the number of frames to move to the end.
+     */
+    public void seekToFrame(long frame) {
+        if (frame < 0 || frame > getFrameCount()) {
+            throw new IndexOutOfBoundsException("Frame " + frame + " is not in the file.");
+        }
+
+        framePosition = frame;
+    }
+
+    /**
+     * Moves to the frame that plays at the given time. The next read will start from it.
+     *
+     * @param time Time since the start of the file.
+     * @param unit Unit of time.
+     */
+    public void seekToTime(long time, TimeUnit unit) {
+        long frame = unit.toMicros(time) * format.getSampleRate() / 1000000;
+
+        seekToFrame(Math.min(frame, getFrameCount()));
+    }
+
+    /**
+     * Passes all samples from the current position to the end to the listeners of a reader. Interleaved
+     * samples are handed out without being copied.
+     *
+     * @param reader Its listeners will be called as if it had read the file from the current position.
+     *               Anything that the reader was in the middle of is discarded.
+     */
+    public void read(WavReader reader) {
+        read(reader, getFrameCount() - framePosition);
+    }
+
+    /**
+     * Passes frames from the current position to the listeners of a reader. Interleaved samples are
+     * handed out without being copied.
+     *
+     * @param reader Its listeners will be called as if it had read the file from the current position.
+     *               Anything that the reader was in the middle of is discarded.
+     * @param frames Maximum number of frames to read. Must not be negative.
+     * @return How many frames were read.
+     */
+    public long read(WavReader reader, long frames) {
+        if (frames < 0) {
+            throw new IllegalArgumentException("Number of frames must not be negative.");
+        }
+
+        reader.startReadingSamples(format, dataLength);
+
+        int frameSize = getFrameSize();
+        long count = Math.min(frames, getFrameCount() - framePosition);
+        long position = dataOffset + framePosition * frameSize;
+        long end = position + count * frameSize;
+
+        while (position < end) {
+            ByteBuffer samples = getWindow(position);
+            int start = (int) (position - windowStart);
+            int size = (int) Math.min(samples.capacity() - start, end - position);
+
+            samples.limit(start + size);
+            samples.position(start);
+            reader.read(samples);
+
+            position += size;
+            framePosition += size / frameSize;
+        }
+
+        return count;
+    }
+
+    /**
+     * Closes the file. Buffers that have already been mapped remain valid.
+     */
+    @Override
+    public void close() {
+        try {
+            channel.close();
+        } catch (java.io.IOException ex) {
+            // We wrap it in our own exception object.
+            throw new WavReader.IOException(ex);
+        }
+    }
+
+    /**
+     * Finds the window that contains a position of the data chunk. Windows start at multiples of the window
+     * size from the first sample so that reads near each other fall in the same one.
+     *
+     * @param position Position in the file.
+     * @return A view of the whole window in little endian order.
+     */
+    private ByteBuffer getWindow(long position) {
+        long start = dataOffset + (position - dataOffset) / windowSize * windowSize;
+
+        if (start != windowStart) {
+            window = map(start, Math.min(windowSize, dataOffset + dataLength - start));
+            windowStart = start;
+        }
+
+        // Listeners get their own position and limit.
+        ByteBuffer view = window.duplicate();
+        view.order(ByteOrder.LITTLE_ENDIAN);
+        return view;
+    }
+
+    /**
+     * Maps a region of the file.
+     *
+     * @param position
+     * @param size
+     * @return Read-only buffer in little endian order.
+     */
+    private ByteBuffer map(long position, long size) {
+        try {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            mapCount.incrementAndGet();
+            return buffer;
+        } catch (java.io.IOException ex) {
+            // We wrap it in our own exception object.
+            throw new WavReader.IOException(ex);
+        }
+    }
+
+    /**
+     * @return How many bytes are mapped at once. Always a whole number of frames.
+     */
+    int getWindowSize() {
+        return windowSize;
+    }
+
+    /**
+     * @return How many regions have been mapped.
+     */
+    long getMapCount() {
+        return mapCount.get();
+    }
+
+    private int getFrameSize() {
+        return format.getBytesPerSample() * format.getChannels();
+    }
+
+    /**
+     * Describes where a chunk is in the file.
+     */
+    public static class Chunk {
+        private final String id;
+
+        private final long offset;
+
+        private final long length;
+
+        /**
+         * @param id     Type id. Always 4 characters.
+         * @param offset Position of the header of the chunk in the file.
+         * @param length Size of the contents of the chunk, not counting the header and padding.
+         */
+        public Chunk(String id, long offset, long length) {
+            this.id = id;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public long getOffset() {
+            return offset;
+        }
+
+        public long getLength() {
+            return length;
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+
+        try {
+            closeable.close();
+        } catch (java.io.IOException ex) {
+            // Ignore.
+        }
+    }
+}
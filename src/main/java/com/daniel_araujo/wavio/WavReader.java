@@ -4,22 +4,65 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Arrays;
 
 /**
- * Reads wave file and extracts PCM samples. This implementation does not respect the data length
- * and will read samples indefinitely. Also only works with PCM audio format.
+ * Reads wave file and extracts samples. By default this implementation does not respect the data length
+ * and will read samples indefinitely, see setRespectDataLength.
+ * <p>
+ * Supported audio formats are integer PCM and 32 or 64 bit IEEE float, either in a plain fmt chunk or in
+ * one that is WAVE_FORMAT_EXTENSIBLE with a PCM or IEEE float sub format. Other audio formats, such as
+ * ADPCM or A-law, throw AudioFormatNotSupportedException.
+ * <p>
+ * Both RIFF files and their 64-bit variants, RF64 and BW64, are supported.
  */
 public class WavReader {
+    /**
+     * How many bytes are read at a time from input streams and channels by default.
+     */
+    public static final int DEFAULT_READ_BUFFER_SIZE = 1024;
+
     /**
      * The state that the reader is in so it always knows what to do with incoming data.
      */
     private State state;
 
+    /*
+     * All states are created up front and reset whenever the reader enters them, so that parsing does not
+     * allocate memory.
+     */
+    private final StateError stateError = new StateError();
+
+    private final StateReadNextChunkHeader stateReadNextChunkHeader = new StateReadNextChunkHeader();
+
+    private final StateRiffChunkIdentifier stateRiffChunkIdentifier = new StateRiffChunkIdentifier();
+
+    private final StateSkipChunk stateSkipChunk = new StateSkipChunk();
+
+    private final StateDs64Chunk stateDs64Chunk = new StateDs64Chunk();
+
+    private final StateFmtChunk stateFmtChunk = new StateFmtChunk();
+
+    private final StateDataSamples stateDataSamples = new StateDataSamples();
+
     /**
      * Set to true when riff chunk has been found.
      */
     private boolean hasFoundRiffWaveChunk;
 
+    /**
+     * Length of the data chunk according to the ds64 chunk of RF64 files. -1 when not known.
+     */
+    private long ds64DataLength = -1;
+
+    /**
+     * When true, samples are only read up to the length of the data chunk and any chunks that come after
+     * it are parsed as well.
+     */
+    private boolean respectDataLength;
+
     /**
      * Data format. This allows you to know how to interpret sample data.
      */
@@ -35,11 +78,128 @@ public class WavReader {
      */
     private OnNoninterleavedSamplesListener onNoninterleavedSamplesListener;
 
+    /**
+     * How many bytes are read at a time from input streams and channels.
+     */
+    private int readBufferSize = DEFAULT_READ_BUFFER_SIZE;
+
+    /**
+     * Buffer for reading from input streams. Created when first needed and then reused.
+     */
+    private byte[] streamBuffer;
+
+    /**
+     * Buffer for reading from channels. Created when first needed and then reused.
+     */
+    private ByteBuffer channelBuffer;
+
+    /**
+     * When true, parsing stops as soon as the reader gets to the first sample.
+     */
+    private boolean stopAtSamples;
+
+    /**
+     * Listener that will receive interleaved samples as floats.
+     */
+    private OnInterleavedFloatSamplesListener onInterleavedFloatSamplesListener;
+
+    /**
+     * Listener that will receive non-interleaved samples as floats.
+     */
+    private OnNoninterleavedFloatSamplesListener onNoninterleavedFloatSamplesListener;
+
+    /**
+     * Listener that will receive views of 32 bit float samples.
+     */
+    private OnInterleavedFloatBufferListener onInterleavedFloatBufferListener;
+
+    /**
+     * Listener that will receive interleaved samples as shorts.
+     */
+    private OnInterleavedShortSamplesListener onInterleavedShortSamplesListener;
+
+    /**
+     * Listener that will receive non-interleaved samples as shorts.
+     */
+    private OnNoninterleavedShortSamplesListener onNoninterleavedShortSamplesListener;
+
+    /**
+     * Listener that will receive interleaved samples as ints.
+     */
+    private OnInterleavedIntSamplesListener onInterleavedIntSamplesListener;
+
+    /**
+     * Listener that will receive non-interleaved samples as ints.
+     */
+    private OnNoninterleavedIntSamplesListener onNoninterleavedIntSamplesListener;
+
+    /**
+     * Supplies the buffers of non-interleaved samples. When null, new buffers are allocated for every call.
+     */
+    private ChannelBufferProvider channelBufferProvider;
+
+    /**
+     * Counters updated while reading. Null when nothing is counted.
+     */
+    private WavReaderMetrics metrics;
+
+    /**
+     * Time spent in listeners and how many were called during the current call to onSamples.
+     */
+    private long listenerNanos;
+
+    private int listenerCalls;
+
+    /**
+     * Time spent in onSamples during the current call to process.
+     */
+    private long samplesNanos;
+
+    /**
+     * Channels that non-interleaved listeners receive. When null, they receive every channel of the file.
+     */
+    private ChannelRouting channelRouting;
+
+    /**
+     * Array handed to the non-interleaved samples listener. Only reused when buffers come from a provider.
+     */
+    private ByteBuffer[] reusableChannelBuffers;
+
+    /**
+     * Splits frames into channels for the non-interleaved samples listener.
+     */
+    private final Deinterleaver deinterleaver = new Deinterleaver();
+
+    /**
+     * Decoded interleaved samples. Reused between calls and grown as needed.
+     */
+    private int[] intSamples = new int[0];
+
+    private float[] floatSamples = new float[0];
+
+    private short[] shortSamples = new short[0];
+
+    /**
+     * Decoded non-interleaved samples. Reused between calls and grown as needed.
+     */
+    private int[][] intChannels = new int[0][];
+
+    private float[][] floatChannels = new float[0][];
+
+    private short[][] shortChannels = new short[0][];
+
+    /**
+     * Samples of a single channel of the file while channels are being mixed.
+     */
+    private int[] mixInts = new int[0];
+
+    private float[] mixFloats = new float[0];
+
     /**
      * Creates a new reader. Expects to read a file from the start.
      */
     public WavReader() {
-        state = new StateReadNextChunkHeader();
+        state = stateReadNextChunkHeader.reset();
     }
 
     /**
@@ -74,15 +234,55 @@ public class WavReader {
      * @param input
      */
     public void read(InputStream input) {
+        if (streamBuffer == null || streamBuffer.length != readBufferSize) {
+            streamBuffer = new byte[readBufferSize];
+        }
+
         try {
-            byte[] buffer = new byte[1024];
+            byte[] buffer = streamBuffer;
             int length = 0;
             while ((length = input.read(buffer)) != -1) {
                 read(buffer, 0, length);
             }
         } catch (java.io.IOException ex) {
             // We wrap it in our own exception object.
-            throw new IOException(ex);
+            throw countError(new IOException(ex));
+        }
+    }
+
+    /**
+     * Reads data from a channel until it reaches the end. Data goes through a direct buffer that is
+     * reused between calls, so that the channel can fill native memory without copying it to the heap.
+     *
+     * @param input A blocking channel.
+     */
+    public void read(ReadableByteChannel input) {
+        if (channelBuffer == null || channelBuffer.capacity() != readBufferSize) {
+            channelBuffer = ByteBuffer.allocateDirect(readBufferSize);
+        }
+
+        read(input, channelBuffer);
+    }
+
+    /**
+     * Reads data from a channel until it reaches the end.
+     *
+     * @param input  A blocking channel.
+     * @param buffer Buffer that the channel will fill. Its whole capacity is used and its contents are
+     *               overwritten.
+     */
+    public void read(ReadableByteChannel input, ByteBuffer buffer) {
+        try {
+            buffer.clear();
+
+            while (input.read(buffer) != -1) {
+                buffer.flip();
+                read(buffer);
+                buffer.clear();
+            }
+        } catch (java.io.IOException ex) {
+            // We wrap it in our own exception object.
+            throw countError(new IOException(ex));
         }
     }
 
@@ -100,6 +300,52 @@ public class WavReader {
         input.position(buffer.position());
     }
 
+    /**
+     * Reads data until reaching the first sample. Listeners are not called. Updates position, which will
+     * point to the first sample if the data chunk was found.
+     *
+     * @param input
+     * @return True if the reader is now ready to read samples, false if it needs more data.
+     */
+    boolean readHeader(ByteBuffer input) {
+        stopAtSamples = true;
+
+        try {
+            read(input);
+        } finally {
+            stopAtSamples = false;
+        }
+
+        return isReadingSamples();
+    }
+
+    /**
+     * Puts the reader directly in the state of reading samples, as if it had just parsed the header of a
+     * data chunk.
+     *
+     * @param format     Format of the samples.
+     * @param dataLength Length of the data chunk.
+     */
+    void startReadingSamples(DataFormat format, long dataLength) {
+        this.format = format;
+        hasFoundRiffWaveChunk = true;
+        state = stateDataSamples.reset(dataLength, getFrameSize());
+    }
+
+    /**
+     * @return True if the reader got to the samples of the data chunk.
+     */
+    boolean isReadingSamples() {
+        return state == stateDataSamples;
+    }
+
+    /**
+     * @return The length of the data chunk as written in its header. Only available while reading samples.
+     */
+    long getDataChunkLength() {
+        return stateDataSamples.length;
+    }
+
     /**
      * @return Sample format.
      */
@@ -107,6 +353,35 @@ public class WavReader {
         return format;
     }
 
+    /**
+     * Sets how many bytes are read at a time from input streams and channels. Bigger sizes mean fewer
+     * system calls and fewer listener calls.
+     *
+     * @param size Defaults to DEFAULT_READ_BUFFER_SIZE.
+     */
+    public void setReadBufferSize(int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Read buffer size must be positive.");
+        }
+
+        readBufferSize = size;
+    }
+
+    /**
+     * Controls what happens when the reader gets to the end of the data chunk.
+     * <p>
+     * When false, which is the default, everything after the data chunk header is considered to be
+     * samples. This allows reading from streams whose headers were written before their length was known.
+     * <p>
+     * When true, the reader only reads as many samples as the data chunk says it contains and then goes
+     * on to parse any chunks that follow it.
+     *
+     * @param respect
+     */
+    public void setRespectDataLength(boolean respect) {
+        respectDataLength = respect;
+    }
+
     /**
      * Registers a listener that will receive interleaved samples.
      *
@@ -125,6 +400,104 @@ public class WavReader {
         onNoninterleavedSamplesListener = listener;
     }
 
+    /**
+     * Registers a listener that will receive interleaved samples converted to floats between -1 and 1.
+     *
+     * @param listener Can be null to remove existing listener.
+     */
+    public void setOnInterleavedFloatSamplesListener(OnInterleavedFloatSamplesListener listener) {
+        onInterleavedFloatSamplesListener = listener;
+    }
+
+    /**
+     * Registers a listener that will receive non-interleaved samples converted to floats between -1 and 1.
+     *
+     * @param listener Can be null to remove existing listener.
+     */
+    public void setOnNoninterleavedFloatSamplesListener(OnNoninterleavedFloatSamplesListener listener) {
+        onNoninterleavedFloatSamplesListener = listener;
+    }
+
+    /**
+     * Registers a listener that will receive 32 bit float samples exactly as they are stored, through a view
+     * of the data. Not called for any other format.
+     *
+     * @param listener Can be null to remove existing listener.
+     */
+    public void setOnInterleavedFloatBufferListener(OnInterleavedFloatBufferListener listener) {
+        onInterleavedFloatBufferListener = listener;
+    }
+
+    /**
+     * Registers a listener that will receive interleaved samples converted to 16 bit values.
+     *
+     * @param listener Can be null to remove existing listener.
+     */
+    public void setOnInterleavedShortSamplesListener(OnInterleavedShortSamplesListener listener) {
+        onInterleavedShortSamplesListener = listener;
+    }
+
+    /**
+     * Registers a listener that will receive non-interleaved samples converted to 16 bit values.
+     *
+     * @param listener Can be null to remove existing listener.
+     */
+    public void setOnNoninterleavedShortSamplesListener(OnNoninterleavedShortSamplesListener listener) {
+        onNoninterleavedShortSamplesListener = listener;
+    }
+
+    /**
+     * Registers a listener that will receive interleaved samples as sign-extended integers.
+     *
+     * @param listener Can be null to remove existing listener.
+     */
+    public void setOnInterleavedIntSamplesListener(OnInterleavedIntSamplesListener listener) {
+        onInterleavedIntSamplesListener = listener;
+    }
+
+    /**
+     * Registers a listener that will receive non-interleaved samples as sign-extended integers.
+     *
+     * @param listener Can be null to remove existing listener.
+     */
+    public void setOnNoninterleavedIntSamplesListener(OnNoninterleavedIntSamplesListener listener) {
+        onNoninterleavedIntSamplesListener = listener;
+    }
+
+    /**
+     * Lets you supply the buffers that will hold the samples of each channel before they are passed to
+     * the non-interleaved samples listener. Buffers and the array that contains them are then only valid
+     * for the duration of the call to the listener.
+     *
+     * @param provider Can be null to go back to allocating new buffers for every call.
+     */
+    public void setChannelBufferProvider(ChannelBufferProvider provider) {
+        channelBufferProvider = provider;
+    }
+
+    /**
+     * Selects, reorders or mixes the channels that non-interleaved listeners receive. The routing is
+     * applied while samples are split into channels, so channels that are not used cost nothing.
+     * <p>
+     * Mixed channels are passed to the non-interleaved samples listener in the format of the file.
+     * Interleaved listeners are not affected.
+     *
+     * @param routing Can be null to receive every channel of the file.
+     */
+    public void setChannelRouting(ChannelRouting routing) {
+        channelRouting = routing;
+    }
+
+    /**
+     * Lets the reader count what it does and measure where time goes. Counting costs a few reads of the
+     * clock per read and per listener call.
+     *
+     * @param metrics Can be null to stop counting.
+     */
+    public void setMetrics(WavReaderMetrics metrics) {
+        this.metrics = metrics;
+    }
+
     /**
      * Interface for receiving interleaved samples.
      */
@@ -150,256 +523,720 @@ public class WavReader {
     }
 
     /**
-     * Does all the parsing.
+     * Interface for receiving interleaved samples as floats.
+     */
+    public interface OnInterleavedFloatSamplesListener {
+        /**
+         * Receives samples. The array is reused by the reader and is only valid during this call.
+         *
+         * @param samples Samples between -1 and 1.
+         * @param length  How many elements of the array hold samples. Always a multiple of the number of channels.
+         */
+        void onInterleavedFloatSamples(float[] samples, int length);
+    }
+
+    /**
+     * Interface for receiving non-interleaved samples as floats.
+     */
+    public interface OnNoninterleavedFloatSamplesListener {
+        /**
+         * Receives samples. The arrays are reused by the reader and are only valid during this call.
+         *
+         * @param channels Each element contains the samples, between -1 and 1, of the corresponding channel.
+         * @param length   How many elements of each channel array hold samples.
+         */
+        void onNoninterleavedFloatSamples(float[][] channels, int length);
+    }
+
+    /**
+     * Interface for receiving views of 32 bit float samples.
+     */
+    public interface OnInterleavedFloatBufferListener {
+        /**
+         * Receives samples without them being copied.
+         *
+         * @param samples Interleaved samples, from position to limit. Only valid during this call.
+         */
+        void onInterleavedFloatBuffer(FloatBuffer samples);
+    }
+
+    /**
+     * Interface for receiving interleaved samples as shorts.
+     */
+    public interface OnInterleavedShortSamplesListener {
+        /**
+         * Receives samples. The array is reused by the reader and is only valid during this call.
+         *
+         * @param samples 16 bit samples.
+         * @param length  How many elements of the array hold samples. Always a multiple of the number of channels.
+         */
+        void onInterleavedShortSamples(short[] samples, int length);
+    }
+
+    /**
+     * Interface for receiving non-interleaved samples as shorts.
+     */
+    public interface OnNoninterleavedShortSamplesListener {
+        /**
+         * Receives samples. The arrays are reused by the reader and are only valid during this call.
+         *
+         * @param channels Each element contains the 16 bit samples of the corresponding channel.
+         * @param length   How many elements of each channel array hold samples.
+         */
+        void onNoninterleavedShortSamples(short[][] channels, int length);
+    }
+
+    /**
+     * Interface for receiving interleaved samples as ints.
+     */
+    public interface OnInterleavedIntSamplesListener {
+        /**
+         * Receives samples. The array is reused by the reader and is only valid during this call.
+         *
+         * @param samples Samples sign-extended from their original size. 8 bit samples are centered around 0.
+         * @param length  How many elements of the array hold samples. Always a multiple of the number of channels.
+         */
+        void onInterleavedIntSamples(int[] samples, int length);
+    }
+
+    /**
+     * Interface for receiving non-interleaved samples as ints.
+     */
+    public interface OnNoninterleavedIntSamplesListener {
+        /**
+         * Receives samples. The arrays are reused by the reader and are only valid during this call.
+         *
+         * @param channels Each element contains the samples of the corresponding channel, sign-extended from
+         *                 their original size. 8 bit samples are centered around 0.
+         * @param length   How many elements of each channel array hold samples.
+         */
+        void onNoninterleavedIntSamples(int[][] channels, int length);
+    }
+
+    /**
+     * Interface for supplying buffers for non-interleaved samples.
+     */
+    public interface ChannelBufferProvider {
+        /**
+         * Provides a buffer for the samples of a channel. The reader will overwrite its contents and
+         * change its position, limit and byte order.
+         *
+         * @param channel  Index of the channel.
+         * @param capacity How many bytes will be written to the buffer.
+         * @return A buffer whose capacity is at least the requested one.
+         */
+        ByteBuffer getChannelBuffer(int channel, int capacity);
+    }
+
+    /**
+     * Hands out the same buffer for a channel every time, only allocating a new one when it is not big
+     * enough. Once the sizes of reads settle, reading non-interleaved samples no longer allocates memory.
+     */
+    public static class ReusableChannelBufferProvider implements ChannelBufferProvider {
+        private ByteBuffer[] buffers = new ByteBuffer[0];
+
+        @Override
+        public ByteBuffer getChannelBuffer(int channel, int capacity) {
+            if (channel >= buffers.length) {
+                buffers = Arrays.copyOf(buffers, channel + 1);
+            }
+
+            if (buffers[channel] == null || buffers[channel].capacity() < capacity) {
+                buffers[channel] = ByteBuffer.allocate(capacity);
+            }
+
+            return buffers[channel];
+        }
+    }
+
+    /**
+     * Does all the parsing. Goes from state to state until one of them needs more data.
      *
      * @param input
      */
     private void process(ByteBuffer input) {
-        if (state instanceof StateReadNextChunkHeader) {
-            StateReadNextChunkHeader stateImpl = (StateReadNextChunkHeader) state;
+        if (metrics == null) {
+            while (state.process(input)) {
+                // Continue.
+            }
 
-            if (!readInputUntilReachingPosition(input, stateImpl.data, 8)) {
-                // Not enough data.
-                return;
+            return;
+        }
+
+        final long start = System.nanoTime();
+        final int position = input.position();
+        samplesNanos = 0;
+
+        try {
+            while (state.process(input)) {
+                // Continue.
             }
+        } catch (RuntimeException ex) {
+            throw countError(ex);
+        } finally {
+            metrics.addBytesRead(input.position() - position);
+            // Whatever was not spent on samples was spent parsing.
+            metrics.addParseNanos(System.nanoTime() - start - samplesNanos);
+        }
+    }
 
-            stateImpl.data.position(0);
-            RiffUtils.ChunkHeader chunkHeader = RiffUtils.parseChunkHeader(stateImpl.data);
+    /**
+     * Counts an exception that is about to be thrown.
+     *
+     * @param ex
+     * @return The same exception.
+     */
+    private RuntimeException countError(RuntimeException ex) {
+        if (metrics != null) {
+            metrics.addError(ex);
+        }
 
-            state = new StateInterpretChunkHeader(chunkHeader);
+        return ex;
+    }
 
-            // Continue.
-            process(input);
-        } else if (state instanceof StateInterpretChunkHeader) {
-            StateInterpretChunkHeader stateImpl = (StateInterpretChunkHeader) state;
+    /**
+     * Decides what to do with a chunk based on its header.
+     *
+     * @param typeId FourCC of the chunk.
+     * @param length Length of the chunk.
+     */
+    private void interpretChunkHeader(int typeId, long length) {
+        if (typeId == RiffUtils.RIFF || typeId == RiffUtils.RF64 || typeId == RiffUtils.BW64) {
+            state = stateRiffChunkIdentifier.reset();
+        } else if (typeId == RiffUtils.DS64 && hasFoundRiffWaveChunk) {
+            if (length < StateDs64Chunk.MIN_LENGTH) {
+                // Would take the bytes of the next chunk for its fields.
+                state = stateError;
+                throw new ChunkTooShortException("ds64");
+            }
 
-            if (stateImpl.header.typeId.equals("RIFF")) {
-                state = new StateRiffChunkIdentifier();
-            } else if (stateImpl.header.typeId.equals("fmt ")) {
-                state = new StateFmtChunk(stateImpl.header);
-            } else if (stateImpl.header.typeId.equals("data")) {
-                if (format != null) {
-                    state = new StateDataSamples(stateImpl.header);
-                } else {
-                    state = new StateError();
-                    throw new MissingFormatSpecificationException();
+            state = stateDs64Chunk.reset(length);
+        } else if (typeId == RiffUtils.FMT) {
+            if (length < StateFmtChunk.MIN_LENGTH) {
+                // Would take the bytes of the next chunk for its fields.
+                state = stateError;
+                throw new ChunkTooShortException("fmt ");
+            }
+
+            state = stateFmtChunk.reset(length);
+        } else if (typeId == RiffUtils.DATA) {
+            if (format != null) {
+                if (length == RiffUtils.UNKNOWN_LENGTH && ds64DataLength != -1) {
+                    // The real length is too big for 32 bits.
+                    length = ds64DataLength;
                 }
+
+                state = stateDataSamples.reset(length, getFrameSize());
             } else {
-                if (hasFoundRiffWaveChunk) {
-                    state = new StateSkipChunk(stateImpl.header);
-                } else {
-                    state = new StateError();
-                    throw new ChunkNotFoundException("RIFF");
+                state = stateError;
+                throw new MissingFormatSpecificationException();
+            }
+        } else {
+            if (hasFoundRiffWaveChunk) {
+                if (metrics != null) {
+                    metrics.addChunkSkipped();
                 }
+
+                state = stateSkipChunk.reset(length, 0);
+            } else {
+                state = stateError;
+                throw new ChunkNotFoundException("RIFF");
             }
+        }
+    }
+
+    /**
+     * Passes complete frames to listeners and keeps incomplete ones for later. Consumes all input.
+     *
+     * @param stateImpl
+     * @param input
+     */
+    private void processSamples(StateDataSamples stateImpl, ByteBuffer input) {
+        int frameSize = getFrameSize();
+
+        if (stateImpl.incompleteFrame.position() > 0) {
+            // We have an incomplete frame.
 
-            // Continue.
-            process(input);
-        } else if (state instanceof StateRiffChunkIdentifier) {
-            StateRiffChunkIdentifier stateImpl = (StateRiffChunkIdentifier) state;
+            int missingBytes = frameSize - stateImpl.incompleteFrame.position();
 
-            if (!readInputUntilReachingPosition(input, stateImpl.data, 4)) {
+            if (input.remaining() >= missingBytes) {
+                input.position(input.position() + missingBytes);
+
+                ByteBuffer remainingFrame = input.duplicate();
+                remainingFrame.limit(remainingFrame.position());
+                remainingFrame.position(remainingFrame.position() - missingBytes);
+                stateImpl.incompleteFrame.put(remainingFrame);
+
+                stateImpl.incompleteFrame.position(0);
+                stateImpl.incompleteFrame.limit(frameSize);
+
+                // Duplicated so that our ByteBuffer object is not affected.
+                ByteBuffer samples = stateImpl.incompleteFrame.duplicate();
+                samples.order(stateImpl.incompleteFrame.order());
+                onSamples(samples);
+
+                if (metrics != null) {
+                    metrics.addStitchedFrame();
+                }
+
+                stateImpl.incompleteFrame.limit(stateImpl.incompleteFrame.capacity());
+            } else {
+                stateImpl.incompleteFrame.put(input);
                 // Not enough data.
                 return;
             }
+        }
 
-            stateImpl.data.position(0);
+        if (input.remaining() > 0) {
+            int incompleteFrameSize = input.remaining() % frameSize;
 
-            byte[] identifierChars = new byte[4];
-            stateImpl.data.get(identifierChars);
+            int available = input.remaining() - incompleteFrameSize;
 
-            if (!new String(identifierChars).equals("WAVE")) {
-                state = new StateError();
-                throw new MissingWaveIdentifierException();
+            if (available > 0) {
+                ByteBuffer samples = input.duplicate();
+                samples.order(input.order());
+                samples.limit(samples.limit() - incompleteFrameSize);
+
+                onSamples(samples);
+
+                input.position(input.limit() - incompleteFrameSize);
             }
 
-            hasFoundRiffWaveChunk = true;
+            if (incompleteFrameSize > 0) {
+                input.position(input.limit() - incompleteFrameSize);
+                stateImpl.incompleteFrame.put(input);
+            }
+        }
+    }
 
-            state = new StateReadNextChunkHeader();
+    /**
+     * Gets data from input and puts in holder until holder reaches given position.
+     *
+     * @param input
+     * @param holder
+     * @param position
+     * @return True if reached position, false otherwise.
+     */
+    private boolean readInputUntilReachingPosition(ByteBuffer input, ByteBuffer holder, int position) {
+        while (holder.position() < position) {
+            if (!input.hasRemaining()) {
+                // No more data available.
+                return false;
+            }
 
-            // Continue.
-            process(input);
-        } else if (state instanceof StateSkipChunk) {
-            StateSkipChunk stateImpl = (StateSkipChunk) state;
+            holder.put(input.get());
+        }
 
-            if (input.remaining() == 0) {
-                return;
+        return holder.position() >= position;
+    }
+
+    /**
+     * Moves the position of the input forward.
+     *
+     * @param input
+     * @param length How many bytes to skip.
+     * @return The position before skipping.
+     */
+    private static int skipInput(ByteBuffer input, int length) {
+        int index = input.position();
+        input.position(index + length);
+        return index;
+    }
+
+    /**
+     * Returns frame size based on sample format.
+     *
+     * @return
+     */
+    private int getFrameSize() {
+        return format.getBytesPerSample() * format.getChannels();
+    }
+
+    /**
+     * Dispatches samples listeners and measures how long it takes.
+     *
+     * @param samples
+     */
+    private void onSamples(ByteBuffer samples) {
+        if (metrics == null) {
+            dispatchSamples(samples);
+            return;
+        }
+
+        final long start = System.nanoTime();
+        final int frames = samples.remaining() / getFrameSize();
+        listenerNanos = 0;
+        listenerCalls = 0;
+
+        try {
+            dispatchSamples(samples);
+        } finally {
+            long total = System.nanoTime() - start;
+            samplesNanos += total;
+
+            metrics.addFramesDelivered(frames);
+            metrics.addCallbacks(listenerCalls);
+            metrics.addListenerNanos(listenerNanos);
+            // Whatever was not spent in listeners was spent preparing samples for them.
+            metrics.addDeinterleaveNanos(total - listenerNanos);
+        }
+    }
+
+    /**
+     * @return Current time if metrics are being collected.
+     */
+    private long startTiming() {
+        return metrics == null ? 0 : System.nanoTime();
+    }
+
+    /**
+     * Counts a listener call that started at the given time.
+     *
+     * @param started
+     */
+    private void stopListenerTiming(long started) {
+        if (metrics != null) {
+            listenerNanos += System.nanoTime() - started;
+            listenerCalls++;
+        }
+    }
+
+    /**
+     * Dispatches samples listeners.
+     *
+     * @param samples
+     */
+    private void dispatchSamples(ByteBuffer samples) {
+        // Listeners are allowed to consume the buffer so we need to rewind it for the next one.
+        final int position = samples.position();
+        final int limit = samples.limit();
+
+        if (onInterleavedSamplesListener != null) {
+            long started = startTiming();
+            onInterleavedSamplesListener.onInterleavedSamples(samples);
+            stopListenerTiming(started);
+            samples.limit(limit);
+            samples.position(position);
+        }
+
+        if (channelRouting != null) {
+            channelRouting.check(format.getChannels());
+        }
+
+        if (onNoninterleavedSamplesListener != null) {
+            final int channels = getOutputChannels();
+            final int frameSize = getFrameSize();
+            final int bytesPerSample = format.getBytesPerSample();
+            final int samplesPerChannel = samples.remaining() / frameSize;
+
+            ByteBuffer[] noninterleavedSamples = createChannelBufferArray(channels);
+
+            for (int c = 0; c < channels; c++) {
+                ByteBuffer channelBuffer = createChannelBuffer(c, samplesPerChannel * bytesPerSample);
+
+                // Even though we're writing in bytes, making the buffer explicitly little endian allows the user to
+                // convert it to other types, such as ShortBuffer, while preserving the correct order.
+                channelBuffer.order(ByteOrder.LITTLE_ENDIAN);
+
+                noninterleavedSamples[c] = channelBuffer;
             }
 
-            int toSkip = realChunkSize(stateImpl.header.length) - stateImpl.skipped;
+            if (channelRouting == null) {
+                deinterleaver.deinterleave(samples, noninterleavedSamples, bytesPerSample, samplesPerChannel);
+            } else if (channelRouting.isSelection()) {
+                deinterleaver.deinterleave(samples, noninterleavedSamples, bytesPerSample, samplesPerChannel,
+                        channelRouting.getSelection(), format.getChannels());
+            } else {
+                mixChannels(samples, samplesPerChannel);
 
-            if (toSkip > input.remaining()) {
-                toSkip = input.remaining();
+                // Mixed samples are encoded back into the format of the file.
+                for (int c = 0; c < channels; c++) {
+                    ByteBuffer channelBuffer = noninterleavedSamples[c];
+
+                    if (format.isFloat()) {
+                        SampleEncoder.encodeFloat(floatChannels[c], bytesPerSample, samplesPerChannel, channelBuffer);
+                    } else {
+                        SampleDecoder.fromFloat(floatChannels[c], bytesPerSample, samplesPerChannel, intChannels[c]);
+                        SampleEncoder.encode(intChannels[c], bytesPerSample, samplesPerChannel, channelBuffer);
+                    }
+
+                    channelBuffer.position(0);
+                }
             }
 
-            input.position(input.position() + toSkip);
+            long started = startTiming();
+            onNoninterleavedSamplesListener.onNoninterleavedSamples(noninterleavedSamples);
+            stopListenerTiming(started);
+            samples.limit(limit);
+            samples.position(position);
+        }
+
+        if (onInterleavedFloatBufferListener != null && format.isFloat() && format.getBytesPerSample() == 4) {
+            ByteBuffer view = samples.duplicate();
+            view.order(ByteOrder.LITTLE_ENDIAN);
+            long started = startTiming();
+            onInterleavedFloatBufferListener.onInterleavedFloatBuffer(view.asFloatBuffer());
+            stopListenerTiming(started);
+        }
+
+        if (onInterleavedFloatSamplesListener != null || onInterleavedShortSamplesListener != null
+                || onInterleavedIntSamplesListener != null) {
+            onInterleavedDecodedSamples(samples);
+        }
+
+        if (onNoninterleavedFloatSamplesListener != null || onNoninterleavedShortSamplesListener != null
+                || onNoninterleavedIntSamplesListener != null) {
+            onNoninterleavedDecodedSamples(samples);
+        }
+    }
 
-            stateImpl.skipped += toSkip;
+    /**
+     * Decodes samples and dispatches interleaved listeners of decoded samples.
+     *
+     * @param samples
+     */
+    private void onInterleavedDecodedSamples(ByteBuffer samples) {
+        final int bytesPerSample = format.getBytesPerSample();
+        final int length = samples.remaining() / getFrameSize() * format.getChannels();
 
-            if (stateImpl.skipped == realChunkSize(stateImpl.header.length)) {
-                state = new StateReadNextChunkHeader();
+        if (intSamples.length < length) {
+            intSamples = new int[length];
+        }
+
+        if (floatSamples.length < length) {
+            floatSamples = new float[length];
+        }
+
+        if (format.isFloat()) {
+            // Floats are read as they are. Integers span the whole 32 bit range.
+            SampleDecoder.decodeFloat(samples, bytesPerSample, 0, 1, length, floatSamples, 0);
+
+            if (onInterleavedShortSamplesListener != null || onInterleavedIntSamplesListener != null) {
+                SampleDecoder.fromFloat(floatSamples, 4, length, intSamples);
             }
+        } else {
+            SampleDecoder.decode(samples, bytesPerSample, 0, 1, length, intSamples, 0);
 
-            process(input);
-        } else if (state instanceof StateFmtChunk) {
-            StateFmtChunk stateImpl = (StateFmtChunk) state;
+            // All conversions happen before any listener gets to touch the decoded samples.
+            if (onInterleavedFloatSamplesListener != null) {
+                SampleDecoder.toFloat(intSamples, bytesPerSample, length, floatSamples, 0);
+            }
+        }
 
-            if (!readInputUntilReachingPosition(input, stateImpl.data, stateImpl.header.length)) {
-                // Not enough data.
-                return;
+        if (onInterleavedShortSamplesListener != null) {
+            if (shortSamples.length < length) {
+                shortSamples = new short[length];
             }
 
-            stateImpl.data.position(0);
+            SampleDecoder.toShort(intSamples, getDecodedBytesPerSample(), length, shortSamples);
+        }
 
-            DataFormat format = new DataFormat();
-            int audioFormat = stateImpl.data.getShort();
+        if (onInterleavedFloatSamplesListener != null) {
+            long started = startTiming();
+            onInterleavedFloatSamplesListener.onInterleavedFloatSamples(floatSamples, length);
+            stopListenerTiming(started);
+        }
 
-            if (audioFormat != 1) {
-                throw new AudioFormatNotSupportedException();
-            }
+        if (onInterleavedShortSamplesListener != null) {
+            long started = startTiming();
+            onInterleavedShortSamplesListener.onInterleavedShortSamples(shortSamples, length);
+            stopListenerTiming(started);
+        }
 
-            format.channels = stateImpl.data.getShort();
-            format.sampleRate = stateImpl.data.getInt();
-            int byteRate = stateImpl.data.getInt();
-            int blockAlign = stateImpl.data.getShort();
-            format.bitsPerSample = stateImpl.data.getShort();
+        if (onInterleavedIntSamplesListener != null) {
+            long started = startTiming();
+            onInterleavedIntSamplesListener.onInterleavedIntSamples(intSamples, length);
+            stopListenerTiming(started);
+        }
+    }
 
-            this.format = format;
+    /**
+     * Decodes samples and dispatches non-interleaved listeners of decoded samples.
+     *
+     * @param samples
+     */
+    private void onNoninterleavedDecodedSamples(ByteBuffer samples) {
+        final int channels = format.getChannels();
+        final int outputs = getOutputChannels();
+        final int bytesPerSample = format.getBytesPerSample();
+        final int length = samples.remaining() / getFrameSize();
+
+        if (channelRouting != null && !channelRouting.isSelection()) {
+            mixChannels(samples, length);
+
+            if (onNoninterleavedShortSamplesListener != null || onNoninterleavedIntSamplesListener != null) {
+                for (int c = 0; c < outputs; c++) {
+                    SampleDecoder.fromFloat(floatChannels[c], getDecodedBytesPerSample(), length, intChannels[c]);
+                }
+            }
+        } else {
+            createDecodedChannels(outputs, length);
 
-            state = new StateReadNextChunkHeader();
+            for (int c = 0; c < outputs; c++) {
+                // Only the channels that are selected are decoded.
+                final int first = channelRouting == null ? c : channelRouting.getSelection()[c];
 
-            // Continue.
-            process(input);
-        } else if (state instanceof StateDataSamples) {
-            StateDataSamples stateImpl = (StateDataSamples) state;
+                if (format.isFloat()) {
+                    // Floats are read as they are. Integers span the whole 32 bit range.
+                    SampleDecoder.decodeFloat(samples, bytesPerSample, first, channels, length, floatChannels[c], 0);
 
-            int frameSize = getFrameSize();
+                    if (onNoninterleavedShortSamplesListener != null || onNoninterleavedIntSamplesListener != null) {
+                        SampleDecoder.fromFloat(floatChannels[c], 4, length, intChannels[c]);
+                    }
+                } else {
+                    SampleDecoder.decode(samples, bytesPerSample, first, channels, length, intChannels[c], 0);
 
-            if (stateImpl.incompleteFrame.position() > 0) {
-                // We have an incomplete frame.
+                    // All conversions happen before any listener gets to touch the decoded samples.
+                    if (onNoninterleavedFloatSamplesListener != null) {
+                        SampleDecoder.toFloat(intChannels[c], bytesPerSample, length, floatChannels[c], 0);
+                    }
+                }
+            }
+        }
 
-                int missingBytes = frameSize - stateImpl.incompleteFrame.position();
+        if (onNoninterleavedShortSamplesListener != null) {
+            for (int c = 0; c < outputs; c++) {
+                if (shortChannels[c].length < length) {
+                    shortChannels[c] = new short[length];
+                }
 
-                if (input.remaining() >= missingBytes) {
-                    input.position(input.position() + missingBytes);
+                SampleDecoder.toShort(intChannels[c], getDecodedBytesPerSample(), length, shortChannels[c]);
+            }
+        }
 
-                    ByteBuffer remainingFrame = input.duplicate();
-                    remainingFrame.limit(remainingFrame.position());
-                    remainingFrame.position(remainingFrame.position() - missingBytes);
-                    stateImpl.incompleteFrame.put(remainingFrame);
+        if (onNoninterleavedFloatSamplesListener != null) {
+            long started = startTiming();
+            onNoninterleavedFloatSamplesListener.onNoninterleavedFloatSamples(floatChannels, length);
+            stopListenerTiming(started);
+        }
 
-                    stateImpl.incompleteFrame.position(0);
-                    stateImpl.incompleteFrame.limit(frameSize);
+        if (onNoninterleavedShortSamplesListener != null) {
+            long started = startTiming();
+            onNoninterleavedShortSamplesListener.onNoninterleavedShortSamples(shortChannels, length);
+            stopListenerTiming(started);
+        }
 
-                    // Duplicated so that our ByteBuffer object is not affected.
-                    ByteBuffer samples = stateImpl.incompleteFrame.duplicate();
-                    samples.order(stateImpl.incompleteFrame.order());
-                    onSamples(samples);
+        if (onNoninterleavedIntSamplesListener != null) {
+            long started = startTiming();
+            onNoninterleavedIntSamplesListener.onNoninterleavedIntSamples(intChannels, length);
+            stopListenerTiming(started);
+        }
+    }
 
-                    stateImpl.incompleteFrame.limit(stateImpl.incompleteFrame.capacity());
-                } else {
-                    stateImpl.incompleteFrame.put(input);
-                    // Not enough data.
-                    return;
-                }
-            }
+    /**
+     * Mixes channels of the file as the routing describes. The result is left in floatChannels.
+     *
+     * @param samples
+     * @param length  How many frames there are.
+     */
+    private void mixChannels(ByteBuffer samples, int length) {
+        final int channels = format.getChannels();
+        final int outputs = channelRouting.getOutputChannels();
+        final int bytesPerSample = format.getBytesPerSample();
 
-            if (input.remaining() > 0) {
-                int incompleteFrameSize = input.remaining() % frameSize;
+        createDecodedChannels(outputs, length);
 
-                int available = input.remaining() - incompleteFrameSize;
+        if (mixFloats.length < length) {
+            mixInts = new int[length];
+            mixFloats = new float[length];
+        }
 
-                if (available > 0) {
-                    ByteBuffer samples = input.duplicate();
-                    samples.order(input.order());
-                    samples.limit(samples.limit() - incompleteFrameSize);
+        for (int o = 0; o < outputs; o++) {
+            final int[] inputs = channelRouting.getInputs(o);
+            final float[] weights = channelRouting.getWeights(o);
+            final float[] target = floatChannels[o];
 
-                    onSamples(samples);
+            Arrays.fill(target, 0, length, 0);
 
-                    input.position(input.limit() - incompleteFrameSize);
+            for (int k = 0; k < inputs.length; k++) {
+                if (format.isFloat()) {
+                    SampleDecoder.decodeFloat(samples, bytesPerSample, inputs[k], channels, length, mixFloats, 0);
+                } else {
+                    SampleDecoder.decode(samples, bytesPerSample, inputs[k], channels, length, mixInts, 0);
+                    SampleDecoder.toFloat(mixInts, bytesPerSample, length, mixFloats, 0);
                 }
 
-                if (incompleteFrameSize > 0) {
-                    input.position(input.limit() - incompleteFrameSize);
-                    stateImpl.incompleteFrame.put(input);
-                }
+                SampleKernels.get().multiplyAdd(mixFloats, weights[k], length, target);
             }
-        } else if (state instanceof StateError) {
-            throw new ErrorStateException();
-        } else {
-            throw new RuntimeException("Not implemented.");
         }
     }
 
     /**
-     * Gets data from input and puts in holder until holder reaches given position.
+     * Makes sure that there are enough arrays for decoded non-interleaved samples.
      *
-     * @param input
-     * @param holder
-     * @param position
-     * @return True if reached position, false otherwise.
+     * @param channels
+     * @param length
      */
-    private boolean readInputUntilReachingPosition(ByteBuffer input, ByteBuffer holder, int position) {
-        while (holder.position() < position) {
-            if (!input.hasRemaining()) {
-                // No more data available.
-                return false;
+    private void createDecodedChannels(int channels, int length) {
+        if (intChannels.length != channels) {
+            intChannels = new int[channels][0];
+            floatChannels = new float[channels][0];
+            shortChannels = new short[channels][0];
+        }
+
+        for (int c = 0; c < channels; c++) {
+            if (intChannels[c].length < length) {
+                intChannels[c] = new int[length];
             }
 
-            holder.put(input.get());
+            if (floatChannels[c].length < length) {
+                floatChannels[c] = new float[length];
+            }
         }
+    }
 
-        return holder.position() >= position;
+    /**
+     * @return How many channels non-interleaved listeners receive.
+     */
+    private int getOutputChannels() {
+        return channelRouting == null ? format.getChannels() : channelRouting.getOutputChannels();
     }
 
     /**
-     * Returns frame size based on sample format.
-     *
-     * @return
+     * @return Width of the integers that samples are decoded into.
      */
-    private int getFrameSize() {
-        return format.getBytesPerSample() * format.getChannels();
+    private int getDecodedBytesPerSample() {
+        return format.isFloat() ? 4 : format.getBytesPerSample();
     }
 
     /**
-     * Dispatches samples listeners.
+     * Creates the array that will be passed to the non-interleaved samples listener.
      *
-     * @param samples
+     * @param channels
+     * @return
      */
-    private void onSamples(ByteBuffer samples) {
-        if (onInterleavedSamplesListener != null) {
-            onInterleavedSamplesListener.onInterleavedSamples(samples);
+    private ByteBuffer[] createChannelBufferArray(int channels) {
+        if (channelBufferProvider == null) {
+            // The listener is free to keep it.
+            return new ByteBuffer[channels];
         }
 
-        if (onNoninterleavedSamplesListener != null) {
-            final int channels = format.getChannels();
-            final int frameSize = getFrameSize();
-            final int bytesPerSample = format.getBytesPerSample();
-            final int samplesPerChannel = samples.remaining() / frameSize;
-
-            ByteBuffer[] noninterleavedSamples = new ByteBuffer[channels];
-
-            for (int c = 0; c < channels; c++) {
-                ByteBuffer channelBuffer = ByteBuffer.allocate(samplesPerChannel * bytesPerSample);
-
-                // Even though we're writing in bytes, making the buffer explicitly little endian allows the user to
-                // convert it to other types, such as ShortBuffer, while preserving the correct order.
-                channelBuffer.order(ByteOrder.LITTLE_ENDIAN);
-
-                for (int i = 0; i < samplesPerChannel; i++) {
-                    for (int b = 0; b < bytesPerSample; b++) {
-                        final int interleavedIndex = i * frameSize + c * bytesPerSample + b;
-                        final int noninterleavedIndex = i * bytesPerSample + b;
+        if (reusableChannelBuffers == null || reusableChannelBuffers.length != channels) {
+            reusableChannelBuffers = new ByteBuffer[channels];
+        }
 
-                        channelBuffer.put(noninterleavedIndex, samples.get(samples.position() + interleavedIndex));
-                    }
-                }
+        return reusableChannelBuffers;
+    }
 
-                noninterleavedSamples[c] = channelBuffer;
-            }
+    /**
+     * Creates a buffer that will hold the samples of a channel. Its limit is set to the given length.
+     *
+     * @param channel
+     * @param length
+     * @return
+     */
+    private ByteBuffer createChannelBuffer(int channel, int length) {
+        ByteBuffer channelBuffer;
 
-            onNoninterleavedSamplesListener.onNoninterleavedSamples(noninterleavedSamples);
+        if (channelBufferProvider == null) {
+            channelBuffer = ByteBuffer.allocate(length);
+        } else {
+            channelBuffer = channelBufferProvider.getChannelBuffer(channel, length);
+            channelBuffer.clear();
+            channelBuffer.limit(length);
         }
+
+        return channelBuffer;
     }
 
     /**
@@ -409,19 +1246,98 @@ public class WavReader {
      *
      * @return
      */
-    private int realChunkSize(int size) {
+    private long realChunkSize(long size) {
         return size + ((size % 2) != 0 ? 1 : 0);
     }
 
     /**
      * Lets us know how samples are laid out in the wav file.
      */
-    public class DataFormat {
-        private int sampleRate;
+    public static class DataFormat {
+        /**
+         * Samples are integers.
+         */
+        public static final int FORMAT_PCM = 1;
+
+        /**
+         * Samples are 32 or 64 bit floats.
+         */
+        public static final int FORMAT_IEEE_FLOAT = 3;
+
+        private final int sampleRate;
+
+        private final int channels;
+
+        private final int bitsPerSample;
+
+        private final int audioFormat;
+
+        private final int validBitsPerSample;
+
+        private final int channelMask;
+
+        /**
+         * @param sampleRate    Frames per second.
+         * @param channels
+         * @param bitsPerSample
+         */
+        public DataFormat(int sampleRate, int channels, int bitsPerSample) {
+            this(sampleRate, channels, bitsPerSample, FORMAT_PCM);
+        }
+
+        /**
+         * @param sampleRate    Frames per second.
+         * @param channels
+         * @param bitsPerSample
+         * @param audioFormat   FORMAT_PCM or FORMAT_IEEE_FLOAT.
+         */
+        public DataFormat(int sampleRate, int channels, int bitsPerSample, int audioFormat) {
+            this(sampleRate, channels, bitsPerSample, audioFormat, bitsPerSample, 0);
+        }
+
+        /**
+         * @param sampleRate         Frames per second.
+         * @param channels
+         * @param bitsPerSample      Size of the container of a sample.
+         * @param audioFormat        FORMAT_PCM or FORMAT_IEEE_FLOAT.
+         * @param validBitsPerSample How many bits of the container are used.
+         * @param channelMask        Speaker positions of the channels. 0 if not specified.
+         */
+        public DataFormat(int sampleRate, int channels, int bitsPerSample, int audioFormat,
+                          int validBitsPerSample, int channelMask) {
+            this.sampleRate = sampleRate;
+            this.channels = channels;
+            this.bitsPerSample = bitsPerSample;
+            this.audioFormat = audioFormat;
+            this.validBitsPerSample = validBitsPerSample;
+            this.channelMask = channelMask;
+        }
+
+        /**
+         * @return FORMAT_PCM or FORMAT_IEEE_FLOAT. Extensible formats are reported by their sub format.
+         */
+        public int getAudioFormat() {
+            return audioFormat;
+        }
+
+        public boolean isFloat() {
+            return audioFormat == FORMAT_IEEE_FLOAT;
+        }
 
-        private int channels;
+        /**
+         * @return How many bits of each sample are used. Same as bits per sample unless the format is
+         * extensible.
+         */
+        public int getValidBitsPerSample() {
+            return validBitsPerSample;
+        }
 
-        private int bitsPerSample;
+        /**
+         * @return Speaker positions of the channels, as in WAVE_FORMAT_EXTENSIBLE. 0 if not specified.
+         */
+        public int getChannelMask() {
+            return channelMask;
+        }
 
         public int getBytesPerSample() {
             return (int) Math.ceil(bitsPerSample / 8.0);
@@ -463,6 +1379,12 @@ public class WavReader {
         }
     }
 
+    public static class ChunkTooShortException extends Exception {
+        ChunkTooShortException(String typeId) {
+            super("Chunk with type id " + typeId + " is too short.");
+        }
+    }
+
     public static class IOException extends Exception {
         IOException(java.io.IOException ex) {
             super(ex);
@@ -484,123 +1406,400 @@ public class WavReader {
     /**
      * Base class for all states.
      */
-    private static class State {
+    private abstract class State {
+        /**
+         * Consumes input.
+         *
+         * @param input
+         * @return True if the reader moved to another state that should look at the input, false if more
+         * data is needed.
+         */
+        abstract boolean process(ByteBuffer input);
     }
 
     /**
      * An error has occurred and the reader can no longer function.
      */
-    private static class StateError extends State {
+    private class StateError extends State {
+        @Override
+        boolean process(ByteBuffer input) {
+            throw new ErrorStateException();
+        }
     }
 
     /**
      * Parses next chunk header.
      */
-    private static class StateReadNextChunkHeader extends State {
+    private class StateReadNextChunkHeader extends State {
         /**
          * Data that we're accumulating to be able to parse an entire RIFF header.
          */
-        public ByteBuffer data;
+        public final ByteBuffer data;
 
         StateReadNextChunkHeader() {
             data = ByteBuffer.allocate(8);
             data.order(ByteOrder.LITTLE_ENDIAN);
         }
-    }
 
-    /**
-     * Decides what to do with a chunk.
-     */
-    private static class StateInterpretChunkHeader extends State {
-        /**
-         * Chunk header that will be scrutinized.
-         */
-        public RiffUtils.ChunkHeader header;
+        StateReadNextChunkHeader reset() {
+            data.clear();
+            return this;
+        }
+
+        @Override
+        boolean process(ByteBuffer input) {
+            if (data.position() == 0 && input.remaining() >= 8) {
+                // The whole header is in the input, no need to copy it.
+                int index = skipInput(input, 8);
+                interpretChunkHeader(input.getInt(index), RiffUtils.getChunkLength(input, index));
+                return true;
+            }
+
+            if (!readInputUntilReachingPosition(input, data, 8)) {
+                // Not enough data.
+                return false;
+            }
 
-        StateInterpretChunkHeader(RiffUtils.ChunkHeader header) {
-            this.header = header;
+            interpretChunkHeader(data.getInt(0), RiffUtils.getChunkLength(data, 0));
+            return true;
         }
     }
 
     /**
      * Skips all the data of the current chunk.
      */
-    private static class StateSkipChunk extends State {
+    private class StateSkipChunk extends State {
         /**
-         * Unknown chunk's header.
+         * Length of the chunk, without the pad byte.
          */
-        public RiffUtils.ChunkHeader header;
+        public long length;
 
         /**
          * How many bytes have been skipped so far.
          */
-        public int skipped;
+        public long skipped;
+
+        StateSkipChunk reset(long length, long skipped) {
+            this.length = length;
+            this.skipped = skipped;
+            return this;
+        }
+
+        @Override
+        boolean process(ByteBuffer input) {
+            long toSkip = realChunkSize(length) - skipped;
+
+            if (toSkip > input.remaining()) {
+                toSkip = input.remaining();
+            }
+
+            input.position(input.position() + (int) toSkip);
+
+            skipped += toSkip;
+
+            if (skipped == realChunkSize(length)) {
+                state = stateReadNextChunkHeader.reset();
+                return true;
+            }
 
-        StateSkipChunk(RiffUtils.ChunkHeader header) {
-            this.header = header;
-            skipped = 0;
+            return false;
         }
     }
 
     /**
      * Parsing wave identification in riff chunk.
      */
-    private static class StateRiffChunkIdentifier extends State {
+    private class StateRiffChunkIdentifier extends State {
         /**
          * Data that we're accumulating.
          */
-        public ByteBuffer data;
+        public final ByteBuffer data;
 
         StateRiffChunkIdentifier() {
             data = ByteBuffer.allocate(4);
             data.order(ByteOrder.LITTLE_ENDIAN);
         }
+
+        StateRiffChunkIdentifier reset() {
+            data.clear();
+            return this;
+        }
+
+        @Override
+        boolean process(ByteBuffer input) {
+            int identifier;
+
+            if (data.position() == 0 && input.remaining() >= 4) {
+                // The whole identifier is in the input, no need to copy it.
+                identifier = input.getInt(skipInput(input, 4));
+            } else if (readInputUntilReachingPosition(input, data, 4)) {
+                identifier = data.getInt(0);
+            } else {
+                // Not enough data.
+                return false;
+            }
+
+            if (identifier != RiffUtils.WAVE) {
+                state = stateError;
+                throw new MissingWaveIdentifierException();
+            }
+
+            hasFoundRiffWaveChunk = true;
+
+            state = stateReadNextChunkHeader.reset();
+            return true;
+        }
+    }
+
+    /**
+     * Parsing ds64 chunk of RF64 files.
+     */
+    private class StateDs64Chunk extends State {
+        /**
+         * The chunk must at least have the RIFF and data lengths.
+         */
+        static final int MIN_LENGTH = 16;
+
+        /**
+         * Length of the chunk.
+         */
+        public long length;
+
+        /**
+         * Data that we're accumulating. Only the RIFF and data lengths are kept.
+         */
+        public final ByteBuffer data;
+
+        StateDs64Chunk() {
+            data = ByteBuffer.allocate(MIN_LENGTH);
+            data.order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        StateDs64Chunk reset(long length) {
+            this.length = length;
+            data.clear();
+            return this;
+        }
+
+        @Override
+        boolean process(ByteBuffer input) {
+            // The first 8 bytes contain the length of the RIFF chunk, which we have no use for.
+            if (data.position() == 0 && input.remaining() >= data.capacity()) {
+                // The whole chunk is in the input, no need to copy it.
+                ds64DataLength = input.getLong(skipInput(input, data.capacity()) + 8);
+            } else if (readInputUntilReachingPosition(input, data, data.capacity())) {
+                ds64DataLength = data.getLong(8);
+            } else {
+                // Not enough data.
+                return false;
+            }
+
+            // The rest of the chunk, such as the sample count and the table of other chunk lengths, is not
+            // needed.
+            state = stateSkipChunk.reset(length, data.capacity());
+            return true;
+        }
     }
 
     /**
      * Parsing fmt chunk.
      */
-    private static class StateFmtChunk extends State {
+    private class StateFmtChunk extends State {
         /**
-         * Fmt chunk header.
+         * The chunk must at least have the fields of PCMWAVEFORMAT, up to the bits per sample.
          */
-        public RiffUtils.ChunkHeader header;
+        static final int MIN_LENGTH = 16;
 
         /**
-         * Data that we're accumulating to be able to parse an entire FMT chunk for PCM data.
+         * Length of the chunk.
          */
-        public ByteBuffer data;
+        public long length;
 
-        StateFmtChunk(RiffUtils.ChunkHeader header) {
-            this.header = header;
-            data = ByteBuffer.allocate(16);
+        /**
+         * Data that we're accumulating to be able to parse an entire FMT chunk, including the fields of
+         * WAVE_FORMAT_EXTENSIBLE.
+         */
+        public final ByteBuffer data;
+
+        StateFmtChunk() {
+            data = ByteBuffer.allocate(40);
             data.order(ByteOrder.LITTLE_ENDIAN);
         }
+
+        StateFmtChunk reset(long length) {
+            this.length = length;
+            data.clear();
+            return this;
+        }
+
+        @Override
+        boolean process(ByteBuffer input) {
+            // Anything after the fields that we know of is skipped.
+            int needed = (int) Math.min(length, data.capacity());
+
+            if (data.position() == 0 && input.remaining() >= needed) {
+                // The whole chunk is in the input, no need to copy it.
+                parse(input, skipInput(input, needed), needed);
+            } else if (readInputUntilReachingPosition(input, data, needed)) {
+                parse(data, 0, needed);
+            } else {
+                // Not enough data.
+                return false;
+            }
+
+            state = stateSkipChunk.reset(length, needed);
+            return true;
+        }
+
+        /**
+         * Creates data format from the contents of the chunk.
+         *
+         * @param buffer Buffer in little endian order.
+         * @param index  Where the contents of the chunk start.
+         * @param length How many bytes of the chunk are available.
+         */
+        private void parse(ByteBuffer buffer, int index, int length) {
+            int audioFormat = buffer.getShort(index) & 0xffff;
+            int channels = buffer.getShort(index + 2);
+            int sampleRate = buffer.getInt(index + 4);
+            // Followed by byte rate and block align, which can be derived from the rest.
+            int bitsPerSample = buffer.getShort(index + 14);
+            int validBitsPerSample = bitsPerSample;
+            int channelMask = 0;
+
+            if (audioFormat == RiffUtils.WAVE_FORMAT_EXTENSIBLE) {
+                if (length < 40 || !RiffUtils.hasKsDataFormatSubtype(buffer, index + 24)) {
+                    throw new AudioFormatNotSupportedException();
+                }
+
+                int valid = buffer.getShort(index + 18) & 0xffff;
+
+                if (valid != 0) {
+                    validBitsPerSample = valid;
+                }
+
+                channelMask = buffer.getInt(index + 20);
+                // The sub format GUID starts with the actual format.
+                audioFormat = buffer.getShort(index + 24) & 0xffff;
+            }
+
+            if (audioFormat == DataFormat.FORMAT_IEEE_FLOAT) {
+                if (bitsPerSample != 32 && bitsPerSample != 64) {
+                    throw new AudioFormatNotSupportedException();
+                }
+            } else if (audioFormat != DataFormat.FORMAT_PCM) {
+                throw new AudioFormatNotSupportedException();
+            }
+
+            WavReader.this.format = new DataFormat(sampleRate, channels, bitsPerSample, audioFormat,
+                    validBitsPerSample, channelMask);
+        }
     }
 
     /**
      * Parsing data samples.
      */
-    private static class StateDataSamples extends State {
+    private class StateDataSamples extends State {
         /**
-         * Data chunk header.
+         * Length of the chunk, without the pad byte.
          */
-        public RiffUtils.ChunkHeader header;
+        public long length;
 
         /**
          * An incomplete frame from the last read. This will be appended to the data of the next read.
          */
-        public ByteBuffer incompleteFrame;
+        public ByteBuffer incompleteFrame = ByteBuffer.allocate(0);
+
+        /**
+         * How many bytes of the chunk have not been read yet.
+         */
+        public long remaining;
+
+        StateDataSamples reset(long length, int frameSize) {
+            this.length = length;
+            remaining = length;
+
+            if (incompleteFrame.capacity() != frameSize) {
+                incompleteFrame = ByteBuffer.allocate(frameSize);
+                incompleteFrame.order(ByteOrder.LITTLE_ENDIAN);
+            }
+
+            incompleteFrame.clear();
+            return this;
+        }
+
+        @Override
+        boolean process(ByteBuffer input) {
+            if (stopAtSamples) {
+                return false;
+            }
+
+            if (!respectDataLength) {
+                processSamples(this, input);
+                return false;
+            }
+
+            ByteBuffer samplesInput = input;
 
-        StateDataSamples(RiffUtils.ChunkHeader header) {
-            this.header = header;
-            // That ought to be enough.
-            incompleteFrame = ByteBuffer.allocate(128);
-            incompleteFrame.order(ByteOrder.LITTLE_ENDIAN);
+            if (input.remaining() > remaining) {
+                // Must not go past the end of the chunk.
+                samplesInput = input.duplicate();
+                samplesInput.order(input.order());
+                samplesInput.limit(input.position() + (int) remaining);
+            }
+
+            int start = samplesInput.position();
+            processSamples(this, samplesInput);
+            remaining -= samplesInput.position() - start;
+            input.position(samplesInput.position());
+
+            if (remaining > 0) {
+                return false;
+            }
+
+            // Skips the pad byte, if there is one.
+            state = stateSkipChunk.reset(length, length);
+            return true;
         }
     }
 
-    private static abstract class RiffUtils {
+    static abstract class RiffUtils {
+        /**
+         * Length of chunks in RF64 files whose real length is in the ds64 chunk.
+         */
+        public static final long UNKNOWN_LENGTH = 0xffffffffL;
+
+        /*
+         * Identifiers that we care about, as read in little endian order.
+         */
+        public static final int RIFF = fourCC("RIFF");
+
+        public static final int RF64 = fourCC("RF64");
+
+        public static final int BW64 = fourCC("BW64");
+
+        public static final int WAVE = fourCC("WAVE");
+
+        public static final int DS64 = fourCC("ds64");
+
+        public static final int FMT = fourCC("fmt ");
+
+        public static final int DATA = fourCC("data");
+
+        /**
+         * Audio format whose actual format is in the sub format GUID.
+         */
+        public static final int WAVE_FORMAT_EXTENSIBLE = 0xfffe;
+
+        /**
+         * What follows the first 2 bytes of a KSDATAFORMAT_SUBTYPE GUID, as stored in the file. The first 2
+         * bytes hold the actual audio format.
+         */
+        static final byte[] KSDATAFORMAT_SUBTYPE_SUFFIX = {
+                0x00, 0x00, 0x00, 0x00, 0x10, 0x00, (byte) 0x80, 0x00,
+                0x00, (byte) 0xaa, 0x00, 0x38, (byte) 0x9b, 0x71
+        };
+
         /**
          * All chunks have the following format:
          * <p>
@@ -609,29 +1808,40 @@ public class WavReader {
          * variable-sized field: the chunk data itself, of the size given in the previous field.
          * a pad byte, if the chunk's length is not even.
          *
-         * @param buffer Buffer to read data from. Must be able to read at least 8 bytes.
+         * @param buffer Buffer in little endian order to read the length from.
+         * @param index  Where the chunk header starts.
+         * @return Length of the chunk.
          */
-        public static ChunkHeader parseChunkHeader(ByteBuffer buffer) {
-            // Obligatory.
-            buffer.order(ByteOrder.LITTLE_ENDIAN);
-
-            ChunkHeader header = new ChunkHeader();
-
-            byte[] identifierChars = new byte[4];
-            buffer.get(identifierChars);
+        public static long getChunkLength(ByteBuffer buffer, int index) {
+            return buffer.getInt(index + 4) & 0xffffffffL;
+        }
 
-            header.typeId = new String(identifierChars);
-            header.length = buffer.getInt();
+        /**
+         * Checks whether a GUID is one of the KSDATAFORMAT_SUBTYPE GUIDs, which are built from audio formats.
+         *
+         * @param buffer
+         * @param index  Where the GUID starts.
+         * @return
+         */
+        public static boolean hasKsDataFormatSubtype(ByteBuffer buffer, int index) {
+            for (int i = 0; i < KSDATAFORMAT_SUBTYPE_SUFFIX.length; i++) {
+                if (buffer.get(index + 2 + i) != KSDATAFORMAT_SUBTYPE_SUFFIX[i]) {
+                    return false;
+                }
+            }
 
-            return header;
+            return true;
         }
 
         /**
-         * A parsed chunk header.
+         * Turns a 4 character identifier into the number that is read from a little endian buffer.
+         *
+         * @param identifier
+         * @return
          */
-        public static class ChunkHeader {
-            String typeId;
-            int length;
+        public static int fourCC(String identifier) {
+            return identifier.charAt(0) | (identifier.charAt(1) << 8) | (identifier.charAt(2) << 16)
+                    | (identifier.charAt(3) << 24);
         }
     }
 }
@@ -0,0 +1,164 @@
+package com.daniel_araujo.wavio;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters that a reader updates as it works. Give it to a reader with WavReader.setMetrics.
+ * <p>
+ * Counters only ever go up, so they can be read at any time, from any thread, by whatever collects
+ * metrics. A single object can be shared by several readers to get totals.
+ * <p>
+ * Time is split in three. Parse time is spent finding chunks and samples in the input. Deinterleave time
+ * is spent splitting, routing and decoding samples for the listeners. Listener time is spent inside the
+ * listeners themselves, including anything they do with their own listeners.
+ */
+public class WavReaderMetrics {
+    private final AtomicLong bytesRead = new AtomicLong();
+
+    private final AtomicLong framesDelivered = new AtomicLong();
+
+    private final AtomicLong callbacks = new AtomicLong();
+
+    private final AtomicLong chunksSkipped = new AtomicLong();
+
+    private final AtomicLong stitchedFrames = new AtomicLong();
+
+    private final AtomicLong parseNanos = new AtomicLong();
+
+    private final AtomicLong deinterleaveNanos = new AtomicLong();
+
+    private final AtomicLong listenerNanos = new AtomicLong();
+
+    private final ConcurrentMap<Class<?>, AtomicLong> errors = new ConcurrentHashMap<>();
+
+    /**
+     * @return How many bytes of input were consumed.
+     */
+    public long getBytesRead() {
+        return bytesRead.get();
+    }
+
+    /**
+     * @return How many frames were passed to listeners. Each frame is counted once no matter how many
+     * listeners there are.
+     */
+    public long getFramesDelivered() {
+        return framesDelivered.get();
+    }
+
+    /**
+     * @return How many times listeners were called.
+     */
+    public long getCallbacks() {
+        return callbacks.get();
+    }
+
+    /**
+     * @return How many chunks were skipped because the reader does not use them.
+     */
+    public long getChunksSkipped() {
+        return chunksSkipped.get();
+    }
+
+    /**
+     * @return How many frames were split between two reads and had to be put back together.
+     */
+    public long getStitchedFrames() {
+        return stitchedFrames.get();
+    }
+
+    /**
+     * @return Nanoseconds spent parsing input.
+     */
+    public long getParseNanos() {
+        return parseNanos.get();
+    }
+
+    /**
+     * @return Nanoseconds spent splitting, routing and decoding samples for listeners.
+     */
+    public long getDeinterleaveNanos() {
+        return deinterleaveNanos.get();
+    }
+
+    /**
+     * @return Nanoseconds spent inside listeners.
+     */
+    public long getListenerNanos() {
+        return listenerNanos.get();
+    }
+
+    /**
+     * @param type
+     * @return How many exceptions of exactly this type were thrown while reading, including those thrown by
+     * listeners.
+     */
+    public long getErrors(Class<? extends Throwable> type) {
+        AtomicLong count = errors.get(type);
+        return count == null ? 0 : count.get();
+    }
+
+    /**
+     * @return How many exceptions were thrown while reading, by type.
+     */
+    public Map<Class<?>, Long> getErrors() {
+        Map<Class<?>, Long> copy = new HashMap<>();
+
+        for (Map.Entry<Class<?>, AtomicLong> entry : errors.entrySet()) {
+            copy.put(entry.getKey(), entry.getValue().get());
+        }
+
+        return copy;
+    }
+
+    void addBytesRead(long bytes) {
+        bytesRead.addAndGet(bytes);
+    }
+
+    void addFramesDelivered(long frames) {
+        framesDelivered.addAndGet(frames);
+    }
+
+    void addCallbacks(long count) {
+        callbacks.addAndGet(count);
+    }
+
+    void addChunkSkipped() {
+        chunksSkipped.incrementAndGet();
+    }
+
+    void addStitchedFrame() {
+        stitchedFrames.incrementAndGet();
+    }
+
+    void addParseNanos(long nanos) {
+        parseNanos.addAndGet(nanos);
+    }
+
+    void addDeinterleaveNanos(long nanos) {
+        deinterleaveNanos.addAndGet(nanos);
+    }
+
+    void addListenerNanos(long nanos) {
+        listenerNanos.addAndGet(nanos);
+    }
+
+    void addError(Throwable error) {
+        AtomicLong count = errors.get(error.getClass());
+
+        if (count == null) {
+            AtomicLong created = new AtomicLong();
+            count = errors.putIfAbsent(error.getClass(), created);
+
+            if (count == null) {
+                count = created;
+            }
+        }
+
+        count.incrementAndGet();
+    }
+}
@@ -0,0 +1,322 @@
+package com.daniel_araujo.wavio;
+
+import java.io.Closeable;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Reads samples of a wav file on demand.
+ * <p>
+ * Unlike WavReader, which pushes samples to listeners as soon as they arrive, a sample source only reads
+ * when asked to and only as many frames as the caller has room for. The header is parsed when the source
+ * is created. Samples are then copied straight from the input to the caller's buffer.
+ * <p>
+ * Frames are always handed out whole. An incomplete frame at the end of the input is discarded.
+ */
+public class WavSampleSource implements Closeable {
+    /**
+     * How many bytes are read at a time while looking for the data chunk.
+     */
+    private static final int HEADER_READ_SIZE = 4096;
+
+    /**
+     * How many frames are decoded at once when reading floats.
+     */
+    private static final int DECODE_FRAMES = 1024;
+
+    /**
+     * Where samples come from when reading a stream. Null when reading a file.
+     */
+    private final ReadableByteChannel channel;
+
+    /**
+     * Where samples come from when reading a file. Null when reading a stream.
+     */
+    private final WavFile file;
+
+    private final WavReader.DataFormat format;
+
+    private final int frameSize;
+
+    /**
+     * Bytes of samples that were read along with the header. These are handed out before anything else is
+     * read from the channel.
+     */
+    private ByteBuffer pending;
+
+    /**
+     * How many bytes of samples are left in the data chunk. Negative if the length is not known.
+     */
+    private long remaining;
+
+    /**
+     * Region of the file that is currently mapped.
+     */
+    private ByteBuffer window;
+
+    /**
+     * Index of the first frame of the mapped region.
+     */
+    private long windowFirstFrame;
+
+    /**
+     * Used when reading floats. Allocated on demand.
+     */
+    private ByteBuffer decodeBuffer;
+
+    /**
+     * Used when reading floats. Allocated on demand.
+     */
+    private int[] decodedSamples;
+
+    /**
+     * Reads samples from a stream.
+     *
+     * @param stream Will be read until the end of the data chunk.
+     */
+    public WavSampleSource(InputStream stream) {
+        this(Channels.newChannel(stream));
+    }
+
+    /**
+     * Reads samples from a channel.
+     *
+     * @param channel Must be in blocking mode. Will be read until the end of the data chunk.
+     */
+    public WavSampleSource(ReadableByteChannel channel) {
+        this.channel = channel;
+        this.file = null;
+
+        WavReader reader = new WavReader();
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_READ_SIZE);
+
+        while (true) {
+            if (readFromChannel(buffer) == -1) {
+                throw new WavReader.ChunkNotFoundException("data");
+            }
+
+            buffer.flip();
+
+            if (reader.readHeader(buffer)) {
+                break;
+            }
+
+            buffer.compact();
+        }
+
+        format = reader.getDataFormat();
+        frameSize = format.getBytesPerSample() * format.getChannels();
+
+        // Writers that stream their output may leave the length at 0 if they never get to update it.
+        long length = reader.getDataChunkLength();
+        remaining = length == 0 ? -1 : length;
+
+        pending = buffer;
+    }
+
+    /**
+     * Reads samples from a file. Reading starts at the current position of the file and moves it forward.
+     *
+     * @param file Can be seeked between reads.
+     */
+    public WavSampleSource(WavFile file) {
+        this.channel = null;
+        this.file = file;
+
+        format = file.getDataFormat();
+        frameSize = format.getBytesPerSample() * format.getChannels();
+    }
+
+    /**
+     * @return Sample format.
+     */
+    public WavReader.DataFormat getDataFormat() {
+        return format;
+    }
+
+    /**
+     * Reads interleaved frames as they are stored in the file, which means little endian samples.
+     * <p>
+     * Blocks until the buffer cannot hold another whole frame or until the end of the data chunk is reached.
+     *
+     * @param dst Frames are written at its position, which is moved forward.
+     * @return How many frames were read or -1 if there are no more frames.
+     */
+    public int readFrames(ByteBuffer dst) {
+        int frames = dst.remaining() / frameSize;
+
+        if (frames == 0) {
+            return 0;
+        }
+
+        int count;
+
+        if (file != null) {
+            count = readFramesFromFile(dst, frames);
+        } else {
+            count = readFramesFromChannel(dst, frames);
+        }
+
+        return count == 0 ? -1 : count;
+    }
+
+    /**
+     * Reads interleaved frames and converts their samples to floats between -1 and 1.
+     * <p>
+     * Blocks until the requested number of frames is read or until the end of the data chunk is reached.
+     *
+     * @param dst    Receives frames * channels samples.
+     * @param offset Where to put the first sample.
+     * @param frames How many frames to read.
+     * @return How many frames were read or -1 if there are no more frames.
+     */
+    public int readFrames(float[] dst, int offset, int frames) {
+        if (frames == 0) {
+            return 0;
+        }
+
+        if (decodeBuffer == null) {
+            decodeBuffer = ByteBuffer.allocate(DECODE_FRAMES * frameSize);
+            decodeBuffer.order(ByteOrder.LITTLE_ENDIAN);
+            decodedSamples = new int[DECODE_FRAMES * format.getChannels()];
+        }
+
+        int bytesPerSample = format.getBytesPerSample();
+        int count = 0;
+
+        while (count < frames) {
+            decodeBuffer.clear();
+            decodeBuffer.limit(Math.min(frames - count, DECODE_FRAMES) * frameSize);
+
+            int read = readFrames(decodeBuffer);
+
+            if (read == -1) {
+                break;
+            }
+
+            decodeBuffer.flip();
+
+            int samples = read * format.getChannels();
+            int target = offset + count * format.getChannels();
+
+            if (format.isFloat()) {
+                SampleDecoder.decodeFloat(decodeBuffer, bytesPerSample, 0, 1, samples, dst, target);
+            } else {
+                SampleDecoder.decode(decodeBuffer, bytesPerSample, 0, 1, samples, decodedSamples, 0);
+                SampleDecoder.toFloat(decodedSamples, bytesPerSample, samples, dst, target);
+            }
+
+            count += read;
+        }
+
+        return count == 0 ? -1 : count;
+    }
+
+    /**
+     * Closes the stream, channel or file that samples are read from.
+     */
+    @Override
+    public void close() {
+        if (file != null) {
+            file.close();
+            return;
+        }
+
+        try {
+            channel.close();
+        } catch (java.io.IOException ex) {
+            // We wrap it in our own exception object.
+            throw new WavReader.IOException(ex);
+        }
+    }
+
+    private int readFramesFromChannel(ByteBuffer dst, int frames) {
+        if (remaining >= 0) {
+            frames = (int) Math.min(frames, remaining / frameSize);
+        }
+
+        int start = dst.position();
+        int end = start + frames * frameSize;
+        int limit = dst.limit();
+
+        dst.limit(end);
+
+        try {
+            if (pending != null) {
+                // What was read along with the header goes first.
+                int length = Math.min(pending.remaining(), dst.remaining());
+                ByteBuffer slice = pending.duplicate();
+                slice.limit(slice.position() + length);
+                dst.put(slice);
+                pending.position(slice.position());
+
+                if (!pending.hasRemaining()) {
+                    pending = null;
+                }
+            }
+
+            while (dst.hasRemaining()) {
+                if (readFromChannel(dst) == -1) {
+                    break;
+                }
+            }
+        } finally {
+            dst.limit(limit);
+        }
+
+        int read = dst.position() - start;
+
+        // An incomplete frame can only happen at the end of the input.
+        dst.position(start + read - read % frameSize);
+
+        if (remaining >= 0) {
+            remaining -= read;
+        }
+
+        return read / frameSize;
+    }
+
+    private int readFramesFromFile(ByteBuffer dst, int frames) {
+        long position = file.getFramePosition();
+        frames = (int) Math.min(frames, file.getFrameCount() - position);
+
+        int count = 0;
+
+        while (count < frames) {
+            long frame = position + count;
+            int windowFrames = window == null ? 0 : window.capacity() / frameSize;
+
+            if (window == null || frame < windowFirstFrame || frame >= windowFirstFrame + windowFrames) {
+                windowFrames = (int) Math.min(file.getWindowSize() / frameSize, file.getFrameCount() - frame);
+                window = file.mapFrames(frame, windowFrames);
+                windowFirstFrame = frame;
+            }
+
+            int first = (int) (frame - windowFirstFrame);
+            int length = Math.min(frames - count, windowFrames - first);
+
+            ByteBuffer slice = window.duplicate();
+            slice.position(first * frameSize);
+            slice.limit((first + length) * frameSize);
+            dst.put(slice);
+
+            count += length;
+        }
+
+        file.seekToFrame(position + count);
+
+        return count;
+    }
+
+    private int readFromChannel(ByteBuffer buffer) {
+        try {
+            return channel.read(buffer);
+        } catch (java.io.IOException ex) {
+            // We wrap it in our own exception object.
+            throw new WavReader.IOException(ex);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.daniel_araujo.wavio;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What is known about a wav file after reading it once: its format, how long it is, where its chunks are
+ * and a waveform overview of its samples.
+ */
+public class WavSummary {
+    private final WavReader.DataFormat format;
+
+    private final long frameCount;
+
+    private final List<WavFile.Chunk> chunks;
+
+    private final WaveformPyramid waveform;
+
+    WavSummary(WavReader.DataFormat format, long frameCount, List<WavFile.Chunk> chunks,
+               WaveformPyramid waveform) {
+        this.format = format;
+        this.frameCount = frameCount;
+        this.chunks = chunks;
+        this.waveform = waveform;
+    }
+
+    /**
+     * Reads a whole file to summarize it.
+     *
+     * @param file        Will be read from the current position to the end.
+     * @param bucketSizes Frames per bucket of each level of the waveform.
+     * @return
+     */
+    public static WavSummary create(WavFile file, int... bucketSizes) {
+        WavReader reader = new WavReader();
+        WaveformPyramid waveform = new WaveformPyramid(reader, bucketSizes);
+        reader.setOnNoninterleavedFloatSamplesListener(waveform);
+
+        file.read(reader);
+        waveform.finish();
+
+        return new WavSummary(file.getDataFormat(), file.getFrameCount(), file.getChunks(), waveform);
+    }
+
+    /**
+     * @return Sample format.
+     */
+    public WavReader.DataFormat getDataFormat() {
+        return format;
+    }
+
+    /**
+     * @return How many frames the data chunk contains.
+     */
+    public long getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * @param unit
+     * @return How long the samples play for, rounded down.
+     */
+    public long getDuration(TimeUnit unit) {
+        long micros = frameCount * 1000000 / format.getSampleRate();
+        return unit.convert(micros, TimeUnit.MICROSECONDS);
+    }
+
+    /**
+     * @return Chunks of the file in the order in which they appear.
+     */
+    public List<WavFile.Chunk> getChunks() {
+        return chunks;
+    }
+
+    /**
+     * @return Minimum, maximum and RMS of the samples at several zoom levels.
+     */
+    public WaveformPyramid getWaveform() {
+        return waveform;
+    }
+
+    /**
+     * @return Roughly how many bytes of memory the summary takes up.
+     */
+    long getSize() {
+        long size = 128 + chunks.size() * 48L;
+
+        for (int l = 0; l < waveform.getLevels(); l++) {
+            size += (long) waveform.getBucketCount(l) * waveform.getChannels() * 3 * 4;
+        }
+
+        return size;
+    }
+
+    void writeTo(DataOutputStream output) throws java.io.IOException {
+        output.writeInt(format.getSampleRate());
+        output.writeInt(format.getChannels());
+        output.writeInt(format.getBitsPerSample());
+        output.writeInt(format.getAudioFormat());
+        output.writeInt(format.getValidBitsPerSample());
+        output.writeInt(format.getChannelMask());
+        output.writeLong(frameCount);
+        output.writeInt(chunks.size());
+
+        for (WavFile.Chunk chunk : chunks) {
+            output.writeUTF(chunk.getId());
+            output.writeLong(chunk.getOffset());
+            output.writeLong(chunk.getLength());
+        }
+
+        waveform.writeTo(output);
+    }
+
+    static WavSummary readFrom(DataInputStream input) throws java.io.IOException {
+        WavReader.DataFormat format = new WavReader.DataFormat(input.readInt(), input.readInt(),
+                input.readInt(), input.readInt(), input.readInt(), input.readInt());
+        long frameCount = input.readLong();
+        int count = input.readInt();
+
+        List<WavFile.Chunk> chunks = new ArrayList<>();
+
+        for (int i = 0; i < count; i++) {
+            chunks.add(new WavFile.Chunk(input.readUTF(), input.readLong(), input.readLong()));
+        }
+
+        WaveformPyramid waveform = WaveformPyramid.readFrom(input);
+
+        return new WavSummary(format, frameCount, Collections.unmodifiableList(chunks), waveform);
+    }
+}
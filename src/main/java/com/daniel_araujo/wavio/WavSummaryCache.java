@@ -0,0 +1,360 @@
+package com.daniel_araujo.wavio;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps summaries of wav files so that files are only read in full the first time they are asked for.
+ * <p>
+ * Summaries are identified by the path, size and modification time of their file. When a file changes,
+ * its summary is thrown away and created again the next time it is asked for.
+ * <p>
+ * Summaries are kept in memory until they take up more than the maximum size, at which point the least
+ * recently used ones are dropped. They are also written to sidecar files in a directory so that they
+ * outlive the process. A summary that is not in memory is looked for there before reading the file.
+ * <p>
+ * Safe to use from multiple threads. Two threads that ask for the same file at the same time may both
+ * read it.
+ */
+public class WavSummaryCache {
+    /**
+     * How many bytes of summaries are kept in memory by default.
+     */
+    public static final long DEFAULT_MAX_SIZE = 64L * 1024 * 1024;
+
+    private static final String SIDECAR_EXTENSION = ".wavsummary";
+
+    /**
+     * Identifies sidecar files. Spells WVSM.
+     */
+    private static final int MAGIC = 0x5756534d;
+
+    /**
+     * Version 1 could list the chunks after an odd length data chunk at the wrong offsets.
+     */
+    private static final int VERSION = 2;
+
+    private final Path directory;
+
+    /**
+     * Summaries by path, from the least to the most recently used.
+     */
+    private final LinkedHashMap<Path, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long maxSize = DEFAULT_MAX_SIZE;
+
+    /**
+     * How many bytes the summaries in memory take up.
+     */
+    private long size;
+
+    private int[] bucketSizes = WaveformPyramid.DEFAULT_BUCKET_SIZES;
+
+    /**
+     * @param directory Where sidecar files are kept. Can be null to only keep summaries in memory.
+     */
+    public WavSummaryCache(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Sets how many bytes of summaries are kept in memory. Defaults to DEFAULT_MAX_SIZE.
+     *
+     * @param maxSize
+     */
+    public synchronized void setMaxSize(long maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Max size must be positive.");
+        }
+
+        this.maxSize = maxSize;
+
+        evict();
+    }
+
+    /**
+     * Sets the frames per bucket of each level of the waveforms of new summaries. Defaults to
+     * WaveformPyramid.DEFAULT_BUCKET_SIZES.
+     *
+     * @param bucketSizes
+     */
+    public synchronized void setBucketSizes(int... bucketSizes) {
+        // Fails early if sizes are not valid.
+        new WaveformPyramid(null, bucketSizes);
+
+        this.bucketSizes = bucketSizes.length == 0 ? WaveformPyramid.DEFAULT_BUCKET_SIZES : bucketSizes.clone();
+    }
+
+    /**
+     * Gets the summary of a file, reading the file only if there is no summary of its current contents.
+     *
+     * @param path
+     * @return
+     */
+    public WavSummary get(Path path) {
+        Path key = path.toAbsolutePath().normalize();
+        BasicFileAttributes attributes = readAttributes(key);
+        long fileSize = attributes.size();
+        long modified = attributes.lastModifiedTime().toMillis();
+        int[] bucketSizes;
+
+        synchronized (this) {
+            Entry entry = entries.get(key);
+
+            if (entry != null) {
+                if (entry.fileSize == fileSize && entry.modified == modified
+                        && Arrays.equals(entry.bucketSizes, this.bucketSizes)) {
+                    return entry.summary;
+                }
+
+                remove(key);
+            }
+
+            bucketSizes = this.bucketSizes;
+        }
+
+        WavSummary summary = readSidecar(key, fileSize, modified, bucketSizes);
+
+        if (summary == null) {
+            WavFile file = WavFile.open(key);
+
+            try {
+                summary = WavSummary.create(file, bucketSizes);
+            } finally {
+                file.close();
+            }
+
+            writeSidecar(key, fileSize, modified, summary);
+        }
+
+        synchronized (this) {
+            remove(key);
+
+            Entry entry = new Entry(fileSize, modified, bucketSizes, summary);
+            entries.put(key, entry);
+            size += entry.size;
+
+            evict();
+        }
+
+        return summary;
+    }
+
+    /**
+     * Forgets the summary of a file, both in memory and on disk.
+     *
+     * @param path
+     */
+    public void invalidate(Path path) {
+        Path key = path.toAbsolutePath().normalize();
+
+        synchronized (this) {
+            remove(key);
+        }
+
+        if (directory != null) {
+            try {
+                Files.deleteIfExists(getSidecarPath(key));
+            } catch (java.io.IOException ex) {
+                // We wrap it in our own exception object.
+                throw new WavReader.IOException(ex);
+            }
+        }
+    }
+
+    /**
+     * @return How many bytes the summaries in memory take up.
+     */
+    synchronized long getSize() {
+        return size;
+    }
+
+    /**
+     * @param path
+     * @return Whether the summary of the file is in memory, regardless of whether it is up to date.
+     */
+    synchronized boolean isInMemory(Path path) {
+        return entries.containsKey(path.toAbsolutePath().normalize());
+    }
+
+    private void remove(Path key) {
+        Entry entry = entries.remove(key);
+
+        if (entry != null) {
+            size -= entry.size;
+        }
+    }
+
+    /**
+     * Drops the least recently used summaries until the rest fit. The most recent one is always kept.
+     */
+    private void evict() {
+        Iterator<Map.Entry<Path, Entry>> iterator = entries.entrySet().iterator();
+
+        while (size > maxSize && entries.size() > 1) {
+            size -= iterator.next().getValue().size;
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Reads the summary of a file from its sidecar file.
+     *
+     * @param key
+     * @param fileSize
+     * @param modified
+     * @param bucketSizes
+     * @return Null if there is no sidecar file, if it cannot be parsed or if it does not match the file or
+     * the bucket sizes.
+     */
+    private WavSummary readSidecar(Path key, long fileSize, long modified, int[] bucketSizes) {
+        if (directory == null) {
+            return null;
+        }
+
+        try (InputStream stream = new BufferedInputStream(Files.newInputStream(getSidecarPath(key)))) {
+            DataInputStream input = new DataInputStream(stream);
+
+            if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+                return null;
+            }
+
+            if (!input.readUTF().equals(key.toString()) || input.readLong() != fileSize
+                    || input.readLong() != modified) {
+                return null;
+            }
+
+            WavSummary summary = WavSummary.readFrom(input);
+            WaveformPyramid waveform = summary.getWaveform();
+
+            if (waveform.getLevels() != bucketSizes.length) {
+                return null;
+            }
+
+            for (int l = 0; l < bucketSizes.length; l++) {
+                if (waveform.getBucketSize(l) != bucketSizes[l]) {
+                    return null;
+                }
+            }
+
+            return summary;
+        } catch (java.io.IOException | RuntimeException ex) {
+            // Missing, unreadable or damaged. The file will be read again.
+            return null;
+        }
+    }
+
+    /**
+     * Writes the summary of a file to its sidecar file. The sidecar file is replaced in a single step so
+     * that readers never see half of it. Failures are ignored because the summary is still good, it will
+     * only have to be made again next time.
+     *
+     * @param key
+     * @param fileSize
+     * @param modified
+     * @param summary
+     */
+    private void writeSidecar(Path key, long fileSize, long modified, WavSummary summary) {
+        if (directory == null) {
+            return;
+        }
+
+        Path target = getSidecarPath(key);
+
+        try {
+            Files.createDirectories(directory);
+
+            Path temporary = Files.createTempFile(directory, target.getFileName().toString(), ".tmp");
+
+            try {
+                try (OutputStream stream = new BufferedOutputStream(Files.newOutputStream(temporary))) {
+                    DataOutputStream output = new DataOutputStream(stream);
+                    output.writeInt(MAGIC);
+                    output.writeInt(VERSION);
+                    output.writeUTF(key.toString());
+                    output.writeLong(fileSize);
+                    output.writeLong(modified);
+                    summary.writeTo(output);
+                }
+
+                Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temporary);
+            }
+        } catch (java.io.IOException | WavReader.IOException ex) {
+            // Read-only or full disk. Sidecar files only save time.
+        }
+    }
+
+    /**
+     * @param key
+     * @return Name of the sidecar file is a hash of the path of the file.
+     */
+    private Path getSidecarPath(Path key) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            byte[] hash = digest.digest(key.toString().getBytes(StandardCharsets.UTF_8));
+
+            StringBuilder name = new StringBuilder();
+
+            for (byte b : hash) {
+                name.append(String.format("%02x", b & 0xff));
+            }
+
+            return directory.resolve(name.append(SIDECAR_EXTENSION).toString());
+        } catch (NoSuchAlgorithmException ex) {
+            // Every Java platform is required to support SHA-1.
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static BasicFileAttributes readAttributes(Path path) {
+        try {
+            return Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (java.io.IOException ex) {
+            // We wrap it in our own exception object.
+            throw new WavReader.IOException(ex);
+        }
+    }
+
+    private static class Entry {
+        final long fileSize;
+
+        final long modified;
+
+        /**
+         * Bucket sizes that the waveform of the summary was made with.
+         */
+        final int[] bucketSizes;
+
+        final WavSummary summary;
+
+        /**
+         * How many bytes the summary takes up.
+         */
+        final long size;
+
+        Entry(long fileSize, long modified, int[] bucketSizes, WavSummary summary) {
+            this.fileSize = fileSize;
+            this.modified = modified;
+            this.bucketSizes = bucketSizes;
+            this.summary = summary;
+            this.size = summary.getSize();
+        }
+    }
+}
@@ -0,0 +1,372 @@
+package com.daniel_araujo.wavio;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes a wav file without knowing in advance how long it will be.
+ * <p>
+ * The header is written right away with placeholder lengths and samples are written as they come. When the
+ * writer is closed it goes back to the header and fills in the real lengths. Nothing but the header is
+ * kept in memory.
+ * <p>
+ * Room for a ds64 chunk is reserved with a JUNK chunk. If the file turns out to be too big for the 32 bit
+ * lengths of a RIFF file, the JUNK chunk is replaced by a ds64 chunk and the file becomes an RF64 file.
+ */
+public class WavWriter implements Closeable {
+    /**
+     * Size of the header of integer PCM files that are not extensible, up until the first sample.
+     */
+    static final int HEADER_SIZE = 80;
+
+    /**
+     * Size of the contents of a ds64 chunk without a table.
+     */
+    private static final int DS64_SIZE = 28;
+
+    /*
+     * Where the fields that get filled in on close are, relative to the start of the file.
+     */
+    private static final int RIFF_ID_POSITION = 0;
+
+    private static final int JUNK_ID_POSITION = 12;
+
+    private static final int FMT_ID_POSITION = 48;
+
+    /**
+     * Largest value that fits in the length field of a chunk.
+     */
+    private static final long MAX_CHUNK_LENGTH = 0xffffffffL;
+
+    private final SeekableByteChannel channel;
+
+    private final WavReader.DataFormat format;
+
+    /**
+     * Length of the fmt chunk. 16 for integer PCM, 18 for IEEE float and 40 for WAVE_FORMAT_EXTENSIBLE.
+     */
+    private final int fmtLength;
+
+    /**
+     * Whether there is a fact chunk, which every format but integer PCM must have.
+     */
+    private final boolean hasFact;
+
+    /**
+     * Size of the header, up until the first sample.
+     */
+    private final int headerSize;
+
+    /**
+     * Position of the channel where the file starts.
+     */
+    private final long start;
+
+    /**
+     * How many bytes of samples have been written.
+     */
+    private long dataLength;
+
+    /**
+     * Files whose RIFF chunk would be longer than this become RF64 files. Can be lowered by tests.
+     */
+    long rf64Threshold = MAX_CHUNK_LENGTH;
+
+    /**
+     * Writes the header at the current position of the channel.
+     *
+     * @param channel
+     * @param format  Format of the samples that will be written.
+     */
+    public WavWriter(SeekableByteChannel channel, WavReader.DataFormat format) {
+        this.channel = channel;
+        this.format = format;
+
+        if (format.getChannelMask() != 0 || format.getValidBitsPerSample() < format.getBitsPerSample()) {
+            // Only WAVE_FORMAT_EXTENSIBLE can hold these.
+            fmtLength = 40;
+        } else if (format.isFloat()) {
+            // Has the size of the extension, which is empty.
+            fmtLength = 18;
+        } else {
+            fmtLength = 16;
+        }
+
+        hasFact = format.isFloat();
+        headerSize = FMT_ID_POSITION + 8 + fmtLength + (hasFact ? 12 : 0) + 8;
+
+        try {
+            start = channel.position();
+        } catch (java.io.IOException ex) {
+            // We wrap it in our own exception object.
+            throw new WavReader.IOException(ex);
+        }
+
+        writeFully(createHeader());
+    }
+
+    /**
+     * Creates a file, replacing it if it already exists.
+     *
+     * @param path
+     * @param format Format of the samples that will be written.
+     * @return
+     */
+    public static WavWriter create(Path path, WavReader.DataFormat format) {
+        FileChannel channel = null;
+
+        try {
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            return new WavWriter(channel, format);
+        } catch (java.io.IOException ex) {
+            closeQuietly(channel);
+            // We wrap it in our own exception object.
+            throw new WavReader.IOException(ex);
+        } catch (RuntimeException ex) {
+            closeQuietly(channel);
+            throw ex;
+        }
+    }
+
+    /**
+     * @return Format of the samples.
+     */
+    public WavReader.DataFormat getDataFormat() {
+        return format;
+    }
+
+    /**
+     * @return Size of the header, up until the first sample.
+     */
+    int getHeaderSize() {
+        return headerSize;
+    }
+
+    /**
+     * @return How many bytes of samples have been written.
+     */
+    public long getDataLength() {
+        return dataLength;
+    }
+
+    /**
+     * Writes samples.
+     *
+     * @param samples Interleaved samples in little endian order. Everything from position to limit is
+     *                written and position is moved to limit.
+     */
+    public void write(ByteBuffer samples) {
+        dataLength += writeFully(samples);
+    }
+
+    /**
+     * Copies samples from another file. When writing to a file channel, the operating system may be able to
+     * copy the bytes without them passing through the JVM.
+     *
+     * @param source   File that contains interleaved samples in little endian order.
+     * @param position Where the samples start in the source.
+     * @param count    How many bytes to copy.
+     * @return How many bytes were copied. Less than count if the source ends first.
+     */
+    public long transferFrom(FileChannel source, long position, long count) {
+        long copied = 0;
+
+        try {
+            while (copied < count) {
+                long n = source.transferTo(position + copied, count - copied, channel);
+
+                if (n <= 0) {
+                    break;
+                }
+
+                copied += n;
+            }
+        } catch (java.io.IOException ex) {
+            // We wrap it in our own exception object.
+            throw new WavReader.IOException(ex);
+        }
+
+        dataLength += copied;
+        return copied;
+    }
+
+    /**
+     * Fills in the lengths in the header and closes the channel.
+     */
+    @Override
+    public void close() {
+        try {
+            finish();
+        } finally {
+            try {
+                channel.close();
+            } catch (java.io.IOException ex) {
+                // We wrap it in our own exception object.
+                throw new WavReader.IOException(ex);
+            }
+        }
+    }
+
+    private void finish() {
+        if (dataLength % 2 != 0) {
+            // Chunks must have an even length.
+            writeFully(ByteBuffer.allocate(1));
+        }
+
+        long riffLength = headerSize - 8 + dataLength + dataLength % 2;
+        long frames = dataLength / (format.getBytesPerSample() * format.getChannels());
+
+        if (riffLength <= rf64Threshold) {
+            writeIntAt(RIFF_ID_POSITION + 4, (int) riffLength);
+
+            if (hasFact) {
+                writeIntAt(getFactLengthPosition() + 4, (int) Math.min(frames, MAX_CHUNK_LENGTH));
+            }
+
+            writeIntAt(getDataLengthPosition(), (int) dataLength);
+        } else {
+            ByteBuffer riff = ByteBuffer.allocate(8);
+            riff.order(ByteOrder.LITTLE_ENDIAN);
+            riff.put(new byte[]{'R', 'F', '6', '4'});
+            riff.putInt((int) MAX_CHUNK_LENGTH);
+            riff.flip();
+            writeAt(RIFF_ID_POSITION, riff);
+
+            ByteBuffer ds64 = ByteBuffer.allocate(8 + DS64_SIZE);
+            ds64.order(ByteOrder.LITTLE_ENDIAN);
+            ds64.put(new byte[]{'d', 's', '6', '4'});
+            ds64.putInt(DS64_SIZE);
+            ds64.putLong(riffLength);
+            ds64.putLong(dataLength);
+            // Also the real value of the fact chunk.
+            ds64.putLong(frames);
+            // No table.
+            ds64.putInt(0);
+            ds64.flip();
+            writeAt(JUNK_ID_POSITION, ds64);
+
+            if (hasFact) {
+                writeIntAt(getFactLengthPosition() + 4, (int) MAX_CHUNK_LENGTH);
+            }
+
+            writeIntAt(getDataLengthPosition(), (int) MAX_CHUNK_LENGTH);
+        }
+    }
+
+    /**
+     * @return Where the length field of the fact chunk is.
+     */
+    private int getFactLengthPosition() {
+        return FMT_ID_POSITION + 8 + fmtLength + 4;
+    }
+
+    /**
+     * @return Where the length field of the data chunk is.
+     */
+    private int getDataLengthPosition() {
+        return headerSize - 4;
+    }
+
+    private ByteBuffer createHeader() {
+        int blockAlign = format.getBytesPerSample() * format.getChannels();
+
+        ByteBuffer header = ByteBuffer.allocate(headerSize);
+        header.order(ByteOrder.LITTLE_ENDIAN);
+
+        header.put(new byte[]{'R', 'I', 'F', 'F'});
+        // Placeholder.
+        header.putInt(0);
+        header.put(new byte[]{'W', 'A', 'V', 'E'});
+
+        // Reserves room for a ds64 chunk.
+        header.put(new byte[]{'J', 'U', 'N', 'K'});
+        header.putInt(DS64_SIZE);
+        header.position(header.position() + DS64_SIZE);
+
+        header.put(new byte[]{'f', 'm', 't', ' '});
+        header.putInt(fmtLength);
+        header.putShort((short) (fmtLength == 40 ? WavReader.RiffUtils.WAVE_FORMAT_EXTENSIBLE
+                : format.getAudioFormat()));
+        header.putShort((short) format.getChannels());
+        header.putInt(format.getSampleRate());
+        header.putInt(format.getSampleRate() * blockAlign);
+        header.putShort((short) blockAlign);
+        header.putShort((short) format.getBitsPerSample());
+
+        if (fmtLength == 18) {
+            header.putShort((short) 0);
+        } else if (fmtLength == 40) {
+            header.putShort((short) 22);
+            header.putShort((short) format.getValidBitsPerSample());
+            header.putInt(format.getChannelMask());
+            // Sub format GUID, which starts with the actual format.
+            header.putShort((short) format.getAudioFormat());
+            header.put(WavReader.RiffUtils.KSDATAFORMAT_SUBTYPE_SUFFIX);
+        }
+
+        if (hasFact) {
+            header.put(new byte[]{'f', 'a', 'c', 't'});
+            header.putInt(4);
+            // Placeholder for the number of frames.
+            header.putInt(0);
+        }
+
+        header.put(new byte[]{'d', 'a', 't', 'a'});
+        // Placeholder.
+        header.putInt(0);
+
+        header.flip();
+        return header;
+    }
+
+    private void writeIntAt(long position, int value) {
+        ByteBuffer buffer = ByteBuffer.allocate(4);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(0, value);
+        writeAt(position, buffer);
+    }
+
+    private void writeAt(long position, ByteBuffer buffer) {
+        try {
+            channel.position(start + position);
+        } catch (java.io.IOException ex) {
+            // We wrap it in our own exception object.
+            throw new WavReader.IOException(ex);
+        }
+
+        writeFully(buffer);
+    }
+
+    private int writeFully(ByteBuffer buffer) {
+        int count = buffer.remaining();
+
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (java.io.IOException ex) {
+            // We wrap it in our own exception object.
+            throw new WavReader.IOException(ex);
+        }
+
+        return count;
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+
+        try {
+            closeable.close();
+        } catch (java.io.IOException ex) {
+            // Ignore.
+        }
+    }
+}
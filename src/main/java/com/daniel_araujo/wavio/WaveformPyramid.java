@@ -0,0 +1,478 @@
+package com.daniel_araujo.wavio;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Summarizes the waveform of each channel at several zoom levels in a single pass.
+ * <p>
+ * Register it as the non-interleaved float samples listener of a reader. Every level splits the samples
+ * into buckets of a fixed number of frames and keeps the minimum, maximum and RMS of each bucket. Only the
+ * first level looks at samples. Each level above it is built from the finished buckets of the level below,
+ * so bucket sizes must be multiples of each other. Apart from the buckets themselves, memory use does not
+ * depend on how long the stream is.
+ * <p>
+ * Call finish when the stream ends so that the last, partial buckets are included.
+ */
+public class WaveformPyramid implements WavReader.OnNoninterleavedFloatSamplesListener {
+    /**
+     * Frames per bucket of each level when none are given.
+     */
+    public static final int[] DEFAULT_BUCKET_SIZES = {256, 4096, 65536};
+
+    /**
+     * Identifies the binary format. Spells WVPY.
+     */
+    private static final int MAGIC = 0x57565059;
+
+    private static final int VERSION = 1;
+
+    /**
+     * The fmt chunk stores the number of channels in 16 bits.
+     */
+    private static final int MAX_CHANNELS = 0xffff;
+
+    /**
+     * How many values readFrom allocates room for before it has seen them.
+     */
+    private static final int READ_BLOCK = 64 * 1024;
+
+    private final WavReader reader;
+
+    private final int[] bucketSizes;
+
+    private int channels;
+
+    private int sampleRate;
+
+    private long frames;
+
+    private Level[] levels;
+
+    /**
+     * @param reader      Reader whose samples will be summarized. Tells the sample rate.
+     * @param bucketSizes Frames per bucket of each level, from the most detailed to the least. Each must be
+     *                    a multiple of the one before it. Uses DEFAULT_BUCKET_SIZES if none are given.
+     */
+    public WaveformPyramid(WavReader reader, int... bucketSizes) {
+        if (bucketSizes.length == 0) {
+            bucketSizes = DEFAULT_BUCKET_SIZES;
+        }
+
+        for (int l = 0; l < bucketSizes.length; l++) {
+            if (bucketSizes[l] <= 0) {
+                throw new IllegalArgumentException("Bucket size must be positive.");
+            }
+
+            if (l > 0 && (bucketSizes[l] <= bucketSizes[l - 1] || bucketSizes[l] % bucketSizes[l - 1] != 0)) {
+                throw new IllegalArgumentException("Bucket size must be a multiple of the previous one.");
+            }
+        }
+
+        this.reader = reader;
+        this.bucketSizes = bucketSizes.clone();
+    }
+
+    private WaveformPyramid(int channels, int sampleRate, long frames, Level[] levels) {
+        this.reader = null;
+        this.channels = channels;
+        this.sampleRate = sampleRate;
+        this.frames = frames;
+        this.levels = levels;
+        this.bucketSizes = new int[levels.length];
+
+        for (int l = 0; l < levels.length; l++) {
+            bucketSizes[l] = levels[l].bucketSize;
+        }
+    }
+
+    @Override
+    public void onNoninterleavedFloatSamples(float[][] samples, int length) {
+        if (levels == null) {
+            start(reader.getDataFormat().getSampleRate(), samples.length);
+        }
+
+        Level first = levels[0];
+        int i = 0;
+
+        while (i < length) {
+            // Samples that go into the current bucket.
+            int count = Math.min(length - i, first.bucketSize - first.frames);
+
+            for (int c = 0; c < channels; c++) {
+                float[] channel = samples[c];
+                float min = first.min[c];
+                float max = first.max[c];
+                double sumOfSquares = 0;
+
+                for (int end = i + count, s = i; s < end; s++) {
+                    float value = channel[s];
+
+                    if (value < min) {
+                        min = value;
+                    }
+
+                    if (value > max) {
+                        max = value;
+                    }
+
+                    sumOfSquares += value * value;
+                }
+
+                first.min[c] = min;
+                first.max[c] = max;
+                first.sumOfSquares[c] += sumOfSquares;
+            }
+
+            first.frames += count;
+            frames += count;
+            i += count;
+
+            if (first.frames == first.bucketSize) {
+                close(0);
+            }
+        }
+    }
+
+    /**
+     * Adds the partial buckets of every level. Call when the stream ends. No more samples can be added
+     * afterwards.
+     */
+    public void finish() {
+        if (levels == null) {
+            return;
+        }
+
+        for (int l = 0; l < levels.length; l++) {
+            if (levels[l].frames > 0) {
+                close(l);
+            }
+        }
+    }
+
+    /**
+     * @return How many levels there are.
+     */
+    public int getLevels() {
+        return bucketSizes.length;
+    }
+
+    /**
+     * @param level
+     * @return Frames per bucket of the level.
+     */
+    public int getBucketSize(int level) {
+        return bucketSizes[level];
+    }
+
+    /**
+     * @param level
+     * @return How many finished buckets the level has.
+     */
+    public int getBucketCount(int level) {
+        return levels == null ? 0 : levels[level].count;
+    }
+
+    /**
+     * @return How many channels were summarized. 0 if no samples were received.
+     */
+    public int getChannels() {
+        return channels;
+    }
+
+    /**
+     * @return Sample rate of the samples. 0 if no samples were received.
+     */
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    /**
+     * @return How many frames were summarized.
+     */
+    public long getFrames() {
+        return frames;
+    }
+
+    /**
+     * @param level
+     * @param channel
+     * @param bucket
+     * @return Lowest sample of the bucket.
+     */
+    public float getMin(int level, int channel, int bucket) {
+        return get(level, channel, bucket, 0);
+    }
+
+    /**
+     * @param level
+     * @param channel
+     * @param bucket
+     * @return Highest sample of the bucket.
+     */
+    public float getMax(int level, int channel, int bucket) {
+        return get(level, channel, bucket, 1);
+    }
+
+    /**
+     * @param level
+     * @param channel
+     * @param bucket
+     * @return Root mean square of the samples of the bucket.
+     */
+    public float getRms(int level, int channel, int bucket) {
+        return get(level, channel, bucket, 2);
+    }
+
+    /**
+     * Writes the buckets in a compact binary format that readFrom understands.
+     * <p>
+     * Values are stored as 16 bit integers between -1 and 1. Minimums are rounded down and maximums up so
+     * that the envelope never shrinks. Values outside of -1 and 1 are clamped. The stream is not closed.
+     *
+     * @param output
+     */
+    public void writeTo(OutputStream output) {
+        try {
+            DataOutputStream data = new DataOutputStream(output);
+
+            data.writeInt(MAGIC);
+            data.writeInt(VERSION);
+            data.writeInt(channels);
+            data.writeInt(sampleRate);
+            data.writeLong(frames);
+            data.writeInt(bucketSizes.length);
+
+            for (int l = 0; l < bucketSizes.length; l++) {
+                int count = getBucketCount(l);
+
+                data.writeInt(bucketSizes[l]);
+                data.writeInt(count);
+
+                for (int i = 0; i < count * channels * 3; i += 3) {
+                    float[] values = levels[l].values;
+                    data.writeShort(quantize(Math.floor(values[i] * 32767.0)));
+                    data.writeShort(quantize(Math.ceil(values[i + 1] * 32767.0)));
+                    data.writeShort(quantize(Math.floor(values[i + 2] * 32767.0 + 0.5)));
+                }
+            }
+
+            data.flush();
+        } catch (java.io.IOException ex) {
+            // We wrap it in our own exception object.
+            throw new WavReader.IOException(ex);
+        }
+    }
+
+    /**
+     * Reads buckets written by writeTo. The stream is not closed.
+     * <p>
+     * Lengths in the data are checked before anything is allocated and arrays only grow as values are
+     * actually read, so damaged data cannot make it allocate more memory than the stream holds.
+     *
+     * @param input
+     * @return
+     */
+    public static WaveformPyramid readFrom(InputStream input) {
+        try {
+            DataInputStream data = new DataInputStream(input);
+
+            if (data.readInt() != MAGIC) {
+                throw new InvalidPyramidException("Not a waveform pyramid.");
+            }
+
+            if (data.readInt() != VERSION) {
+                throw new InvalidPyramidException("Version not supported.");
+            }
+
+            int channels = data.readInt();
+            int sampleRate = data.readInt();
+            long frames = data.readLong();
+            int levelCount = data.readInt();
+
+            // Each bucket size is at least twice the one below it, so an int cannot hold more levels.
+            if (channels < 0 || channels > MAX_CHANNELS || frames < 0 || levelCount <= 0 || levelCount > 31) {
+                throw new InvalidPyramidException("Invalid header.");
+            }
+
+            Level[] levels = new Level[levelCount];
+
+            for (int l = 0; l < levelCount; l++) {
+                int bucketSize = data.readInt();
+                int count = data.readInt();
+
+                if (bucketSize <= 0 || count < 0 || count > (frames + bucketSize - 1) / bucketSize) {
+                    throw new InvalidPyramidException("Invalid level.");
+                }
+
+                if (l > 0 && (bucketSize <= levels[l - 1].bucketSize || bucketSize % levels[l - 1].bucketSize != 0)) {
+                    throw new InvalidPyramidException("Invalid level.");
+                }
+
+                long length = (long) count * channels * 3;
+
+                if (length > Integer.MAX_VALUE - 8) {
+                    throw new InvalidPyramidException("Level is too big.");
+                }
+
+                Level level = new Level(bucketSize, channels);
+                level.values = readValues(data, (int) length);
+                level.count = count;
+
+                levels[l] = level;
+            }
+
+            return new WaveformPyramid(channels, sampleRate, frames, levels);
+        } catch (java.io.IOException ex) {
+            // We wrap it in our own exception object.
+            throw new WavReader.IOException(ex);
+        }
+    }
+
+    /**
+     * Reads values written by writeTo. The array starts small and grows as values arrive, so a length that
+     * is bigger than what the stream holds ends in an EOFException rather than a huge allocation.
+     *
+     * @param data
+     * @param length
+     * @return
+     * @throws java.io.IOException
+     */
+    private static float[] readValues(DataInputStream data, int length) throws java.io.IOException {
+        float[] values = new float[Math.min(length, READ_BLOCK)];
+
+        for (int i = 0; i < length; i++) {
+            if (i == values.length) {
+                values = Arrays.copyOf(values, (int) Math.min(length, (long) values.length * 2));
+            }
+
+            values[i] = data.readShort() / 32767.0f;
+        }
+
+        return values;
+    }
+
+    private void start(int sampleRate, int channels) {
+        this.sampleRate = sampleRate;
+        this.channels = channels;
+
+        levels = new Level[bucketSizes.length];
+
+        for (int l = 0; l < bucketSizes.length; l++) {
+            levels[l] = new Level(bucketSizes[l], channels);
+        }
+    }
+
+    /**
+     * Finishes the current bucket of a level and adds it to the bucket of the level above.
+     *
+     * @param l
+     */
+    private void close(int l) {
+        Level level = levels[l];
+        level.add();
+
+        if (l + 1 < levels.length) {
+            Level next = levels[l + 1];
+
+            for (int c = 0; c < channels; c++) {
+                next.min[c] = Math.min(next.min[c], level.min[c]);
+                next.max[c] = Math.max(next.max[c], level.max[c]);
+                next.sumOfSquares[c] += level.sumOfSquares[c];
+            }
+
+            next.frames += level.frames;
+        }
+
+        level.reset();
+
+        if (l + 1 < levels.length && levels[l + 1].frames == levels[l + 1].bucketSize) {
+            close(l + 1);
+        }
+    }
+
+    private float get(int level, int channel, int bucket, int value) {
+        if (bucket < 0 || bucket >= getBucketCount(level)) {
+            throw new IndexOutOfBoundsException("Bucket " + bucket + " does not exist.");
+        }
+
+        if (channel < 0 || channel >= channels) {
+            throw new IndexOutOfBoundsException("Channel " + channel + " does not exist.");
+        }
+
+        return levels[level].values[(bucket * channels + channel) * 3 + value];
+    }
+
+    private static short quantize(double value) {
+        return (short) Math.max(-32767, Math.min(32767, value));
+    }
+
+    /**
+     * Buckets of a level and the bucket that is being filled.
+     */
+    private static class Level {
+        final int bucketSize;
+
+        /**
+         * Minimum, maximum and RMS of each channel of each finished bucket.
+         */
+        float[] values = new float[0];
+
+        int count;
+
+        final float[] min;
+
+        final float[] max;
+
+        final double[] sumOfSquares;
+
+        /**
+         * Frames in the bucket that is being filled.
+         */
+        int frames;
+
+        Level(int bucketSize, int channels) {
+            this.bucketSize = bucketSize;
+            this.min = new float[channels];
+            this.max = new float[channels];
+            this.sumOfSquares = new double[channels];
+            reset();
+        }
+
+        void add() {
+            final int channels = min.length;
+            int index = count * channels * 3;
+
+            if (values.length < index + channels * 3) {
+                values = Arrays.copyOf(values, Math.max(values.length * 2, channels * 3 * 16));
+            }
+
+            for (int c = 0; c < channels; c++, index += 3) {
+                values[index] = min[c];
+                values[index + 1] = max[c];
+                values[index + 2] = (float) Math.sqrt(sumOfSquares[c] / frames);
+            }
+
+            count++;
+        }
+
+        void reset() {
+            Arrays.fill(min, Float.POSITIVE_INFINITY);
+            Arrays.fill(max, Float.NEGATIVE_INFINITY);
+            Arrays.fill(sumOfSquares, 0);
+            frames = 0;
+        }
+    }
+
+    /**
+     * Thrown when readFrom is given data that was not written by writeTo.
+     */
+    public static class InvalidPyramidException extends WavReader.Exception {
+        InvalidPyramidException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.daniel_araujo.wavio;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * Reads and writes little endian numbers in byte arrays.
+ * <p>
+ * Java 11 version. Views the arrays as arrays of wider numbers, which the JIT turns into a single load or
+ * store per number.
+ */
+abstract class ByteArrayAccess {
+    private static final VarHandle SHORTS = MethodHandles.byteArrayViewVarHandle(short[].class,
+            ByteOrder.LITTLE_ENDIAN);
+
+    private static final VarHandle INTS = MethodHandles.byteArrayViewVarHandle(int[].class,
+            ByteOrder.LITTLE_ENDIAN);
+
+    static short getShort(byte[] array, int index) {
+        return (short) SHORTS.get(array, index);
+    }
+
+    static int getInt(byte[] array, int index) {
+        return (int) INTS.get(array, index);
+    }
+
+    static void putShort(byte[] array, int index, short value) {
+        SHORTS.set(array, index, value);
+    }
+
+    static void putInt(byte[] array, int index, int value) {
+        INTS.set(array, index, value);
+    }
+}
@@ -0,0 +1,114 @@
+package com.daniel_araujo.wavio;
+
+import java.nio.ByteOrder;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShuffle;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The loops that every decoded sample goes through, using the Vector API.
+ * <p>
+ * Each method handles as many samples as fit in whole vectors and leaves the rest, and the cases that it
+ * has no vector version of, to SampleKernels. Results are the same to the bit.
+ */
+final class VectorSampleKernels extends SampleKernels {
+    private static final VectorSpecies<Byte> BYTES = ByteVector.SPECIES_PREFERRED;
+
+    private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+
+    private static final VectorSpecies<Float> FLOATS = FloatVector.SPECIES_PREFERRED;
+
+    /**
+     * Moves 3 byte samples into 4 byte lanes. The last byte of each lane is shifted out later.
+     */
+    private static final VectorShuffle<Byte> SPREAD_24 = VectorShuffle.fromOp(BYTES,
+            i -> i / 4 * 3 + Math.min(i % 4, 2));
+
+    VectorSampleKernels() {
+        if (ByteOrder.nativeOrder() != ByteOrder.LITTLE_ENDIAN) {
+            // Bytes are reinterpreted as wider lanes in the order of the hardware.
+            throw new UnsupportedOperationException("Needs a little endian platform.");
+        }
+    }
+
+    @Override
+    void decode16(byte[] source, int s, int step, int count, int[] target, int t) {
+        final int lanes = INTS.length();
+        final int bytes = BYTES.length();
+        int i = 0;
+
+        if (step == 1) {
+            // One load fills two vectors of integers.
+            for (; i + 2 * lanes <= count; i += 2 * lanes, s += bytes) {
+                ShortVector samples = ByteVector.fromArray(BYTES, source, s).reinterpretAsShorts();
+                ((IntVector) samples.convertShape(VectorOperators.S2I, INTS, 0)).intoArray(target, t + i);
+                ((IntVector) samples.convertShape(VectorOperators.S2I, INTS, 1)).intoArray(target, t + i + lanes);
+            }
+        } else if (step == 2) {
+            // Stereo. Every lane holds a whole frame and the wanted sample is in its lower half.
+            for (; i + lanes <= count && s + bytes <= source.length; i += lanes, s += bytes) {
+                ByteVector.fromArray(BYTES, source, s).reinterpretAsInts()
+                        .lanewise(VectorOperators.LSHL, 16)
+                        .lanewise(VectorOperators.ASHR, 16)
+                        .intoArray(target, t + i);
+            }
+        }
+
+        super.decode16(source, s, step, count - i, target, t + i);
+    }
+
+    @Override
+    void decode24(byte[] source, int s, int step, int count, int[] target, int t) {
+        final int lanes = INTS.length();
+        int i = 0;
+
+        if (step == 1) {
+            // Loads a whole vector of bytes but only uses three quarters of it.
+            for (; i + lanes <= count && s + BYTES.length() <= source.length; i += lanes, s += lanes * 3) {
+                ByteVector.fromArray(BYTES, source, s).rearrange(SPREAD_24).reinterpretAsInts()
+                        .lanewise(VectorOperators.LSHL, 8)
+                        .lanewise(VectorOperators.ASHR, 8)
+                        .intoArray(target, t + i);
+            }
+        }
+
+        super.decode24(source, s, step, count - i, target, t + i);
+    }
+
+    @Override
+    void toFloat(int[] source, float scale, int count, float[] target, int t) {
+        final int lanes = INTS.length();
+        int i = 0;
+
+        for (; i + lanes <= count; i += lanes) {
+            ((FloatVector) IntVector.fromArray(INTS, source, i).convert(VectorOperators.I2F, 0))
+                    .mul(scale)
+                    .intoArray(target, t + i);
+        }
+
+        for (; i < count; i++) {
+            target[t + i] = source[i] * scale;
+        }
+    }
+
+    @Override
+    void multiplyAdd(float[] source, float gain, int count, float[] target) {
+        final int lanes = FLOATS.length();
+        int i = 0;
+
+        for (; i + lanes <= count; i += lanes) {
+            FloatVector.fromArray(FLOATS, target, i)
+                    .add(FloatVector.fromArray(FLOATS, source, i).mul(gain))
+                    .intoArray(target, i);
+        }
+
+        for (; i < count; i++) {
+            target[i] += gain * source[i];
+        }
+    }
+}
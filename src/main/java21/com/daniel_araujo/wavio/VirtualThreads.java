@@ -0,0 +1,18 @@
+package com.daniel_araujo.wavio;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Creates executors that run every task on a new virtual thread.
+ * <p>
+ * Java 21 version. Virtual threads are always available.
+ */
+abstract class VirtualThreads {
+    /**
+     * @return Never null.
+     */
+    static ExecutorService newExecutor() {
+        return Executors.newVirtualThreadPerTaskExecutor();
+    }
+}
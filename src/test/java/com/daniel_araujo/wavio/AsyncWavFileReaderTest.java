@@ -0,0 +1,172 @@
+package com.daniel_araujo.wavio;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.CompletionHandler;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class AsyncWavFileReaderTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void read_passesWholeFileToReaderInOrder() throws Exception {
+        byte[] samples = new byte[1000];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = (byte) i;
+        }
+
+        Path path = createFile(new WavFileHeaderBuilder()
+                .setBitsPerSample(8)
+                .setChannels(1)
+                .setDataLength(samples.length)
+                .build(), samples);
+
+        final ByteArrayOutputStream received = new ByteArrayOutputStream();
+
+        WavReader reader = new WavReader();
+        reader.setOnInterleavedSamplesListener(new WavReader.OnInterleavedSamplesListener() {
+            @Override
+            public void onInterleavedSamples(ByteBuffer samples) {
+                byte[] array = ByteBufferUtils.getArray(samples.duplicate());
+                received.write(array, 0, array.length);
+            }
+        });
+
+        // Small buffers so that there are many reads and the last one is shorter.
+        try (AsyncWavFileReader file = AsyncWavFileReader.open(path)) {
+            file.setBufferSize(7);
+            file.setReadsInFlight(3);
+
+            Handler handler = new Handler();
+            file.read(reader, null, handler);
+
+            assertTrue(handler.latch.await(10, TimeUnit.SECONDS));
+            assertNull(handler.failure);
+            assertEquals(Long.valueOf(1044), handler.result);
+            assertEquals(1, handler.calls.get());
+        }
+
+        assertArrayEquals(samples, received.toByteArray());
+    }
+
+    @Test
+    public void read_failsOnceIfReaderThrowsException() throws Exception {
+        byte[] file = new byte[100];
+        file[0] = 'J';
+        file[1] = 'U';
+        file[2] = 'N';
+        file[3] = 'K';
+
+        Path path = createFile(file);
+
+        try (AsyncWavFileReader reader = AsyncWavFileReader.open(path)) {
+            reader.setBufferSize(4);
+
+            Handler handler = new Handler();
+            reader.read(new WavReader(), null, handler);
+
+            assertTrue(handler.latch.await(10, TimeUnit.SECONDS));
+            assertTrue(handler.failure instanceof WavReader.ChunkNotFoundException);
+
+            // Reads that were in flight must not call the handler again.
+            Thread.sleep(100);
+            assertEquals(1, handler.calls.get());
+        }
+    }
+
+    @Test
+    public void read_letsListenersCloseTheFile() throws Exception {
+        Path path = createFile(new WavFileHeaderBuilder()
+                .setBitsPerSample(8)
+                .setChannels(1)
+                .setDataLength(1000)
+                .build(), new byte[1000]);
+
+        final AsyncWavFileReader file = AsyncWavFileReader.open(path);
+        file.setBufferSize(7);
+        file.setReadsInFlight(3);
+
+        final AtomicInteger listenerCalls = new AtomicInteger();
+
+        WavReader reader = new WavReader();
+        reader.setOnInterleavedSamplesListener(new WavReader.OnInterleavedSamplesListener() {
+            @Override
+            public void onInterleavedSamples(ByteBuffer samples) {
+                if (listenerCalls.incrementAndGet() == 1) {
+                    file.close();
+                }
+            }
+        });
+
+        Handler handler = new Handler();
+        file.read(reader, null, handler);
+
+        assertTrue(handler.latch.await(10, TimeUnit.SECONDS));
+        assertTrue(handler.failure instanceof WavReader.IOException);
+
+        Thread.sleep(100);
+        assertEquals(1, handler.calls.get());
+    }
+
+    @Test
+    public void read_completesEmptyFile() throws Exception {
+        Path path = createFile();
+
+        try (AsyncWavFileReader reader = AsyncWavFileReader.open(path)) {
+            Handler handler = new Handler();
+            reader.read(new WavReader(), null, handler);
+
+            assertTrue(handler.latch.await(10, TimeUnit.SECONDS));
+            assertEquals(Long.valueOf(0), handler.result);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void setReadsInFlight_throwsExceptionIfNotPositive() throws IOException {
+        try (AsyncWavFileReader reader = AsyncWavFileReader.open(createFile())) {
+            reader.setReadsInFlight(0);
+        }
+    }
+
+    private Path createFile(byte[]... parts) throws IOException {
+        Path path = folder.newFile().toPath();
+        Files.write(path, ArrayUtils.concat(parts));
+        return path;
+    }
+
+    private static class Handler implements CompletionHandler<Long, Object> {
+        final CountDownLatch latch = new CountDownLatch(1);
+
+        final AtomicInteger calls = new AtomicInteger();
+
+        volatile Long result;
+
+        volatile Throwable failure;
+
+        @Override
+        public void completed(Long result, Object attachment) {
+            this.result = result;
+            calls.incrementAndGet();
+            latch.countDown();
+        }
+
+        @Override
+        public void failed(Throwable exc, Object attachment) {
+            failure = exc;
+            calls.incrementAndGet();
+            latch.countDown();
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.daniel_araujo.wavio;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.junit.Assert.*;
+
+public class BitDepthConverterTest {
+    @Test
+    public void onInterleavedSamples_widensIntegerSamples() {
+        OnInterleavedSamplesListenerTracker tracker = new OnInterleavedSamplesListenerTracker();
+
+        WavReader reader = new WavReader();
+        reader.setOnInterleavedSamplesListener(new BitDepthConverter(reader, 24,
+                WavReader.DataFormat.FORMAT_PCM, tracker));
+
+        reader.read(new WavFileHeaderBuilder().setBitsPerSample(16).build());
+        reader.read(new byte[]{0x34, 0x12, (byte) 0xff, (byte) 0xff});
+
+        assertEquals(1, tracker.calls.size());
+        assertArrayEquals(new byte[]{0, 0x34, 0x12, 0, (byte) 0xff, (byte) 0xff},
+                ByteBufferUtils.getArray(tracker.calls.get(0)));
+    }
+
+    @Test
+    public void onInterleavedSamples_roundsNarrowedSamplesWithoutDither() {
+        OnInterleavedSamplesListenerTracker tracker = new OnInterleavedSamplesListenerTracker();
+
+        WavReader reader = new WavReader();
+        BitDepthConverter converter = new BitDepthConverter(reader, 16, WavReader.DataFormat.FORMAT_PCM, tracker);
+        converter.setDither(false);
+        reader.setOnInterleavedSamplesListener(converter);
+
+        reader.read(new WavFileHeaderBuilder().setBitsPerSample(24).build());
+        reader.read(new byte[]{
+                (byte) 0x80, 0x34, 0x12,
+                0x7f, 0x34, 0x12,
+                (byte) 0xff, (byte) 0xff, 0x7f,
+                0, 0, (byte) 0x80});
+
+        assertEquals(1, tracker.calls.size());
+        assertArrayEquals(new byte[]{0x35, 0x12, 0x34, 0x12, (byte) 0xff, 0x7f, 0, (byte) 0x80},
+                ByteBufferUtils.getArray(tracker.calls.get(0)));
+    }
+
+    @Test
+    public void onInterleavedSamples_dithersNarrowedSamplesByAtMostOneStep() {
+        final int count = 10000;
+        final long[] sum = new long[1];
+
+        WavReader reader = new WavReader();
+        reader.setOnInterleavedSamplesListener(new BitDepthConverter(reader, 16, WavReader.DataFormat.FORMAT_PCM,
+                new WavReader.OnInterleavedSamplesListener() {
+                    @Override
+                    public void onInterleavedSamples(ByteBuffer samples) {
+                        while (samples.hasRemaining()) {
+                            short value = samples.getShort();
+                            assertTrue(value >= 0x1233 && value <= 0x1235);
+                            sum[0] += value;
+                        }
+                    }
+                }));
+
+        // Exactly between 0x1234 and 0x1235.
+        byte[] samples = new byte[count * 3];
+        for (int i = 0; i < samples.length; i += 3) {
+            samples[i] = (byte) 0x80;
+            samples[i + 1] = 0x34;
+            samples[i + 2] = 0x12;
+        }
+
+        reader.read(new WavFileHeaderBuilder().setBitsPerSample(24).build());
+        reader.read(samples);
+
+        // Dither must not change the average.
+        assertEquals(0x1234 + 0.5, sum[0] / (double) count, 0.05);
+    }
+
+    @Test
+    public void onInterleavedSamples_convertsIntegerSamplesToFloats() {
+        OnInterleavedSamplesListenerTracker tracker = new OnInterleavedSamplesListenerTracker();
+
+        WavReader reader = new WavReader();
+        reader.setOnInterleavedSamplesListener(new BitDepthConverter(reader, 32,
+                WavReader.DataFormat.FORMAT_IEEE_FLOAT, tracker));
+
+        reader.read(new WavFileHeaderBuilder().setBitsPerSample(16).build());
+        reader.read(new byte[]{0, 0x40, 0, (byte) 0x80});
+
+        ByteBuffer output = tracker.calls.get(0).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(0.5f, output.getFloat(0), 0);
+        assertEquals(-1f, output.getFloat(4), 0);
+    }
+
+    @Test
+    public void onInterleavedSamples_convertsFloatSamplesToIntegersAndClamps() {
+        OnInterleavedSamplesListenerTracker tracker = new OnInterleavedSamplesListenerTracker();
+
+        WavReader reader = new WavReader();
+        BitDepthConverter converter = new BitDepthConverter(reader, 16, WavReader.DataFormat.FORMAT_PCM, tracker);
+        converter.setDither(false);
+        reader.setOnInterleavedSamplesListener(converter);
+
+        ByteBuffer samples = ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN);
+        samples.putFloat(0.5f).putFloat(1.5f).putFloat(-2f);
+
+        reader.read(new WavFileHeaderBuilder().setAudioFormat(3).setBitsPerSample(32).build());
+        reader.read(samples.array());
+
+        ByteBuffer output = tracker.calls.get(0).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(16384, output.getShort(0));
+        assertEquals(Short.MAX_VALUE, output.getShort(2));
+        assertEquals(Short.MIN_VALUE, output.getShort(4));
+    }
+
+    @Test
+    public void getDataFormat_describesConvertedSamples() {
+        WavReader reader = new WavReader();
+        BitDepthConverter converter = new BitDepthConverter(reader, 24, WavReader.DataFormat.FORMAT_PCM,
+                new OnInterleavedSamplesListenerTracker());
+
+        assertNull(converter.getDataFormat());
+
+        reader.read(new WavFileHeaderBuilder().setBitsPerSample(16).setChannels(2).setSampleRate(44100).build());
+
+        WavReader.DataFormat format = converter.getDataFormat();
+        assertEquals(24, format.getBitsPerSample());
+        assertEquals(2, format.getChannels());
+        assertEquals(44100, format.getSampleRate());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_throwsExceptionIfSizeIsNotSupported() {
+        new BitDepthConverter(new WavReader(), 12, WavReader.DataFormat.FORMAT_PCM,
+                new OnInterleavedSamplesListenerTracker());
+    }
+}
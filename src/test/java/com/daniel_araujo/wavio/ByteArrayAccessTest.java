@@ -0,0 +1,42 @@
+package com.daniel_araujo.wavio;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ByteArrayAccessTest {
+    @Test
+    public void getShort_readsLittleEndian() {
+        byte[] array = new byte[]{0, 0x34, (byte) 0x82};
+
+        assertEquals((short) 0x8234, ByteArrayAccess.getShort(array, 1));
+    }
+
+    @Test
+    public void getInt_readsLittleEndian() {
+        byte[] array = new byte[]{0, 0x78, 0x56, 0x34, (byte) 0x92};
+
+        assertEquals(0x92345678, ByteArrayAccess.getInt(array, 1));
+    }
+
+    @Test
+    public void putShort_writesLittleEndian() {
+        byte[] array = new byte[3];
+        ByteArrayAccess.putShort(array, 1, (short) 0x8234);
+
+        assertArrayEquals(new byte[]{0, 0x34, (byte) 0x82}, array);
+    }
+
+    @Test
+    public void putInt_writesLittleEndian() {
+        byte[] array = new byte[5];
+        ByteArrayAccess.putInt(array, 1, 0x92345678);
+
+        assertArrayEquals(new byte[]{0, 0x78, 0x56, 0x34, (byte) 0x92}, array);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void getInt_failsPastTheEnd() {
+        ByteArrayAccess.getInt(new byte[4], 1);
+    }
+}
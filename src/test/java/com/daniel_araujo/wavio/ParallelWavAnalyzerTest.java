@@ -0,0 +1,145 @@
+package com.daniel_araujo.wavio;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+public class ParallelWavAnalyzerTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void analyze_passesFrameAlignedSegmentsAndCombinesThemInOrder() throws IOException {
+        Path path = createStereoFile(new short[]{1, -1, 2, -2, 3, -3, 4, -4, 5, -5, 6, -6, 7, -7});
+
+        try (WavFile file = WavFile.open(path)) {
+            ParallelWavAnalyzer analyzer = new ParallelWavAnalyzer(file);
+            // 2 frames and a half.
+            analyzer.setSegmentSize(10);
+            analyzer.setPool(new ForkJoinPool(4));
+
+            List<Short> result = analyzer.analyze(new ParallelWavAnalyzer.Reducer<List<Short>>() {
+                @Override
+                public List<Short> map(ByteBuffer frames, WavReader.DataFormat format) {
+                    assertEquals(0, frames.remaining() % 4);
+                    assertTrue(frames.remaining() <= 8);
+
+                    List<Short> left = new ArrayList<Short>();
+                    while (frames.hasRemaining()) {
+                        left.add(frames.getShort());
+                        frames.getShort();
+                    }
+                    return left;
+                }
+
+                @Override
+                public List<Short> combine(List<Short> left, List<Short> right) {
+                    left.addAll(right);
+                    return left;
+                }
+            });
+
+            List<Short> expected = new ArrayList<Short>();
+            for (short i = 1; i <= 7; i++) {
+                expected.add(i);
+            }
+
+            assertEquals(expected, result);
+        }
+    }
+
+    @Test
+    public void peakReducer_findsPeakOfEachChannel() throws IOException {
+        Path path = createStereoFile(new short[]{16384, 0, -8192, 0, 100, Short.MIN_VALUE, 0, 4});
+
+        try (WavFile file = WavFile.open(path)) {
+            ParallelWavAnalyzer analyzer = new ParallelWavAnalyzer(file);
+            analyzer.setSegmentSize(4);
+
+            float[] peaks = analyzer.analyze(new ParallelWavAnalyzer.PeakReducer());
+
+            assertArrayEquals(new float[]{0.5f, 1}, peaks, 0);
+        }
+    }
+
+    @Test
+    public void rmsReducer_calculatesRmsOfEachChannel() throws IOException {
+        Path path = createStereoFile(new short[]{16384, 0, -16384, 0, 16384, 0, -16384, 8192});
+
+        try (WavFile file = WavFile.open(path)) {
+            ParallelWavAnalyzer analyzer = new ParallelWavAnalyzer(file);
+            analyzer.setSegmentSize(8);
+
+            ParallelWavAnalyzer.RmsReducer.Result result = analyzer.analyze(new ParallelWavAnalyzer.RmsReducer());
+
+            assertEquals(4, result.getFrames());
+            assertEquals(0.5, result.getRms(0), 1e-9);
+            assertEquals(0.125, result.getRms(1), 1e-9);
+        }
+    }
+
+    @Test
+    public void histogramReducer_countsSamplesInBins() throws IOException {
+        Path path = createStereoFile(new short[]{Short.MIN_VALUE, -1, 0, 16384, Short.MAX_VALUE, 100});
+
+        try (WavFile file = WavFile.open(path)) {
+            ParallelWavAnalyzer analyzer = new ParallelWavAnalyzer(file);
+            analyzer.setSegmentSize(4);
+
+            long[] counts = analyzer.analyze(new ParallelWavAnalyzer.HistogramReducer(4));
+
+            assertArrayEquals(new long[]{1, 1, 2, 2}, counts);
+        }
+    }
+
+    @Test
+    public void histogramReducer_clampsFloatSamplesOutOfRangeAndSkipsNaN() throws IOException {
+        float[] samples = new float[]{-2, Float.NEGATIVE_INFINITY, -0.75f, Float.NaN, 0.25f, 1, 1.5f,
+                Float.POSITIVE_INFINITY};
+        ByteBuffer data = ByteBuffer.allocate(samples.length * 4);
+        data.order(ByteOrder.LITTLE_ENDIAN);
+        data.asFloatBuffer().put(samples);
+
+        Path path = folder.newFile().toPath();
+        Files.write(path, ArrayUtils.concat(new WavFileHeaderBuilder()
+                .setAudioFormat(3)
+                .setBitsPerSample(32)
+                .setChannels(2)
+                .setDataLength(data.capacity())
+                .build(), data.array()));
+
+        try (WavFile file = WavFile.open(path)) {
+            ParallelWavAnalyzer analyzer = new ParallelWavAnalyzer(file);
+            analyzer.setSegmentSize(8);
+
+            long[] counts = analyzer.analyze(new ParallelWavAnalyzer.HistogramReducer(4));
+
+            assertArrayEquals(new long[]{3, 0, 1, 3}, counts);
+        }
+    }
+
+    private Path createStereoFile(short[] samples) throws IOException {
+        ByteBuffer data = ByteBuffer.allocate(samples.length * 2);
+        data.order(ByteOrder.LITTLE_ENDIAN);
+        data.asShortBuffer().put(samples);
+
+        Path path = folder.newFile().toPath();
+        Files.write(path, ArrayUtils.concat(new WavFileHeaderBuilder()
+                .setBitsPerSample(16)
+                .setChannels(2)
+                .setDataLength(data.capacity())
+                .build(), data.array()));
+        return path;
+    }
+}
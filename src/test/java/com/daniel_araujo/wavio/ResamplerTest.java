@@ -0,0 +1,140 @@
+package com.daniel_araujo.wavio;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class ResamplerTest {
+    @Test
+    public void onNoninterleavedFloatSamples_downsamplesSine() {
+        float[] input = sine(48000, 1000, 4800);
+
+        float[] output = resample(48000, 16000, input, input.length);
+
+        assertEquals(1600, output.length);
+
+        float[] expected = sine(16000, 1000, 1600);
+
+        // Away from the edges, where the filter sees silence.
+        for (int i = 100; i < 1500; i++) {
+            assertEquals(expected[i], output[i], 1e-3);
+        }
+    }
+
+    @Test
+    public void onNoninterleavedFloatSamples_upsamplesSine() {
+        float[] input = sine(16000, 1000, 1600);
+
+        float[] output = resample(16000, 44100, input, input.length);
+
+        assertEquals(4410, output.length);
+
+        float[] expected = sine(44100, 1000, 4410);
+
+        for (int i = 300; i < 4100; i++) {
+            assertEquals(expected[i], output[i], 1e-3);
+        }
+    }
+
+    @Test
+    public void onNoninterleavedFloatSamples_removesFrequenciesAboveNewNyquist() {
+        // Above 8 kHz, which is the Nyquist frequency of 16 kHz.
+        float[] input = sine(48000, 12000, 4800);
+
+        float[] output = resample(48000, 16000, input, input.length);
+
+        for (int i = 100; i < 1500; i++) {
+            assertEquals(0, output[i], 1e-2);
+        }
+    }
+
+    @Test
+    public void onNoninterleavedFloatSamples_doesNotDependOnBlockSize() {
+        float[] input = sine(44100, 440, 5000);
+
+        float[] whole = resample(44100, 16000, input, input.length);
+
+        for (int block : new int[]{1, 7, 100, 1023}) {
+            assertArrayEquals(whole, resample(44100, 16000, input, block), 0);
+        }
+    }
+
+    @Test
+    public void onNoninterleavedFloatSamples_keepsCachedTablesBounded() {
+        float[] input = sine(44100, 440, 100);
+
+        // Each of these has over 40000 phases.
+        for (int rate = 44101; rate <= 44106; rate++) {
+            resample(44100, rate, input, input.length);
+            assertTrue(Resampler.getCachedCoefficients() <= Resampler.MAX_CACHED_COEFFICIENTS);
+        }
+
+        // Small tables are still shared and evict the ones used least recently.
+        for (int rate = 8001; rate <= 8010; rate++) {
+            resample(8000, rate, input, input.length);
+            assertTrue(Resampler.getCachedCoefficients() <= Resampler.MAX_CACHED_COEFFICIENTS);
+        }
+
+        assertTrue(Resampler.getCachedCoefficients() > 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void onNoninterleavedFloatSamples_throwsExceptionIfInputRateIsNotPositive() {
+        resample(0, 16000, new float[10], 10);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_throwsExceptionIfOutputRateIsNotPositive() {
+        new Resampler(new WavReader(), 0, null);
+    }
+
+    /**
+     * Feeds mono 32 bit float samples to a reader, in pieces, and collects the resampled samples.
+     */
+    private static float[] resample(int inputRate, int outputRate, float[] input, int blockFrames) {
+        final float[][] collected = {new float[0]};
+
+        WavReader reader = new WavReader();
+        Resampler resampler = new Resampler(reader, outputRate, new WavReader.OnNoninterleavedFloatSamplesListener() {
+            @Override
+            public void onNoninterleavedFloatSamples(float[][] channels, int length) {
+                float[] grown = Arrays.copyOf(collected[0], collected[0].length + length);
+                System.arraycopy(channels[0], 0, grown, collected[0].length, length);
+                collected[0] = grown;
+            }
+        });
+        reader.setOnNoninterleavedFloatSamplesListener(resampler);
+
+        ByteBuffer samples = ByteBuffer.allocate(input.length * 4);
+        samples.order(ByteOrder.LITTLE_ENDIAN);
+        samples.asFloatBuffer().put(input);
+
+        reader.read(new WavFileHeaderBuilder()
+                .setAudioFormat(3)
+                .setBitsPerSample(32)
+                .setSampleRate(inputRate)
+                .build());
+
+        for (int i = 0; i < samples.capacity(); i += blockFrames * 4) {
+            reader.read(samples.array(), i, Math.min(blockFrames * 4, samples.capacity() - i));
+        }
+
+        resampler.flush();
+
+        return collected[0];
+    }
+
+    private static float[] sine(int rate, int frequency, int length) {
+        float[] samples = new float[length];
+
+        for (int i = 0; i < length; i++) {
+            samples[i] = (float) (0.5 * Math.sin(2 * Math.PI * frequency * i / rate));
+        }
+
+        return samples;
+    }
+}
@@ -0,0 +1,132 @@
+package com.daniel_araujo.wavio;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class SampleKernelsTest {
+    private final SampleKernels scalar = new SampleKernels();
+
+    private final SampleKernels kernels = SampleKernels.get();
+
+    @Test
+    public void get_picksExpectedImplementation() {
+        // The build sets this when it runs the tests against the jar on JDK 21 with the Vector API.
+        String expected = System.getProperty("wavio.test.kernels", "SampleKernels");
+
+        assertEquals(expected, kernels.getClass().getSimpleName());
+    }
+
+    @Test
+    public void decode16_signExtends() {
+        int[] target = new int[3];
+        scalar.decode16(new byte[]{0x01, 0x00, (byte) 0xff, (byte) 0xff, 0x00, (byte) 0x80}, 0, 1, 3, target, 0);
+        assertArrayEquals(new int[]{1, -1, -32768}, target);
+    }
+
+    @Test
+    public void decode24_signExtends() {
+        int[] target = new int[3];
+        scalar.decode24(new byte[]{0x01, 0x00, 0x00, (byte) 0xff, (byte) 0xff, (byte) 0xff, 0x00, 0x00, (byte) 0x80},
+                0, 1, 3, target, 0);
+        assertArrayEquals(new int[]{1, -1, -8388608}, target);
+    }
+
+    @Test
+    public void decode16_matchesScalarForEveryLengthAndStep() {
+        byte[] source = randomBytes(1024);
+
+        for (int step = 1; step <= 3; step++) {
+            for (int first = 0; first < step; first++) {
+                for (int count = 0; count <= 130; count++) {
+                    int[] expected = new int[count + 1];
+                    int[] actual = new int[count + 1];
+                    scalar.decode16(source, 6 + first * 2, step, count, expected, 1);
+                    kernels.decode16(source, 6 + first * 2, step, count, actual, 1);
+                    assertArrayEquals(expected, actual);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void decode16_stereoReadsUpToTheLastByte() {
+        byte[] source = randomBytes(256);
+        int[] expected = new int[64];
+        int[] actual = new int[64];
+
+        // The right channel of the last frame ends at the last byte of the array.
+        scalar.decode16(source, 2, 2, 64, expected, 0);
+        kernels.decode16(source, 2, 2, 64, actual, 0);
+
+        assertArrayEquals(expected, actual);
+    }
+
+    @Test
+    public void decode24_matchesScalarForEveryLengthAndStep() {
+        byte[] source = randomBytes(1536);
+
+        for (int step = 1; step <= 2; step++) {
+            for (int count = 0; count <= 130; count++) {
+                int[] expected = new int[count + 1];
+                int[] actual = new int[count + 1];
+                scalar.decode24(source, 3, step, count, expected, 1);
+                kernels.decode24(source, 3, step, count, actual, 1);
+                assertArrayEquals(expected, actual);
+            }
+        }
+
+        // Last sample ends at the last byte of the array.
+        int[] expected = new int[512];
+        int[] actual = new int[512];
+        scalar.decode24(source, 0, 1, 512, expected, 0);
+        kernels.decode24(source, 0, 1, 512, actual, 0);
+        assertArrayEquals(expected, actual);
+    }
+
+    @Test
+    public void toFloat_matchesScalar() {
+        Random random = new Random(1);
+        int[] source = new int[130];
+
+        for (int i = 0; i < source.length; i++) {
+            source[i] = random.nextInt();
+        }
+
+        for (int count = 0; count <= source.length; count++) {
+            float[] expected = new float[count + 2];
+            float[] actual = new float[count + 2];
+            scalar.toFloat(source, 1.0f / 2147483648.0f, count, expected, 2);
+            kernels.toFloat(source, 1.0f / 2147483648.0f, count, actual, 2);
+            assertArrayEquals(expected, actual, 0);
+        }
+    }
+
+    @Test
+    public void multiplyAdd_matchesScalar() {
+        Random random = new Random(2);
+        float[] source = new float[130];
+        float[] start = new float[130];
+
+        for (int i = 0; i < source.length; i++) {
+            source[i] = random.nextFloat() * 2 - 1;
+            start[i] = random.nextFloat() * 2 - 1;
+        }
+
+        for (int count = 0; count <= source.length; count++) {
+            float[] expected = start.clone();
+            float[] actual = start.clone();
+            scalar.multiplyAdd(source, 0.7071f, count, expected);
+            kernels.multiplyAdd(source, 0.7071f, count, actual);
+            assertArrayEquals(expected, actual, 0);
+        }
+    }
+
+    private static byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        new Random(length).nextBytes(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,195 @@
+package com.daniel_araujo.wavio;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class WavBatchTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void run_processesEveryFile() throws Exception {
+        List<Path> paths = new ArrayList<>();
+
+        for (int i = 0; i < 10; i++) {
+            paths.add(createFile(4 * (i + 1)));
+        }
+
+        final List<Path> processed = Collections.synchronizedList(new ArrayList<Path>());
+
+        WavBatch batch = new WavBatch();
+        batch.setParallelism(3);
+
+        WavBatch.Report report = batch.run(paths, new WavBatch.FileProcessor() {
+            @Override
+            public void process(Path path, WavFile file) {
+                WavReader reader = new WavReader();
+                reader.setOnInterleavedSamplesListener(new OnInterleavedSamplesListenerTracker());
+                file.read(reader);
+                processed.add(path);
+            }
+        });
+
+        assertEquals(10, processed.size());
+        assertTrue(processed.containsAll(paths));
+        assertEquals(10, report.getFiles());
+        assertEquals(220, report.getBytes());
+        assertEquals(110, report.getFrames());
+        assertTrue(report.getFailures().isEmpty());
+        assertTrue(report.getBytesPerSecond() > 0);
+    }
+
+    @Test
+    public void run_recordsFailuresAndGoesOn() throws Exception {
+        Path good = createFile(4);
+        Path broken = folder.newFile().toPath();
+        Files.write(broken, new byte[]{'n', 'o', 'p', 'e'});
+        final Path rejected = createFile(8);
+
+        WavBatch batch = new WavBatch();
+        batch.setParallelism(2);
+
+        WavBatch.Report report = batch.run(Arrays.asList(good, broken, rejected), new WavBatch.FileProcessor() {
+            @Override
+            public void process(Path path, WavFile file) throws Exception {
+                if (path.equals(rejected)) {
+                    throw new Exception("Rejected.");
+                }
+            }
+        });
+
+        assertEquals(1, report.getFiles());
+        assertEquals(4, report.getBytes());
+        assertEquals(2, report.getFailures().size());
+
+        List<Path> failed = new ArrayList<>();
+        for (WavBatch.Failure failure : report.getFailures()) {
+            failed.add(failure.getPath());
+            assertNotNull(failure.getError());
+        }
+
+        assertTrue(failed.contains(broken));
+        assertTrue(failed.contains(rejected));
+    }
+
+    @Test
+    public void run_recordsErrorsAsFailures() throws Exception {
+        Path good = createFile(4);
+        final Path failing = createFile(8);
+
+        WavBatch batch = new WavBatch();
+        batch.setParallelism(2);
+
+        WavBatch.Report report = batch.run(Arrays.asList(good, failing), new WavBatch.FileProcessor() {
+            @Override
+            public void process(Path path, WavFile file) {
+                if (path.equals(failing)) {
+                    throw new AssertionError("Failed.");
+                }
+            }
+        });
+
+        assertEquals(1, report.getFiles());
+        assertEquals(1, report.getFailures().size());
+        assertEquals(failing, report.getFailures().get(0).getPath());
+        assertTrue(report.getFailures().get(0).getError() instanceof AssertionError);
+    }
+
+    @Test
+    public void run_neverProcessesMoreFilesThanParallelism() throws Exception {
+        List<Path> paths = new ArrayList<>();
+
+        for (int i = 0; i < 12; i++) {
+            paths.add(createFile(4));
+        }
+
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger highest = new AtomicInteger();
+
+        WavBatch batch = new WavBatch();
+        batch.setParallelism(3);
+
+        batch.run(paths, new WavBatch.FileProcessor() {
+            @Override
+            public void process(Path path, WavFile file) throws Exception {
+                int now = running.incrementAndGet();
+
+                synchronized (highest) {
+                    highest.set(Math.max(highest.get(), now));
+                }
+
+                Thread.sleep(10);
+                running.decrementAndGet();
+            }
+        });
+
+        assertTrue(highest.get() <= 3);
+        assertTrue(highest.get() > 1);
+    }
+
+    @Test
+    public void run_alternatesBetweenLargeAndSmallFiles() throws Exception {
+        Path a = createFile(8);
+        Path b = createFile(40);
+        Path c = createFile(4);
+        Path d = createFile(20);
+
+        final List<Path> order = Collections.synchronizedList(new ArrayList<Path>());
+
+        WavBatch batch = new WavBatch();
+        batch.setParallelism(1);
+        batch.setVirtualThreads(false);
+
+        batch.run(Arrays.asList(a, b, c, d), new WavBatch.FileProcessor() {
+            @Override
+            public void process(Path path, WavFile file) {
+                order.add(path);
+            }
+        });
+
+        assertEquals(Arrays.asList(b, c, d, a), order);
+    }
+
+    @Test
+    public void run_lookaheadOfOneKeepsOrder() throws Exception {
+        Path a = createFile(8);
+        Path b = createFile(40);
+        Path c = createFile(4);
+
+        final List<Path> order = Collections.synchronizedList(new ArrayList<Path>());
+
+        WavBatch batch = new WavBatch();
+        batch.setParallelism(1);
+        batch.setLookahead(1);
+
+        batch.run(Arrays.asList(a, b, c), new WavBatch.FileProcessor() {
+            @Override
+            public void process(Path path, WavFile file) {
+                order.add(path);
+            }
+        });
+
+        assertEquals(Arrays.asList(a, b, c), order);
+    }
+
+    private Path createFile(int dataLength) throws IOException {
+        Path path = folder.newFile().toPath();
+        Files.write(path, ArrayUtils.concat(new WavFileHeaderBuilder()
+                .setBitsPerSample(16)
+                .setDataLength(dataLength)
+                .build(), new byte[dataLength]));
+        return path;
+    }
+}
@@ -16,11 +16,18 @@ public class WavFileHeaderBuilder {
 
     private int dataLength = 0;
 
+    private int audioFormat = 1;
+
     public WavFileHeaderBuilder setDataLength(int length) {
         dataLength = length;
         return this;
     }
 
+    public WavFileHeaderBuilder setAudioFormat(int value) {
+        audioFormat = value;
+        return this;
+    }
+
     public WavFileHeaderBuilder setChannels(int value) {
         channels = value;
         return this;
@@ -63,8 +70,8 @@ public class WavFileHeaderBuilder {
         header[17] = 0;
         header[18] = 0;
         header[19] = 0;
-        header[20] = 1; // audio format
-        header[21] = 0;
+        header[20] = (byte) ((audioFormat >> 0) & 0xff); // audio format
+        header[21] = (byte) ((audioFormat >> 8) & 0xff);
         header[22] = (byte) ((channels >> 0) & 0xff);
         header[23] = (byte) ((channels >> 8) & 0xff);
         header[24] = (byte) ((sampleRate >> 0) & 0xff);
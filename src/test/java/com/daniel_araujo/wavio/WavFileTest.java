@@ -0,0 +1,426 @@
+package com.daniel_araujo.wavio;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class WavFileTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void open_parsesHeader() throws IOException {
+        Path path = createFile(new WavFileHeaderBuilder()
+                .setBitsPerSample(16)
+                .setChannels(2)
+                .setSampleRate(22000)
+                .setDataLength(8)
+                .build(), new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+
+        try (WavFile file = WavFile.open(path)) {
+            assertEquals(2, file.getDataFormat().getChannels());
+            assertEquals(22000, file.getDataFormat().getSampleRate());
+            assertEquals(16, file.getDataFormat().getBitsPerSample());
+            assertEquals(44, file.getDataOffset());
+            assertEquals(8, file.getDataLength());
+            assertEquals(2, file.getFrameCount());
+        }
+    }
+
+    @Test
+    public void open_usesRestOfFileWhenDataLengthIsZero() throws IOException {
+        Path path = createFile(new WavFileHeaderBuilder()
+                .setBitsPerSample(16)
+                .setChannels(2)
+                .build(), new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9});
+
+        try (WavFile file = WavFile.open(path)) {
+            assertEquals(8, file.getDataLength());
+            assertEquals(2, file.getFrameCount());
+        }
+    }
+
+    @Test
+    public void open_readsDataLengthOfRf64Files() throws IOException {
+        Path path = createFile(WavReaderTest.createRf64Header(8), new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12});
+
+        try (WavFile file = WavFile.open(path)) {
+            assertEquals(80, file.getDataOffset());
+            assertEquals(8, file.getDataLength());
+            assertEquals(2, file.getFrameCount());
+        }
+    }
+
+    @Test
+    public void getChunks_listsChunksInOrder() throws IOException {
+        Path path = createFile(new WavFileHeaderBuilder()
+                .setBitsPerSample(16)
+                .setDataLength(4)
+                .build(), new byte[]{1, 2, 3, 4});
+
+        try (WavFile file = WavFile.open(path)) {
+            List<WavFile.Chunk> chunks = file.getChunks();
+
+            assertEquals(2, chunks.size());
+            assertEquals("fmt ", chunks.get(0).getId());
+            assertEquals(12, chunks.get(0).getOffset());
+            assertEquals(16, chunks.get(0).getLength());
+            assertEquals("data", chunks.get(1).getId());
+            assertEquals(36, chunks.get(1).getOffset());
+            assertEquals(4, chunks.get(1).getLength());
+        }
+    }
+
+    @Test
+    public void getChunks_findsChunkAfterOddLengthDataChunk() throws IOException {
+        // 7 bytes of samples is not a whole number of frames and is followed by a pad byte.
+        Path path = createFile(new WavFileHeaderBuilder()
+                .setBitsPerSample(16)
+                .setChannels(2)
+                .setDataLength(7)
+                .build(), new byte[]{1, 2, 3, 4, 5, 6, 7, 0}, new byte[]{'L', 'I', 'S', 'T', 4, 0, 0, 0, 1, 2, 3, 4});
+
+        try (WavFile file = WavFile.open(path)) {
+            List<WavFile.Chunk> chunks = file.getChunks();
+
+            assertEquals(3, chunks.size());
+            assertEquals("data", chunks.get(1).getId());
+            assertEquals(7, chunks.get(1).getLength());
+            assertEquals("LIST", chunks.get(2).getId());
+            assertEquals(52, chunks.get(2).getOffset());
+            assertEquals(4, chunks.get(2).getLength());
+            assertEquals(1, file.getFrameCount());
+        }
+    }
+
+    @Test
+    public void getChunks_reportsDataLengthOfRf64Files() throws IOException {
+        Path path = createFile(WavReaderTest.createRf64Header(8), new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12});
+
+        try (WavFile file = WavFile.open(path)) {
+            List<WavFile.Chunk> chunks = file.getChunks();
+
+            assertEquals(3, chunks.size());
+            assertEquals("ds64", chunks.get(0).getId());
+            assertEquals("fmt ", chunks.get(1).getId());
+            assertEquals("data", chunks.get(2).getId());
+            assertEquals(72, chunks.get(2).getOffset());
+            assertEquals(8, chunks.get(2).getLength());
+        }
+    }
+
+    @Test(expected = WavReader.ChunkNotFoundException.class)
+    public void open_throwsExceptionIfDataChunkIsMissing() throws IOException {
+        byte[] header = new WavFileHeaderBuilder().build();
+
+        // Change data chunk to pata chunk.
+        header[36] = 'p';
+
+        WavFile.open(createFile(header));
+    }
+
+    @Test
+    public void mapFrames_returnsLittleEndianBufferWithRequestedFrames() throws IOException {
+        Path path = createFile(new WavFileHeaderBuilder()
+                .setBitsPerSample(16)
+                .setChannels(2)
+                .setDataLength(12)
+                .build(), new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12});
+
+        try (WavFile file = WavFile.open(path)) {
+            ByteBuffer frames = file.mapFrames(1, 2);
+
+            assertEquals(ByteOrder.LITTLE_ENDIAN, frames.order());
+            assertArrayEquals(new byte[]{5, 6, 7, 8, 9, 10, 11, 12}, ByteBufferUtils.getArray(frames));
+        }
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void mapFrames_throwsExceptionIfFramesAreNotInFile() throws IOException {
+        Path path = createFile(new WavFileHeaderBuilder()
+                .setBitsPerSample(16)
+                .setChannels(2)
+                .setDataLength(4)
+                .build(), new byte[]{1, 2, 3, 4});
+
+        try (WavFile file = WavFile.open(path)) {
+            file.mapFrames(1, 1);
+        }
+    }
+
+    @Test
+    public void read_passesSamplesToListenersInWindows() throws IOException {
+        Path path = createFile(new WavFileHeaderBuilder()
+                .setBitsPerSample(16)
+                .setChannels(2)
+                .setDataLength(12)
+                .build(), new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12});
+
+        OnInterleavedSamplesListenerTracker interleaved = new OnInterleavedSamplesListenerTracker();
+        OnNoninterleavedSamplesListenerTracker noninterleaved = new OnNoninterleavedSamplesListenerTracker();
+
+        WavReader reader = new WavReader();
+        reader.setOnInterleavedSamplesListener(interleaved);
+        reader.setOnNoninterleavedSamplesListener(noninterleaved);
+
+        // Not a multiple of the frame size on purpose.
+        try (WavFile file = WavFile.open(path, 10)) {
+            file.read(reader);
+        }
+
+        assertEquals(2, interleaved.calls.size());
+        assertArrayEquals(new byte[]{1, 2, 3, 4, 5, 6, 7, 8}, ByteBufferUtils.getArray(interleaved.calls.get(0)));
+        assertArrayEquals(new byte[]{9, 10, 11, 12}, ByteBufferUtils.getArray(interleaved.calls.get(1)));
+
+        assertEquals(2, noninterleaved.calls.size());
+        assertArrayEquals(new byte[]{1, 2, 5, 6}, ByteBufferUtils.getArray(noninterleaved.calls.get(0)[0]));
+        assertArrayEquals(new byte[]{11, 12}, ByteBufferUtils.getArray(noninterleaved.calls.get(1)[1]));
+    }
+
+    @Test
+    public void read_continuesFromLastPosition() throws IOException {
+        Path path = createFile(new WavFileHeaderBuilder()
+                .setBitsPerSample(16)
+                .setChannels(1)
+                .setDataLength(8)
+                .build(), new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+
+        OnInterleavedSamplesListenerTracker tracker = new OnInterleavedSamplesListenerTracker();
+
+        WavReader reader = new WavReader();
+        reader.setOnInterleavedSamplesListener(tracker);
+
+        try (WavFile file = WavFile.open(path)) {
+            assertEquals(1, file.read(reader, 1));
+            assertEquals(1, file.getFramePosition());
+            assertEquals(3, file.read(reader, 10));
+            assertEquals(4, file.getFramePosition());
+            assertEquals(0, file.read(reader, 10));
+        }
+
+        assertEquals(2, tracker.calls.size());
+        assertArrayEquals(new byte[]{1, 2}, ByteBufferUtils.getArray(tracker.calls.get(0)));
+        assertArrayEquals(new byte[]{3, 4, 5, 6, 7, 8}, ByteBufferUtils.getArray(tracker.calls.get(1)));
+    }
+
+    @Test
+    public void mapFrames_countsMapsFromSeveralThreads() throws Exception {
+        Path path = createFile(new WavFileHeaderBuilder()
+                .setBitsPerSample(16)
+                .setDataLength(4)
+                .build(), new byte[]{1, 2, 3, 4});
+
+        try (final WavFile file = WavFile.open(path)) {
+            Thread[] threads = new Thread[4];
+
+            for (int i = 0; i < threads.length; i++) {
+                threads[i] = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        for (int j = 0; j < 1000; j++) {
+                            file.mapFrames(0, 2);
+                        }
+                    }
+                });
+                threads[i].start();
+            }
+
+            for (Thread thread : threads) {
+                thread.join();
+            }
+
+            assertEquals(4000, file.getMapCount());
+        }
+    }
+
+    @Test
+    public void read_reusesMappedWindowForSmallReads() throws IOException {
+        Path path = createFile(new WavFileHeaderBuilder()
+                .setBitsPerSample(16)
+                .setChannels(1)
+                .setDataLength(16)
+                .build(), new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16});
+
+        OnInterleavedSamplesListenerTracker tracker = new OnInterleavedSamplesListenerTracker();
+
+        WavReader reader = new WavReader();
+        reader.setOnInterleavedSamplesListener(tracker);
+
+        try (WavFile file = WavFile.open(path, 8)) {
+            file.seekToFrame(1);
+            file.read(reader, 2);
+            file.seekToFrame(0);
+            file.read(reader, 1);
+            assertEquals(1, file.getMapCount());
+
+            // Crosses into the second window.
+            file.seekToFrame(3);
+            file.read(reader, 2);
+            file.seekToFrame(6);
+            file.read(reader, 1);
+            assertEquals(2, file.getMapCount());
+        }
+
+        assertEquals(5, tracker.calls.size());
+        assertArrayEquals(new byte[]{3, 4, 5, 6}, ByteBufferUtils.getArray(tracker.calls.get(0)));
+        assertArrayEquals(new byte[]{1, 2}, ByteBufferUtils.getArray(tracker.calls.get(1)));
+        assertArrayEquals(new byte[]{7, 8}, ByteBufferUtils.getArray(tracker.calls.get(2)));
+        assertArrayEquals(new byte[]{9, 10}, ByteBufferUtils.getArray(tracker.calls.get(3)));
+        assertArrayEquals(new byte[]{13, 14}, ByteBufferUtils.getArray(tracker.calls.get(4)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void read_throwsExceptionIfFramesIsNegative() throws IOException {
+        Path path = createFile(new WavFileHeaderBuilder()
+                .setBitsPerSample(16)
+                .setChannels(1)
+                .setDataLength(4)
+                .build(), new byte[]{1, 2, 3, 4});
+
+        try (WavFile file = WavFile.open(path)) {
+            file.read(new WavReader(), -1);
+        }
+    }
+
+    @Test
+    public void seekToFrame_readStartsFromFrame() throws IOException {
+        Path path = createFile(new WavFileHeaderBuilder()
+                .setBitsPerSample(16)
+                .setChannels(2)
+                .setDataLength(12)
+                .build(), new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12});
+
+        OnInterleavedSamplesListenerTracker tracker = new OnInterleavedSamplesListenerTracker();
+
+        WavReader reader = new WavReader();
+        reader.setOnInterleavedSamplesListener(tracker);
+
+        try (WavFile file = WavFile.open(path)) {
+            file.seekToFrame(2);
+            file.read(reader);
+
+            file.seekToFrame(1);
+            file.read(reader, 1);
+        }
+
+        assertEquals(2, tracker.calls.size());
+        assertArrayEquals(new byte[]{9, 10, 11, 12}, ByteBufferUtils.getArray(tracker.calls.get(0)));
+        assertArrayEquals(new byte[]{5, 6, 7, 8}, ByteBufferUtils.getArray(tracker.calls.get(1)));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void seekToFrame_throwsExceptionIfFrameIsNotInFile() throws IOException {
+        Path path = createFile(new WavFileHeaderBuilder()
+                .setBitsPerSample(16)
+                .setChannels(2)
+                .setDataLength(4)
+                .build(), new byte[]{1, 2, 3, 4});
+
+        try (WavFile file = WavFile.open(path)) {
+            file.seekToFrame(2);
+        }
+    }
+
+    @Test
+    public void seekToTime_movesToFrameThatPlaysAtTime() throws IOException {
+        Path path = createFile(new WavFileHeaderBuilder()
+                .setBitsPerSample(8)
+                .setChannels(1)
+                .setSampleRate(8000)
+                .setDataLength(16000)
+                .build(), new byte[16000]);
+
+        try (WavFile file = WavFile.open(path)) {
+            file.seekToTime(1500, TimeUnit.MILLISECONDS);
+            assertEquals(12000, file.getFramePosition());
+
+            file.seekToTime(1, TimeUnit.HOURS);
+            assertEquals(16000, file.getFramePosition());
+        }
+    }
+
+    @Test
+    public void extractFrames_copiesFramesToNewFile() throws IOException {
+        Path path = createFile(new WavFileHeaderBuilder()
+                .setBitsPerSample(16)
+                .setChannels(2)
+                .setSampleRate(22000)
+                .setDataLength(16)
+                .build(), new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16});
+
+        Path target = folder.newFile().toPath();
+
+        try (WavFile file = WavFile.open(path)) {
+            file.extractFrames(1, 2, target);
+        }
+
+        try (WavFile file = WavFile.open(target)) {
+            assertEquals(22000, file.getDataFormat().getSampleRate());
+            assertEquals(2, file.getDataFormat().getChannels());
+            assertEquals(2, file.getFrameCount());
+            assertEquals(ByteBuffer.wrap(new byte[]{5, 6, 7, 8, 9, 10, 11, 12}), file.mapFrames(0, 2));
+        }
+    }
+
+    @Test
+    public void extractFrames_keepsExtensibleFormat() throws IOException {
+        // 5.1 with 24 bit samples in 32 bit containers.
+        byte[] header = WavReaderTest.createExtensibleHeader(WavReader.DataFormat.FORMAT_PCM, 6, 32, 24, 0x3f);
+        byte[] data = new byte[3 * 24];
+
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+
+        ByteBuffer lengths = ByteBuffer.wrap(header).order(ByteOrder.LITTLE_ENDIAN);
+        lengths.putInt(4, header.length - 8 + data.length);
+        lengths.putInt(header.length - 4, data.length);
+        Path path = createFile(header, data);
+
+        Path target = folder.newFile().toPath();
+
+        try (WavFile file = WavFile.open(path)) {
+            file.extractFrames(1, 2, target);
+        }
+
+        try (WavFile file = WavFile.open(target)) {
+            WavReader.DataFormat format = file.getDataFormat();
+            assertEquals(WavReader.DataFormat.FORMAT_PCM, format.getAudioFormat());
+            assertEquals(6, format.getChannels());
+            assertEquals(32, format.getBitsPerSample());
+            assertEquals(24, format.getValidBitsPerSample());
+            assertEquals(0x3f, format.getChannelMask());
+            assertEquals(2, file.getFrameCount());
+            assertEquals(ByteBuffer.wrap(data, 24, 48), file.mapFrames(0, 2));
+        }
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void extractFrames_throwsExceptionIfFramesAreNotInFile() throws IOException {
+        Path path = createFile(new WavFileHeaderBuilder()
+                .setBitsPerSample(16)
+                .setChannels(1)
+                .setDataLength(4)
+                .build(), new byte[]{1, 2, 3, 4});
+
+        try (WavFile file = WavFile.open(path)) {
+            file.extractFrames(1, 2, folder.newFile().toPath());
+        }
+    }
+
+    private Path createFile(byte[]... parts) throws IOException {
+        Path path = folder.newFile().toPath();
+        Files.write(path, ArrayUtils.concat(parts));
+        return path;
+    }
+}
@@ -0,0 +1,122 @@
+package com.daniel_araujo.wavio;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class WavReaderMetricsTest {
+    @Test
+    public void setMetrics_countsBytesFramesAndCallbacks() {
+        WavReaderMetrics metrics = new WavReaderMetrics();
+
+        WavReader reader = new WavReader();
+        reader.setMetrics(metrics);
+        reader.setOnInterleavedSamplesListener(new OnInterleavedSamplesListenerTracker());
+        reader.setOnNoninterleavedSamplesListener(new OnNoninterleavedSamplesListenerTracker());
+
+        byte[] header = new WavFileHeaderBuilder().setBitsPerSample(16).setChannels(2).build();
+        reader.read(header);
+        reader.read(new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+
+        assertEquals(header.length + 8, metrics.getBytesRead());
+        assertEquals(2, metrics.getFramesDelivered());
+        assertEquals(2, metrics.getCallbacks());
+        assertEquals(0, metrics.getStitchedFrames());
+        assertEquals(0, metrics.getChunksSkipped());
+    }
+
+    @Test
+    public void setMetrics_countsStitchedFrames() {
+        WavReaderMetrics metrics = new WavReaderMetrics();
+
+        WavReader reader = new WavReader();
+        reader.setMetrics(metrics);
+        reader.setOnInterleavedSamplesListener(new OnInterleavedSamplesListenerTracker());
+
+        reader.read(new WavFileHeaderBuilder().setBitsPerSample(16).setChannels(2).build());
+        reader.read(new byte[]{1, 2, 3, 4, 5, 6});
+        reader.read(new byte[]{7, 8, 9, 10, 11, 12});
+
+        assertEquals(3, metrics.getFramesDelivered());
+        assertEquals(1, metrics.getStitchedFrames());
+        assertEquals(3, metrics.getCallbacks());
+    }
+
+    @Test
+    public void setMetrics_countsSkippedChunks() {
+        WavReaderMetrics metrics = new WavReaderMetrics();
+
+        WavReader reader = new WavReader();
+        reader.setMetrics(metrics);
+
+        byte[] header = new WavFileHeaderBuilder().build();
+        byte[] junk = new byte[]{'J', 'U', 'N', 'K', 2, 0, 0, 0, 0, 0};
+
+        reader.read(ArrayUtils.concat(Arrays.copyOfRange(header, 0, 36), junk,
+                Arrays.copyOfRange(header, 36, header.length)));
+
+        assertEquals(1, metrics.getChunksSkipped());
+    }
+
+    @Test
+    public void setMetrics_countsErrorsByType() {
+        WavReaderMetrics metrics = new WavReaderMetrics();
+
+        WavReader reader = new WavReader();
+        reader.setMetrics(metrics);
+
+        for (int i = 0; i < 3; i++) {
+            try {
+                reader.read(new byte[]{'a', 'b', 'c', 'd', 0, 0, 0, 0});
+            } catch (WavReader.Exception ex) {
+                // Expected.
+            }
+        }
+
+        assertEquals(1, metrics.getErrors(WavReader.ChunkNotFoundException.class));
+        assertEquals(2, metrics.getErrors(WavReader.ErrorStateException.class));
+        assertEquals(2, metrics.getErrors().size());
+    }
+
+    @Test
+    public void setMetrics_measuresTimeSpentInListeners() {
+        WavReaderMetrics metrics = new WavReaderMetrics();
+
+        WavReader reader = new WavReader();
+        reader.setMetrics(metrics);
+        reader.setOnInterleavedSamplesListener(new WavReader.OnInterleavedSamplesListener() {
+            @Override
+            public void onInterleavedSamples(ByteBuffer samples) {
+                try {
+                    Thread.sleep(5);
+                } catch (InterruptedException ex) {
+                    throw new RuntimeException(ex);
+                }
+            }
+        });
+
+        reader.read(new WavFileHeaderBuilder().setBitsPerSample(16).build());
+        reader.read(new byte[]{1, 2});
+
+        assertTrue(metrics.getListenerNanos() >= 5000000);
+        assertTrue(metrics.getDeinterleaveNanos() >= 0);
+        // Time in listeners is not parse time.
+        assertTrue(metrics.getParseNanos() < metrics.getListenerNanos());
+    }
+
+    @Test
+    public void setMetrics_nullStopsCounting() {
+        WavReaderMetrics metrics = new WavReaderMetrics();
+
+        WavReader reader = new WavReader();
+        reader.setMetrics(metrics);
+        reader.read(new WavFileHeaderBuilder().build());
+        reader.setMetrics(null);
+        reader.read(new byte[]{1, 2});
+
+        assertEquals(44, metrics.getBytesRead());
+    }
+}
@@ -6,7 +6,10 @@ import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 import static org.junit.Assert.*;
 
@@ -189,6 +192,66 @@ public class WavReaderTest {
         }
     }
 
+    @Test
+    public void read_parsesHeaderSplitAcrossReads() {
+        byte[] header = new WavFileHeaderBuilder()
+                .setBitsPerSample(24)
+                .setChannels(5)
+                .setSampleRate(48000)
+                .build();
+
+        for (int split = 1; split < header.length; split++) {
+            OnInterleavedSamplesListenerTracker onSamplesListener = new OnInterleavedSamplesListenerTracker();
+
+            WavReader reader = new WavReader();
+
+            reader.setOnInterleavedSamplesListener(onSamplesListener);
+
+            byte[] file = ArrayUtils.concat(header, new byte[15]);
+
+            reader.read(file, 0, split);
+            reader.read(file, split, file.length - split);
+
+            WavReader.DataFormat format = reader.getDataFormat();
+
+            assertNotNull(format);
+            assertEquals(5, format.getChannels());
+            assertEquals(48000, format.getSampleRate());
+            assertEquals(24, format.getBitsPerSample());
+            assertEquals(1, onSamplesListener.calls.size());
+        }
+    }
+
+    @Test
+    public void read_skipsExtraBytesOfFmtChunk() {
+        byte[] header = new WavFileHeaderBuilder()
+                .setBitsPerSample(16)
+                .setChannels(2)
+                .build();
+
+        byte[] fmt = Arrays.copyOfRange(header, 0, 36);
+        // Two more bytes in the fmt chunk, as written by some encoders.
+        fmt[16] = 18;
+        byte[] data = Arrays.copyOfRange(header, 36, 44);
+
+        byte[] file = ArrayUtils.concat(fmt, new byte[2], data, new byte[]{1, 2, 3, 4});
+
+        for (int split = 0; split < file.length; split++) {
+            OnInterleavedSamplesListenerTracker onSamplesListener = new OnInterleavedSamplesListenerTracker();
+
+            WavReader reader = new WavReader();
+
+            reader.setOnInterleavedSamplesListener(onSamplesListener);
+
+            reader.read(file, 0, split);
+            reader.read(file, split, file.length - split);
+
+            assertEquals(2, reader.getDataFormat().getChannels());
+            assertEquals(1, onSamplesListener.calls.size());
+            assertArrayEquals(new byte[]{1, 2, 3, 4}, ByteBufferUtils.getArray(onSamplesListener.calls.get(0)));
+        }
+    }
+
     @Test
     public void read_respectsStartPositionAndLength() {
         byte[] file = new WavFileHeaderBuilder()
@@ -326,6 +389,190 @@ public class WavReaderTest {
         assertArrayEquals(data, ByteBufferUtils.getArray(onSamplesListener.calls.get(0)));
     }
 
+    @Test
+    public void read_skipsUnknownChunksLongerThan2GB() {
+        OnInterleavedSamplesListenerTracker onSamplesListener = new OnInterleavedSamplesListenerTracker();
+
+        WavReader reader = new WavReader();
+
+        reader.setOnInterleavedSamplesListener(onSamplesListener);
+
+        byte[] data = new WavFileHeaderBuilder()
+                .setBitsPerSample(16)
+                .setChannels(2)
+                .build();
+
+        // Change data chunk to pata chunk with a length of 0x80000004 bytes.
+        data[36] = 'p';
+        data[40] = 4;
+        data[43] = (byte) 0x80;
+
+        reader.read(data);
+        reader.read(new byte[1024]);
+        reader.read(new byte[1024]);
+
+        assertEquals(0, onSamplesListener.calls.size());
+    }
+
+    @Test
+    public void read_skipsManyChunksInSingleRead() {
+        OnInterleavedSamplesListenerTracker onSamplesListener = new OnInterleavedSamplesListenerTracker();
+
+        WavReader reader = new WavReader();
+
+        reader.setOnInterleavedSamplesListener(onSamplesListener);
+
+        byte[] header = new WavFileHeaderBuilder()
+                .setBitsPerSample(16)
+                .setChannels(2)
+                .build();
+
+        // Enough empty chunks to overflow the stack if every chunk took a stack frame.
+        byte[] junk = new byte[8 * 200000];
+        for (int i = 0; i < junk.length; i += 8) {
+            junk[i] = 'j';
+            junk[i + 1] = 'u';
+            junk[i + 2] = 'n';
+            junk[i + 3] = 'k';
+        }
+
+        byte[] fmt = Arrays.copyOfRange(header, 0, 36);
+        byte[] data = Arrays.copyOfRange(header, 36, 44);
+
+        reader.read(ArrayUtils.concat(fmt, junk, data, new byte[]{1, 2, 3, 4}));
+
+        assertEquals(1, onSamplesListener.calls.size());
+        assertArrayEquals(new byte[]{1, 2, 3, 4}, ByteBufferUtils.getArray(onSamplesListener.calls.get(0)));
+    }
+
+    @Test
+    public void read_parsesRf64Files() {
+        OnInterleavedSamplesListenerTracker onSamplesListener = new OnInterleavedSamplesListenerTracker();
+
+        WavReader reader = new WavReader();
+
+        reader.setOnInterleavedSamplesListener(onSamplesListener);
+        reader.setRespectDataLength(true);
+
+        reader.read(createRf64Header(4));
+        reader.read(new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+
+        assertNotNull(reader.getDataFormat());
+        assertEquals(2, reader.getDataFormat().getChannels());
+        assertEquals(1, onSamplesListener.calls.size());
+        assertArrayEquals(new byte[]{1, 2, 3, 4}, ByteBufferUtils.getArray(onSamplesListener.calls.get(0)));
+    }
+
+    @Test(expected = WavReader.ChunkTooShortException.class)
+    public void read_throwsExceptionIfDs64ChunkIsTooShort() {
+        byte[] header = createRf64Header(4);
+        // Only 8 bytes, so the data length would be taken from the fmt chunk.
+        header[16] = 8;
+        byte[] shortened = ArrayUtils.concat(Arrays.copyOfRange(header, 0, 28), Arrays.copyOfRange(header, 48,
+                header.length));
+
+        WavReader reader = new WavReader();
+        reader.setOnInterleavedSamplesListener(new OnInterleavedSamplesListenerTracker());
+
+        reader.read(shortened);
+    }
+
+    @Test(expected = WavReader.ChunkTooShortException.class)
+    public void read_throwsExceptionIfFmtChunkIsTooShort() {
+        WavReader reader = new WavReader();
+        reader.setOnInterleavedSamplesListener(new OnInterleavedSamplesListenerTracker());
+
+        // Without the bits per sample, which would be taken from the data chunk header.
+        reader.read(ArrayUtils.concat(createHeaderWithShortFmtChunk(14), new byte[]{1, 2, 3, 4}));
+    }
+
+    @Test(expected = WavReader.ChunkTooShortException.class)
+    public void read_throwsExceptionIfFmtChunkIsEmpty() {
+        WavReader reader = new WavReader();
+        reader.setOnInterleavedSamplesListener(new OnInterleavedSamplesListenerTracker());
+
+        reader.read(ArrayUtils.concat(createHeaderWithShortFmtChunk(0), new byte[]{1, 2, 3, 4}));
+    }
+
+    @Test
+    public void read_throwsExceptionIfFmtChunkIsTooShortWhenReadInPieces() {
+        for (int length : new int[]{0, 14}) {
+            byte[] file = ArrayUtils.concat(createHeaderWithShortFmtChunk(length), new byte[]{1, 2, 3, 4});
+
+            WavReader reader = new WavReader();
+            reader.setOnInterleavedSamplesListener(new OnInterleavedSamplesListenerTracker());
+
+            try {
+                for (int i = 0; i < file.length; i++) {
+                    reader.read(new byte[]{file[i]});
+                }
+
+                fail("Fmt chunk of " + length + " bytes was accepted.");
+            } catch (WavReader.ChunkTooShortException ex) {
+                // Expected.
+            }
+        }
+    }
+
+    @Test
+    public void setRespectDataLength_stopsAtEndOfDataChunkAndParsesFollowingChunks() {
+        OnInterleavedSamplesListenerTracker onSamplesListener = new OnInterleavedSamplesListenerTracker();
+
+        WavReader reader = new WavReader();
+
+        reader.setOnInterleavedSamplesListener(onSamplesListener);
+        reader.setRespectDataLength(true);
+
+        byte[] header = new WavFileHeaderBuilder()
+                .setBitsPerSample(16)
+                .setChannels(2)
+                .setDataLength(6)
+                .build();
+
+        byte[] samples = new byte[]{1, 2, 3, 4, 5, 6};
+
+        byte[] junk = new byte[]{'j', 'u', 'n', 'k', 3, 0, 0, 0, 7, 8, 9, 0};
+
+        byte[] dataChunk = new byte[]{'d', 'a', 't', 'a', 4, 0, 0, 0, 10, 11, 12, 13, 14, 15, 16, 17};
+
+        byte[] file = ArrayUtils.concat(header, samples, junk, dataChunk);
+
+        // One byte at a time to make sure boundaries are respected in every case.
+        for (int i = 0; i < file.length; i++) {
+            reader.read(file, i, 1);
+        }
+
+        assertEquals(2, onSamplesListener.calls.size());
+        assertArrayEquals(new byte[]{1, 2, 3, 4}, ByteBufferUtils.getArray(onSamplesListener.calls.get(0)));
+        assertArrayEquals(new byte[]{10, 11, 12, 13}, ByteBufferUtils.getArray(onSamplesListener.calls.get(1)));
+    }
+
+    @Test
+    public void setRespectDataLength_skipsPadByteOfDataChunk() {
+        OnInterleavedSamplesListenerTracker onSamplesListener = new OnInterleavedSamplesListenerTracker();
+
+        WavReader reader = new WavReader();
+
+        reader.setOnInterleavedSamplesListener(onSamplesListener);
+        reader.setRespectDataLength(true);
+
+        byte[] header = new WavFileHeaderBuilder()
+                .setBitsPerSample(8)
+                .setChannels(1)
+                .setDataLength(3)
+                .build();
+
+        byte[] samples = new byte[]{1, 2, 3, 0};
+
+        byte[] dataChunk = new byte[]{'d', 'a', 't', 'a', 1, 0, 0, 0, 4, 0};
+
+        reader.read(ArrayUtils.concat(header, samples, dataChunk));
+
+        assertEquals(2, onSamplesListener.calls.size());
+        assertArrayEquals(new byte[]{1, 2, 3}, ByteBufferUtils.getArray(onSamplesListener.calls.get(0)));
+        assertArrayEquals(new byte[]{4}, ByteBufferUtils.getArray(onSamplesListener.calls.get(1)));
+    }
+
     @Test
     public void setOnInterleavedSamplesListener_listenerIsCalledWhenNewSamplesAreRead() {
         OnInterleavedSamplesListenerTracker onSamplesListener = new OnInterleavedSamplesListenerTracker();
@@ -672,6 +919,292 @@ public class WavReaderTest {
         assertArrayEquals(new byte[]{3, 4}, ByteBufferUtils.getArray(onSamplesListener.calls.get(0)[1]));
     }
 
+    @Test
+    public void setOnNoninterleavedSamplesListener_splitsChannelsOfEverySampleSize() {
+        int[] sizes = new int[]{8, 16, 24, 32, 40};
+
+        for (int size : sizes) {
+            int bytesPerSample = size / 8;
+            int channels = 3;
+            int frames = 5;
+
+            byte[] samples = new byte[frames * channels * bytesPerSample];
+            for (int i = 0; i < samples.length; i++) {
+                samples[i] = (byte) i;
+            }
+
+            for (boolean direct : new boolean[]{false, true}) {
+                OnNoninterleavedSamplesListenerTracker onSamplesListener = new OnNoninterleavedSamplesListenerTracker();
+
+                WavReader reader = new WavReader();
+
+                reader.setOnNoninterleavedSamplesListener(onSamplesListener);
+
+                reader.read(
+                        new WavFileHeaderBuilder()
+                                .setBitsPerSample(size)
+                                .setChannels(channels)
+                                .setSampleRate(8000)
+                                .build()
+                );
+
+                ByteBuffer input = direct ? ByteBuffer.allocateDirect(samples.length) : ByteBuffer.allocate(samples.length);
+                input.put(samples);
+                input.flip();
+
+                reader.read(input);
+
+                assertEquals(1, onSamplesListener.calls.size());
+
+                for (int c = 0; c < channels; c++) {
+                    byte[] expected = new byte[frames * bytesPerSample];
+                    for (int i = 0; i < frames; i++) {
+                        for (int b = 0; b < bytesPerSample; b++) {
+                            expected[i * bytesPerSample + b] = samples[(i * channels + c) * bytesPerSample + b];
+                        }
+                    }
+
+                    assertArrayEquals(expected, ByteBufferUtils.getArray(onSamplesListener.calls.get(0)[c]));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void setOnNoninterleavedSamplesListener_splitsStereoFramesFromDirectBuffer() {
+        int[] sizes = new int[]{16, 32};
+
+        for (int size : sizes) {
+            OnNoninterleavedSamplesListenerTracker onSamplesListener = new OnNoninterleavedSamplesListenerTracker();
+
+            WavReader reader = new WavReader();
+
+            reader.setOnNoninterleavedSamplesListener(onSamplesListener);
+
+            reader.read(
+                    new WavFileHeaderBuilder()
+                            .setBitsPerSample(size)
+                            .setChannels(2)
+                            .setSampleRate(8000)
+                            .build()
+            );
+
+            ByteBuffer input = ByteBuffer.allocateDirect(size / 2);
+            for (int i = 0; i < input.capacity(); i++) {
+                input.put((byte) (i + 1));
+            }
+            input.flip();
+
+            reader.read(input);
+
+            int half = size / 8;
+            byte[] left = new byte[size / 4];
+            byte[] right = new byte[size / 4];
+            for (int i = 0; i < left.length; i++) {
+                int frame = i / half;
+                left[i] = (byte) (frame * half * 2 + i % half + 1);
+                right[i] = (byte) (frame * half * 2 + half + i % half + 1);
+            }
+
+            assertEquals(1, onSamplesListener.calls.size());
+            assertArrayEquals(left, ByteBufferUtils.getArray(onSamplesListener.calls.get(0)[0]));
+            assertArrayEquals(right, ByteBufferUtils.getArray(onSamplesListener.calls.get(0)[1]));
+        }
+    }
+
+    @Test
+    public void setOnInterleavedIntSamplesListener_signExtendsEverySampleSize() {
+        assertArrayEquals(new int[]{-128, 127, 0},
+                readInterleavedInts(8, 1, new byte[]{0, (byte) 0xff, (byte) 0x80}));
+        assertArrayEquals(new int[]{-32767, 258},
+                readInterleavedInts(16, 1, new byte[]{1, (byte) 0x80, 2, 1}));
+        assertArrayEquals(new int[]{-1, -8388608, 0x563412},
+                readInterleavedInts(24, 1, new byte[]{(byte) 0xff, (byte) 0xff, (byte) 0xff, 0, 0, (byte) 0x80, 0x12, 0x34, 0x56}));
+        assertArrayEquals(new int[]{Integer.MIN_VALUE, 0x04030201},
+                readInterleavedInts(32, 1, new byte[]{0, 0, 0, (byte) 0x80, 1, 2, 3, 4}));
+    }
+
+    @Test
+    public void setOnInterleavedIntSamplesListener_arrayIsReusedBetweenCalls() {
+        final List<int[]> arrays = new ArrayList<>();
+
+        WavReader reader = new WavReader();
+
+        reader.setOnInterleavedIntSamplesListener(new WavReader.OnInterleavedIntSamplesListener() {
+            @Override
+            public void onInterleavedIntSamples(int[] samples, int length) {
+                arrays.add(samples);
+            }
+        });
+
+        reader.read(new WavFileHeaderBuilder().setBitsPerSample(16).setChannels(2).build());
+        reader.read(new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+        reader.read(new byte[]{1, 2, 3, 4});
+
+        assertEquals(2, arrays.size());
+        assertSame(arrays.get(0), arrays.get(1));
+    }
+
+    @Test
+    public void setOnInterleavedFloatSamplesListener_normalizesSamples() {
+        final List<float[]> calls = new ArrayList<>();
+
+        WavReader reader = new WavReader();
+
+        reader.setOnInterleavedFloatSamplesListener(new WavReader.OnInterleavedFloatSamplesListener() {
+            @Override
+            public void onInterleavedFloatSamples(float[] samples, int length) {
+                calls.add(Arrays.copyOf(samples, length));
+            }
+        });
+
+        reader.read(new WavFileHeaderBuilder().setBitsPerSample(24).setChannels(2).build());
+        reader.read(new byte[]{0, 0, (byte) 0x80, 0, 0, 0x40, 0, 0, 0, 0, 0, (byte) 0xc0});
+
+        assertEquals(1, calls.size());
+        assertArrayEquals(new float[]{-1.0f, 0.5f, 0.0f, -0.5f}, calls.get(0), 0.0f);
+    }
+
+    @Test
+    public void setOnInterleavedShortSamplesListener_scalesSamplesTo16Bits() {
+        final List<short[]> calls = new ArrayList<>();
+
+        WavReader reader = new WavReader();
+
+        reader.setOnInterleavedShortSamplesListener(new WavReader.OnInterleavedShortSamplesListener() {
+            @Override
+            public void onInterleavedShortSamples(short[] samples, int length) {
+                calls.add(Arrays.copyOf(samples, length));
+            }
+        });
+
+        reader.read(new WavFileHeaderBuilder().setBitsPerSample(24).setChannels(1).build());
+        reader.read(new byte[]{0x12, 0x34, 0x56, 0, 0, (byte) 0x80});
+
+        assertEquals(1, calls.size());
+        assertArrayEquals(new short[]{0x5634, Short.MIN_VALUE}, calls.get(0));
+    }
+
+    @Test
+    public void setOnNoninterleavedFloatSamplesListener_eachElementInArrayCorrespondingToChannel() {
+        final List<float[][]> calls = new ArrayList<>();
+
+        WavReader reader = new WavReader();
+
+        reader.setOnNoninterleavedFloatSamplesListener(new WavReader.OnNoninterleavedFloatSamplesListener() {
+            @Override
+            public void onNoninterleavedFloatSamples(float[][] channels, int length) {
+                calls.add(new float[][]{Arrays.copyOf(channels[0], length), Arrays.copyOf(channels[1], length)});
+            }
+        });
+
+        reader.read(new WavFileHeaderBuilder().setBitsPerSample(16).setChannels(2).build());
+        reader.read(new byte[]{0, (byte) 0x80, 0, 0x40, 0, 0x20, 0, (byte) 0xc0});
+
+        assertEquals(1, calls.size());
+        assertArrayEquals(new float[]{-1.0f, 0.25f}, calls.get(0)[0], 0.0f);
+        assertArrayEquals(new float[]{0.5f, -0.5f}, calls.get(0)[1], 0.0f);
+    }
+
+    @Test
+    public void setOnNoninterleavedIntSamplesListener_receivesSamplesAfterOtherListenersConsumeBuffer() {
+        final List<int[][]> calls = new ArrayList<>();
+
+        WavReader reader = new WavReader();
+
+        reader.setOnInterleavedSamplesListener(new OnInterleavedSamplesListenerTracker());
+        reader.setOnNoninterleavedSamplesListener(new OnNoninterleavedSamplesListenerTracker());
+        reader.setOnNoninterleavedIntSamplesListener(new WavReader.OnNoninterleavedIntSamplesListener() {
+            @Override
+            public void onNoninterleavedIntSamples(int[][] channels, int length) {
+                calls.add(new int[][]{Arrays.copyOf(channels[0], length), Arrays.copyOf(channels[1], length)});
+            }
+        });
+
+        reader.read(new WavFileHeaderBuilder().setBitsPerSample(8).setChannels(2).build());
+        reader.read(new byte[]{(byte) 0x80, (byte) 0x81, 0x7f, 0});
+
+        assertEquals(1, calls.size());
+        assertArrayEquals(new int[]{0, -1}, calls.get(0)[0]);
+        assertArrayEquals(new int[]{1, -128}, calls.get(0)[1]);
+    }
+
+    @Test
+    public void setChannelBufferProvider_listenerReceivesProvidedBuffers() {
+        final ByteBuffer[] provided = new ByteBuffer[]{ByteBuffer.allocate(16), ByteBuffer.allocate(16)};
+
+        final List<ByteBuffer[]> received = new ArrayList<>();
+
+        WavReader reader = new WavReader();
+
+        reader.setOnNoninterleavedSamplesListener(new WavReader.OnNoninterleavedSamplesListener() {
+            @Override
+            public void onNoninterleavedSamples(ByteBuffer[] channels) {
+                received.add(channels);
+                assertSame(provided[0], channels[0]);
+                assertSame(provided[1], channels[1]);
+                assertArrayEquals(new byte[]{1, 2, 5, 6}, ByteBufferUtils.getArray(channels[0]));
+                assertArrayEquals(new byte[]{3, 4, 7, 8}, ByteBufferUtils.getArray(channels[1]));
+            }
+        });
+
+        reader.setChannelBufferProvider(new WavReader.ChannelBufferProvider() {
+            @Override
+            public ByteBuffer getChannelBuffer(int channel, int capacity) {
+                return provided[channel];
+            }
+        });
+
+        reader.read(
+                new WavFileHeaderBuilder()
+                        .setBitsPerSample(16)
+                        .setChannels(2)
+                        .setSampleRate(8000)
+                        .build()
+        );
+
+        reader.read(new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+
+        assertEquals(1, received.size());
+    }
+
+    @Test
+    public void setChannelBufferProvider_reusesBuffersAndArrayBetweenCalls() {
+        final List<ByteBuffer[]> arrays = new ArrayList<>();
+        final List<ByteBuffer> buffers = new ArrayList<>();
+        final List<byte[]> contents = new ArrayList<>();
+
+        WavReader reader = new WavReader();
+
+        reader.setOnNoninterleavedSamplesListener(new WavReader.OnNoninterleavedSamplesListener() {
+            @Override
+            public void onNoninterleavedSamples(ByteBuffer[] channels) {
+                arrays.add(channels);
+                buffers.add(channels[0]);
+                contents.add(ByteBufferUtils.getArray(channels[0]));
+            }
+        });
+
+        reader.setChannelBufferProvider(new WavReader.ReusableChannelBufferProvider());
+
+        reader.read(
+                new WavFileHeaderBuilder()
+                        .setBitsPerSample(16)
+                        .setChannels(2)
+                        .setSampleRate(8000)
+                        .build()
+        );
+
+        reader.read(new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+        reader.read(new byte[]{9, 10, 11, 12});
+
+        assertEquals(2, arrays.size());
+        assertSame(arrays.get(0), arrays.get(1));
+        assertSame(buffers.get(0), buffers.get(1));
+        assertArrayEquals(new byte[]{1, 2, 5, 6}, contents.get(0));
+        assertArrayEquals(new byte[]{9, 10}, contents.get(1));
+    }
+
     @Test
     public void bugfix_read_crashWhenSkippingUnknownChunkWithoutAllDataInTheSameRead() {
         OnInterleavedSamplesListenerTracker onSamplesListener = new OnInterleavedSamplesListenerTracker();
@@ -733,4 +1266,360 @@ public class WavReaderTest {
         assertArrayEquals(new byte[]{1, 2, 3, 4}, ByteBufferUtils.getArray(onSamplesListener.calls.get(0)));
         assertArrayEquals(new byte[]{5, 6, 7, 8}, ByteBufferUtils.getArray(onSamplesListener.calls.get(1)));
     }
+
+    @Test
+    public void read_parsesExtensibleFormat() {
+        WavReader reader = new WavReader();
+
+        reader.read(createExtensibleHeader(1, 2, 32, 24, 0x3));
+
+        WavReader.DataFormat format = reader.getDataFormat();
+        assertEquals(WavReader.DataFormat.FORMAT_PCM, format.getAudioFormat());
+        assertEquals(2, format.getChannels());
+        assertEquals(32, format.getBitsPerSample());
+        assertEquals(24, format.getValidBitsPerSample());
+        assertEquals(0x3, format.getChannelMask());
+    }
+
+    @Test
+    public void read_decodesSamplesOfExtensibleFormat() {
+        final List<int[]> calls = new ArrayList<>();
+
+        WavReader reader = new WavReader();
+        reader.setOnInterleavedIntSamplesListener(new WavReader.OnInterleavedIntSamplesListener() {
+            @Override
+            public void onInterleavedIntSamples(int[] samples, int length) {
+                calls.add(Arrays.copyOf(samples, length));
+            }
+        });
+
+        byte[] header = createExtensibleHeader(1, 1, 32, 24, 0);
+
+        // One byte at a time so that the fmt chunk gets copied.
+        for (int i = 0; i < header.length; i++) {
+            reader.read(header, i, 1);
+        }
+
+        reader.read(new byte[]{0, 0, 0, 0x40, 0, 0, 0, (byte) 0x80});
+
+        assertEquals(1, calls.size());
+        assertArrayEquals(new int[]{0x40000000, Integer.MIN_VALUE}, calls.get(0));
+    }
+
+    @Test(expected = WavReader.AudioFormatNotSupportedException.class)
+    public void read_throwsExceptionIfExtensibleSubFormatIsUnknown() {
+        WavReader reader = new WavReader();
+
+        byte[] header = createExtensibleHeader(1, 2, 16, 16, 0);
+        // Breaks the GUID.
+        header[60 - 1] = 0;
+
+        reader.read(header);
+    }
+
+    @Test(expected = WavReader.AudioFormatNotSupportedException.class)
+    public void read_throwsExceptionIfFloatSamplesAreNot32Or64Bits() {
+        WavReader reader = new WavReader();
+
+        reader.read(new WavFileHeaderBuilder().setAudioFormat(3).setBitsPerSample(16).build());
+    }
+
+    @Test
+    public void setOnInterleavedFloatSamplesListener_passesFloatSamplesAsTheyAre() {
+        final List<float[]> calls = new ArrayList<>();
+
+        WavReader reader = new WavReader();
+        reader.setOnInterleavedFloatSamplesListener(new WavReader.OnInterleavedFloatSamplesListener() {
+            @Override
+            public void onInterleavedFloatSamples(float[] samples, int length) {
+                calls.add(Arrays.copyOf(samples, length));
+            }
+        });
+
+        reader.read(new WavFileHeaderBuilder().setAudioFormat(3).setBitsPerSample(32).setChannels(2).build());
+        reader.read(floatSamples(0.25f, -0.75f, 1.5f, 0));
+
+        assertEquals(1, calls.size());
+        assertArrayEquals(new float[]{0.25f, -0.75f, 1.5f, 0}, calls.get(0), 0);
+    }
+
+    @Test
+    public void setOnNoninterleavedShortSamplesListener_convertsFloatSamples() {
+        final List<short[][]> calls = new ArrayList<>();
+
+        WavReader reader = new WavReader();
+        reader.setOnNoninterleavedShortSamplesListener(new WavReader.OnNoninterleavedShortSamplesListener() {
+            @Override
+            public void onNoninterleavedShortSamples(short[][] channels, int length) {
+                calls.add(new short[][]{Arrays.copyOf(channels[0], length), Arrays.copyOf(channels[1], length)});
+            }
+        });
+
+        ByteBuffer samples = ByteBuffer.allocate(32);
+        samples.order(ByteOrder.LITTLE_ENDIAN);
+        samples.putDouble(0.5).putDouble(-1).putDouble(2).putDouble(-0.25);
+
+        reader.read(new WavFileHeaderBuilder().setAudioFormat(3).setBitsPerSample(64).setChannels(2).build());
+        reader.read(samples.array());
+
+        assertEquals(1, calls.size());
+        assertArrayEquals(new short[]{16384, Short.MAX_VALUE}, calls.get(0)[0]);
+        assertArrayEquals(new short[]{Short.MIN_VALUE, -8192}, calls.get(0)[1]);
+    }
+
+    @Test
+    public void setOnInterleavedFloatBufferListener_passesViewOfFloatSamples() {
+        final List<float[]> calls = new ArrayList<>();
+
+        WavReader reader = new WavReader();
+        reader.setOnInterleavedFloatBufferListener(new WavReader.OnInterleavedFloatBufferListener() {
+            @Override
+            public void onInterleavedFloatBuffer(FloatBuffer samples) {
+                float[] copy = new float[samples.remaining()];
+                samples.get(copy);
+                calls.add(copy);
+            }
+        });
+
+        reader.read(new WavFileHeaderBuilder().setAudioFormat(3).setBitsPerSample(32).build());
+        reader.read(floatSamples(0.5f, -0.5f));
+
+        assertEquals(1, calls.size());
+        assertArrayEquals(new float[]{0.5f, -0.5f}, calls.get(0), 0);
+    }
+
+    @Test
+    public void setOnInterleavedFloatBufferListener_isNotCalledForIntegerSamples() {
+        final List<FloatBuffer> calls = new ArrayList<>();
+
+        WavReader reader = new WavReader();
+        reader.setOnInterleavedFloatBufferListener(new WavReader.OnInterleavedFloatBufferListener() {
+            @Override
+            public void onInterleavedFloatBuffer(FloatBuffer samples) {
+                calls.add(samples);
+            }
+        });
+
+        reader.read(new WavFileHeaderBuilder().setBitsPerSample(32).build());
+        reader.read(new byte[]{1, 2, 3, 4});
+
+        assertEquals(0, calls.size());
+    }
+
+    @Test
+    public void setChannelRouting_selectsAndReordersChannels() {
+        OnNoninterleavedSamplesListenerTracker tracker = new OnNoninterleavedSamplesListenerTracker();
+
+        WavReader reader = new WavReader();
+        reader.setOnNoninterleavedSamplesListener(tracker);
+        reader.setChannelRouting(ChannelRouting.select(2, 0));
+
+        reader.read(new WavFileHeaderBuilder().setBitsPerSample(16).setChannels(3).build());
+        reader.read(new byte[]{1, 0, 2, 0, 3, 0, 4, 0, 5, 0, 6, 0});
+
+        assertEquals(1, tracker.calls.size());
+        assertEquals(2, tracker.calls.get(0).length);
+        assertArrayEquals(new byte[]{3, 0, 6, 0}, ByteBufferUtils.getArray(tracker.calls.get(0)[0]));
+        assertArrayEquals(new byte[]{1, 0, 4, 0}, ByteBufferUtils.getArray(tracker.calls.get(0)[1]));
+    }
+
+    @Test
+    public void setChannelRouting_selectsChannelsIntoDirectBuffers() {
+        OnNoninterleavedSamplesListenerTracker tracker = new OnNoninterleavedSamplesListenerTracker();
+
+        WavReader reader = new WavReader();
+        reader.setOnNoninterleavedSamplesListener(tracker);
+        reader.setChannelRouting(ChannelRouting.select(1));
+        reader.setChannelBufferProvider(new WavReader.ChannelBufferProvider() {
+            @Override
+            public ByteBuffer getChannelBuffer(int channel, int length) {
+                return ByteBuffer.allocateDirect(length);
+            }
+        });
+
+        reader.read(new WavFileHeaderBuilder().setBitsPerSample(24).setChannels(2).build());
+        reader.read(new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12});
+
+        assertEquals(1, tracker.calls.get(0).length);
+        assertArrayEquals(new byte[]{4, 5, 6, 10, 11, 12}, ByteBufferUtils.getArray(tracker.calls.get(0)[0]));
+    }
+
+    @Test
+    public void setChannelRouting_mixedSamplesAreInFormatOfFile() {
+        OnNoninterleavedSamplesListenerTracker tracker = new OnNoninterleavedSamplesListenerTracker();
+
+        WavReader reader = new WavReader();
+        reader.setOnNoninterleavedSamplesListener(tracker);
+        reader.setChannelRouting(ChannelRouting.downmixToMono(2));
+
+        reader.read(new WavFileHeaderBuilder().setBitsPerSample(16).setChannels(2).build());
+        reader.read(new byte[]{0, 0x40, 0, 0x20, 0, (byte) 0x80, 0, (byte) 0xc0});
+
+        assertEquals(1, tracker.calls.get(0).length);
+        assertArrayEquals(new byte[]{0, 0x30, 0, (byte) 0xa0}, ByteBufferUtils.getArray(tracker.calls.get(0)[0]));
+    }
+
+    @Test
+    public void setChannelRouting_mixesDecodedChannelsWithWeights() {
+        final List<float[][]> floatCalls = new ArrayList<>();
+        final List<int[][]> intCalls = new ArrayList<>();
+
+        WavReader reader = new WavReader();
+        reader.setChannelRouting(ChannelRouting.mix(new float[]{0, 1}, new float[]{0.5f, 0.5f}));
+        reader.setOnNoninterleavedFloatSamplesListener(new WavReader.OnNoninterleavedFloatSamplesListener() {
+            @Override
+            public void onNoninterleavedFloatSamples(float[][] channels, int length) {
+                floatCalls.add(new float[][]{Arrays.copyOf(channels[0], length), Arrays.copyOf(channels[1], length)});
+            }
+        });
+        reader.setOnNoninterleavedIntSamplesListener(new WavReader.OnNoninterleavedIntSamplesListener() {
+            @Override
+            public void onNoninterleavedIntSamples(int[][] channels, int length) {
+                intCalls.add(new int[][]{Arrays.copyOf(channels[0], length), Arrays.copyOf(channels[1], length)});
+            }
+        });
+
+        reader.read(new WavFileHeaderBuilder().setBitsPerSample(16).setChannels(2).build());
+        reader.read(new byte[]{0, 0x40, 0, 0x20, 0, (byte) 0x80, 0, (byte) 0xc0});
+
+        assertEquals(2, floatCalls.get(0).length);
+        assertArrayEquals(new float[]{0.25f, -0.5f}, floatCalls.get(0)[0], 0.0f);
+        assertArrayEquals(new float[]{0.375f, -0.75f}, floatCalls.get(0)[1], 0.0f);
+        assertArrayEquals(new int[]{0x2000, -0x4000}, intCalls.get(0)[0]);
+        assertArrayEquals(new int[]{0x3000, -0x6000}, intCalls.get(0)[1]);
+    }
+
+    @Test
+    public void setChannelRouting_onlyDecodesSelectedChannels() {
+        final List<int[][]> calls = new ArrayList<>();
+
+        WavReader reader = new WavReader();
+        reader.setChannelRouting(ChannelRouting.select(1));
+        reader.setOnNoninterleavedIntSamplesListener(new WavReader.OnNoninterleavedIntSamplesListener() {
+            @Override
+            public void onNoninterleavedIntSamples(int[][] channels, int length) {
+                calls.add(new int[][]{Arrays.copyOf(channels[0], length)});
+                assertEquals(1, channels.length);
+            }
+        });
+
+        reader.read(new WavFileHeaderBuilder().setBitsPerSample(8).setChannels(4).build());
+        reader.read(new byte[]{0, (byte) 129, 0, 0, 0, (byte) 127, 0, 0});
+
+        assertArrayEquals(new int[]{1, -1}, calls.get(0)[0]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void setChannelRouting_throwsExceptionIfChannelDoesNotExist() {
+        WavReader reader = new WavReader();
+        reader.setOnNoninterleavedSamplesListener(new OnNoninterleavedSamplesListenerTracker());
+        reader.setChannelRouting(ChannelRouting.select(2));
+
+        reader.read(new WavFileHeaderBuilder().setBitsPerSample(16).setChannels(2).build());
+        reader.read(new byte[]{0, 0, 0, 0});
+    }
+
+    private int[] readInterleavedInts(int bitsPerSample, int channels, byte[] samples) {
+        final List<int[]> calls = new ArrayList<>();
+
+        WavReader reader = new WavReader();
+
+        reader.setOnInterleavedIntSamplesListener(new WavReader.OnInterleavedIntSamplesListener() {
+            @Override
+            public void onInterleavedIntSamples(int[] samples, int length) {
+                calls.add(Arrays.copyOf(samples, length));
+            }
+        });
+
+        reader.read(new WavFileHeaderBuilder().setBitsPerSample(bitsPerSample).setChannels(channels).build());
+        reader.read(samples);
+
+        assertEquals(1, calls.size());
+        return calls.get(0);
+    }
+
+    /**
+     * Creates the header of an RF64 file with 16 bit stereo samples.
+     *
+     * @param dataLength Only written to the ds64 chunk.
+     * @return
+     */
+    static byte[] createRf64Header(long dataLength) {
+        byte[] header = new WavFileHeaderBuilder()
+                .setBitsPerSample(16)
+                .setChannels(2)
+                .build();
+
+        ByteBuffer ds64 = ByteBuffer.allocate(8 + 28);
+        ds64.order(ByteOrder.LITTLE_ENDIAN);
+        ds64.put(new byte[]{'d', 's', '6', '4'});
+        ds64.putInt(28);
+        ds64.putLong(dataLength + 36 + ds64.capacity());
+        ds64.putLong(dataLength);
+        ds64.putLong(dataLength / 4);
+        ds64.putInt(0);
+
+        byte[] riff = Arrays.copyOfRange(header, 0, 12);
+        riff[0] = 'R';
+        riff[1] = 'F';
+        riff[2] = '6';
+        riff[3] = '4';
+        Arrays.fill(riff, 4, 8, (byte) 0xff);
+
+        byte[] rest = Arrays.copyOfRange(header, 12, header.length);
+        // Data length.
+        Arrays.fill(rest, rest.length - 4, rest.length, (byte) 0xff);
+
+        return ArrayUtils.concat(riff, ds64.array(), rest);
+    }
+
+    private static byte[] floatSamples(float... samples) {
+        ByteBuffer buffer = ByteBuffer.allocate(samples.length * 4);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        buffer.asFloatBuffer().put(samples);
+        return buffer.array();
+    }
+
+    /**
+     * Creates the header of a file whose fmt chunk is WAVE_FORMAT_EXTENSIBLE.
+     *
+     * @param subFormat Audio format in the sub format GUID.
+     * @return
+     */
+    static byte[] createExtensibleHeader(int subFormat, int channels, int bitsPerSample,
+                                         int validBitsPerSample, int channelMask) {
+        ByteBuffer header = ByteBuffer.allocate(68);
+        header.order(ByteOrder.LITTLE_ENDIAN);
+        header.put(new byte[]{'R', 'I', 'F', 'F'});
+        header.putInt(60);
+        header.put(new byte[]{'W', 'A', 'V', 'E'});
+        header.put(new byte[]{'f', 'm', 't', ' '});
+        header.putInt(40);
+        header.putShort((short) 0xfffe);
+        header.putShort((short) channels);
+        header.putInt(8000);
+        header.putInt(8000 * channels * bitsPerSample / 8);
+        header.putShort((short) (channels * bitsPerSample / 8));
+        header.putShort((short) bitsPerSample);
+        header.putShort((short) 22);
+        header.putShort((short) validBitsPerSample);
+        header.putInt(channelMask);
+        header.putShort((short) subFormat);
+        header.put(new byte[]{0x00, 0x00, 0x00, 0x00, 0x10, 0x00, (byte) 0x80, 0x00,
+                0x00, (byte) 0xaa, 0x00, 0x38, (byte) 0x9b, 0x71});
+        header.put(new byte[]{'d', 'a', 't', 'a'});
+        header.putInt(0);
+        return header.array();
+    }
+
+    /**
+     * Creates a header whose fmt chunk only has the first bytes of its fields.
+     */
+    private static byte[] createHeaderWithShortFmtChunk(int length) {
+        byte[] header = new WavFileHeaderBuilder().setBitsPerSample(16).setDataLength(4).build();
+        header[16] = (byte) length;
+
+        return ArrayUtils.concat(Arrays.copyOfRange(header, 0, 20 + length), Arrays.copyOfRange(header, 36,
+                header.length));
+    }
 }
@@ -6,6 +6,8 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
 
 import static org.junit.Assert.*;
 
@@ -105,4 +107,72 @@ public class WavReaderUsageTest {
         assertEquals(1, onSamplesListener.calls.size());
         assertArrayEquals(new byte[]{1, 2, 3, 4}, ByteBufferUtils.getArray(onSamplesListener.calls.get(0)));
     }
+
+    @Test
+    public void readEntireInputStreamWithCustomBufferSize() throws IOException {
+        byte[] header = new WavFileHeaderBuilder()
+                .setBitsPerSample(16)
+                .setChannels(2)
+                .setSampleRate(22000)
+                .build();
+        InputStream file = new ByteArrayInputStream(ArrayUtils.concat(header, new byte[]{1, 2, 3, 4, 5, 6, 7, 8}));
+
+        OnInterleavedSamplesListenerTracker onSamplesListener = new OnInterleavedSamplesListenerTracker();
+
+        WavReader reader = new WavReader();
+
+        reader.setOnInterleavedSamplesListener(onSamplesListener);
+        reader.setReadBufferSize(48);
+
+        reader.read(file);
+
+        assertEquals(2, onSamplesListener.calls.size());
+        assertArrayEquals(new byte[]{1, 2, 3, 4}, ByteBufferUtils.getArray(onSamplesListener.calls.get(0)));
+        assertArrayEquals(new byte[]{5, 6, 7, 8}, ByteBufferUtils.getArray(onSamplesListener.calls.get(1)));
+    }
+
+    @Test
+    public void readEntireChannel() throws IOException {
+        byte[] header = new WavFileHeaderBuilder()
+                .setBitsPerSample(16)
+                .setChannels(2)
+                .setSampleRate(22000)
+                .build();
+        ReadableByteChannel file = Channels.newChannel(
+                new ByteArrayInputStream(ArrayUtils.concat(header, new byte[]{1, 2, 3, 4})));
+
+        OnInterleavedSamplesListenerTracker onSamplesListener = new OnInterleavedSamplesListenerTracker();
+
+        WavReader reader = new WavReader();
+
+        reader.setOnInterleavedSamplesListener(onSamplesListener);
+
+        reader.read(file);
+
+        assertEquals(1, onSamplesListener.calls.size());
+        assertArrayEquals(new byte[]{1, 2, 3, 4}, ByteBufferUtils.getArray(onSamplesListener.calls.get(0)));
+    }
+
+    @Test
+    public void readEntireChannelWithOwnBuffer() throws IOException {
+        byte[] header = new WavFileHeaderBuilder()
+                .setBitsPerSample(16)
+                .setChannels(2)
+                .setSampleRate(22000)
+                .build();
+        ReadableByteChannel file = Channels.newChannel(
+                new ByteArrayInputStream(ArrayUtils.concat(header, new byte[]{1, 2, 3, 4, 5, 6, 7, 8})));
+
+        OnInterleavedSamplesListenerTracker onSamplesListener = new OnInterleavedSamplesListenerTracker();
+
+        WavReader reader = new WavReader();
+
+        reader.setOnInterleavedSamplesListener(onSamplesListener);
+
+        reader.read(file, ByteBuffer.allocateDirect(24));
+
+        assertEquals(2, onSamplesListener.calls.size());
+        assertArrayEquals(new byte[]{1, 2, 3, 4}, ByteBufferUtils.getArray(onSamplesListener.calls.get(0)));
+        assertArrayEquals(new byte[]{5, 6, 7, 8}, ByteBufferUtils.getArray(onSamplesListener.calls.get(1)));
+    }
 }
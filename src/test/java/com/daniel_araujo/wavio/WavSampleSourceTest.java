@@ -0,0 +1,157 @@
+package com.daniel_araujo.wavio;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.*;
+
+public class WavSampleSourceTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void constructor_parsesHeader() {
+        WavSampleSource source = new WavSampleSource(new ByteArrayInputStream(new WavFileHeaderBuilder()
+                .setBitsPerSample(16)
+                .setChannels(2)
+                .setSampleRate(22000)
+                .build()));
+
+        assertEquals(2, source.getDataFormat().getChannels());
+        assertEquals(22000, source.getDataFormat().getSampleRate());
+        assertEquals(16, source.getDataFormat().getBitsPerSample());
+    }
+
+    @Test(expected = WavReader.ChunkNotFoundException.class)
+    public void constructor_throwsExceptionIfDataChunkIsMissing() {
+        byte[] header = new WavFileHeaderBuilder().build();
+
+        new WavSampleSource(new ByteArrayInputStream(header, 0, 36));
+    }
+
+    @Test
+    public void readFrames_readsOnlyWholeFramesThatFitInBuffer() {
+        WavSampleSource source = new WavSampleSource(new ByteArrayInputStream(ArrayUtils.concat(
+                new WavFileHeaderBuilder()
+                        .setBitsPerSample(16)
+                        .setChannels(2)
+                        .setDataLength(12)
+                        .build(),
+                new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12})));
+
+        ByteBuffer buffer = ByteBuffer.allocate(7);
+
+        assertEquals(1, source.readFrames(buffer));
+        assertEquals(4, buffer.position());
+        assertArrayEquals(new byte[]{1, 2, 3, 4}, ByteBufferUtils.getArray((ByteBuffer) buffer.flip()));
+
+        buffer.clear();
+        assertEquals(1, source.readFrames(buffer));
+        assertArrayEquals(new byte[]{5, 6, 7, 8}, ByteBufferUtils.getArray((ByteBuffer) buffer.flip()));
+    }
+
+    @Test
+    public void readFrames_stopsAtEndOfDataChunk() {
+        WavSampleSource source = new WavSampleSource(new ByteArrayInputStream(ArrayUtils.concat(
+                new WavFileHeaderBuilder()
+                        .setBitsPerSample(16)
+                        .setChannels(1)
+                        .setDataLength(4)
+                        .build(),
+                new byte[]{1, 2, 3, 4},
+                new byte[]{'L', 'I', 'S', 'T', 0, 0, 0, 0})));
+
+        ByteBuffer buffer = ByteBuffer.allocate(16);
+
+        assertEquals(2, source.readFrames(buffer));
+        assertEquals(-1, source.readFrames(buffer));
+        assertArrayEquals(new byte[]{1, 2, 3, 4}, ByteBufferUtils.getArray((ByteBuffer) buffer.flip()));
+    }
+
+    @Test
+    public void readFrames_waitsForSlowStream() {
+        final byte[] file = ArrayUtils.concat(
+                new WavFileHeaderBuilder()
+                        .setBitsPerSample(16)
+                        .setChannels(2)
+                        .build(),
+                new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9});
+
+        // Hands out a single byte at a time.
+        InputStream stream = new ByteArrayInputStream(file) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                return super.read(b, off, Math.min(len, 1));
+            }
+        };
+
+        WavSampleSource source = new WavSampleSource(stream);
+
+        ByteBuffer buffer = ByteBuffer.allocate(16);
+
+        assertEquals(2, source.readFrames(buffer));
+        assertArrayEquals(new byte[]{1, 2, 3, 4, 5, 6, 7, 8}, ByteBufferUtils.getArray((ByteBuffer) buffer.flip()));
+
+        buffer.clear();
+        assertEquals(-1, source.readFrames(buffer));
+    }
+
+    @Test
+    public void readFrames_convertsSamplesToFloats() {
+        WavSampleSource source = new WavSampleSource(new ByteArrayInputStream(ArrayUtils.concat(
+                new WavFileHeaderBuilder()
+                        .setBitsPerSample(16)
+                        .setChannels(2)
+                        .build(),
+                new byte[]{0, 0x40, 0, (byte) 0xc0, 0, 0, 0, (byte) 0x80})));
+
+        float[] samples = new float[6];
+
+        assertEquals(2, source.readFrames(samples, 1, 3));
+        assertArrayEquals(new float[]{0, 0.5f, -0.5f, 0, -1, 0}, samples, 0);
+        assertEquals(-1, source.readFrames(samples, 0, 3));
+    }
+
+    @Test
+    public void readFrames_readsFileFromCurrentPosition() throws IOException {
+        Path path = folder.newFile().toPath();
+        Files.write(path, ArrayUtils.concat(
+                new WavFileHeaderBuilder()
+                        .setBitsPerSample(16)
+                        .setChannels(1)
+                        .setDataLength(10)
+                        .build(),
+                new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10}));
+
+        try (WavFile file = WavFile.open(path, 4)) {
+            WavSampleSource source = new WavSampleSource(file);
+            file.seekToFrame(1);
+
+            ByteBuffer buffer = ByteBuffer.allocate(6);
+
+            assertEquals(3, source.readFrames(buffer));
+            assertArrayEquals(new byte[]{3, 4, 5, 6, 7, 8}, ByteBufferUtils.getArray((ByteBuffer) buffer.flip()));
+            assertEquals(4, file.getFramePosition());
+
+            file.seekToFrame(0);
+            buffer.clear();
+
+            assertEquals(3, source.readFrames(buffer));
+            assertArrayEquals(new byte[]{1, 2, 3, 4, 5, 6}, ByteBufferUtils.getArray((ByteBuffer) buffer.flip()));
+
+            file.seekToFrame(4);
+            buffer.clear();
+
+            assertEquals(1, source.readFrames(buffer));
+            assertEquals(-1, source.readFrames(buffer));
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package com.daniel_araujo.wavio;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class WavSummaryCacheTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void get_summarizesFile() throws IOException {
+        Path path = createFile(new byte[]{0, 0x40, 0, (byte) 0xc0, 0, 0x20, 0, 0x20});
+
+        WavSummaryCache cache = new WavSummaryCache(folder.newFolder().toPath());
+        cache.setBucketSizes(2, 4);
+
+        WavSummary summary = cache.get(path);
+
+        assertEquals(8000, summary.getDataFormat().getSampleRate());
+        assertEquals(4, summary.getFrameCount());
+        assertEquals(500, summary.getDuration(TimeUnit.MICROSECONDS));
+        assertEquals(2, summary.getChunks().size());
+        assertEquals("data", summary.getChunks().get(1).getId());
+        assertEquals(2, summary.getWaveform().getBucketCount(0));
+        assertEquals(0.5f, summary.getWaveform().getMax(1, 0, 0), 0);
+    }
+
+    @Test
+    public void get_returnsSummaryInMemory() throws IOException {
+        Path path = createFile(new byte[]{1, 2, 3, 4});
+
+        WavSummaryCache cache = new WavSummaryCache(null);
+
+        assertSame(cache.get(path), cache.get(path));
+    }
+
+    @Test
+    public void get_readsSidecarFileInsteadOfFile() throws IOException {
+        Path directory = folder.newFolder().toPath();
+        Path path = createFile(new byte[]{0, 0x40, 0, 0x40});
+        FileTime modified = Files.getLastModifiedTime(path);
+
+        new WavSummaryCache(directory).get(path);
+
+        // Same size and time, so it must not be read again.
+        Files.write(path, ArrayUtils.concat(createHeader(4), new byte[]{0, 0x20, 0, 0x20}));
+        Files.setLastModifiedTime(path, modified);
+
+        WavSummary summary = new WavSummaryCache(directory).get(path);
+
+        assertEquals(0.5f, summary.getWaveform().getMax(0, 0, 0), 1 / 32767.0f);
+    }
+
+    @Test
+    public void get_summarizesFileAgainWhenSidecarFileIsDamaged() throws IOException {
+        Path directory = folder.newFolder().toPath();
+        Path path = createFile(new byte[]{0, 0x40, 0, 0x40});
+        FileTime modified = Files.getLastModifiedTime(path);
+
+        new WavSummaryCache(directory).get(path);
+
+        Path sidecar = directory.resolve(directory.toFile().list()[0]);
+        byte[] contents = Files.readAllBytes(sidecar);
+
+        Files.write(path, ArrayUtils.concat(createHeader(4), new byte[]{0, 0x20, 0, 0x20}));
+        Files.setLastModifiedTime(path, modified);
+
+        for (int length = 0; length < contents.length; length++) {
+            Files.write(sidecar, Arrays.copyOf(contents, length));
+
+            WavSummary summary = new WavSummaryCache(directory).get(path);
+
+            assertEquals(0.25f, summary.getWaveform().getMax(0, 0, 0), 1 / 32767.0f);
+        }
+
+        Random random = new Random(1);
+
+        for (int i = 0; i < 1000; i++) {
+            byte[] damaged = contents.clone();
+            damaged[random.nextInt(damaged.length)] = (byte) random.nextInt();
+            Files.write(sidecar, damaged);
+
+            // Whatever was damaged, it must either be read or rebuilt.
+            assertNotNull(new WavSummaryCache(directory).get(path));
+        }
+    }
+
+    @Test
+    public void get_summarizesFileAgainWhenBucketSizesChange() throws IOException {
+        Path directory = folder.newFolder().toPath();
+        Path path = createFile(new byte[]{0, 0x40, 0, 0x40});
+        FileTime modified = Files.getLastModifiedTime(path);
+
+        new WavSummaryCache(directory).get(path);
+
+        Files.write(path, ArrayUtils.concat(createHeader(4), new byte[]{0, 0x20, 0, 0x20}));
+        Files.setLastModifiedTime(path, modified);
+
+        WavSummaryCache cache = new WavSummaryCache(directory);
+        cache.setBucketSizes(2, 4);
+        WavSummary summary = cache.get(path);
+
+        assertEquals(2, summary.getWaveform().getLevels());
+        assertEquals(2, summary.getWaveform().getBucketSize(0));
+        assertEquals(0.25f, summary.getWaveform().getMax(0, 0, 0), 1 / 32767.0f);
+    }
+
+    @Test
+    public void get_summarizesFileAgainInMemoryWhenBucketSizesChange() throws IOException {
+        Path path = createFile(new byte[]{0, 0x40, 0, 0x40});
+
+        WavSummaryCache cache = new WavSummaryCache(null);
+        WavSummary first = cache.get(path);
+
+        cache.setBucketSizes(2, 4);
+        WavSummary second = cache.get(path);
+
+        assertNotSame(first, second);
+        assertEquals(2, second.getWaveform().getLevels());
+        assertSame(second, cache.get(path));
+    }
+
+    @Test
+    public void get_returnsSummaryWhenSidecarFileCannotBeWritten() throws IOException {
+        // A file where the directory should be.
+        Path directory = folder.newFile().toPath();
+        Path path = createFile(new byte[]{0, 0x40, 0, 0x40});
+
+        WavSummary summary = new WavSummaryCache(directory).get(path);
+
+        assertEquals(2, summary.getFrameCount());
+    }
+
+    @Test
+    public void get_summarizesFileAgainWhenItChanges() throws IOException {
+        Path directory = folder.newFolder().toPath();
+        Path path = createFile(new byte[]{0, 0x40, 0, 0x40});
+
+        WavSummaryCache cache = new WavSummaryCache(directory);
+        WavSummary first = cache.get(path);
+
+        Files.write(path, ArrayUtils.concat(createHeader(6), new byte[]{0, 0x20, 0, 0x20, 0, 0x20}));
+        Files.setLastModifiedTime(path, FileTime.fromMillis(Files.getLastModifiedTime(path).toMillis() + 1000));
+
+        WavSummary second = cache.get(path);
+
+        assertNotSame(first, second);
+        assertEquals(3, second.getFrameCount());
+        assertEquals(3, new WavSummaryCache(directory).get(path).getFrameCount());
+    }
+
+    @Test
+    public void get_dropsLeastRecentlyUsedSummaries() throws IOException {
+        Path a = createFile(new byte[]{1, 2});
+        Path b = createFile(new byte[]{3, 4});
+        Path c = createFile(new byte[]{5, 6});
+
+        WavSummaryCache cache = new WavSummaryCache(null);
+        cache.get(a);
+        long size = cache.getSize();
+        cache.setMaxSize(size * 2);
+
+        cache.get(b);
+        cache.get(a);
+        cache.get(c);
+
+        assertTrue(cache.isInMemory(a));
+        assertFalse(cache.isInMemory(b));
+        assertTrue(cache.isInMemory(c));
+        assertEquals(size * 2, cache.getSize());
+    }
+
+    @Test
+    public void invalidate_removesSidecarFile() throws IOException {
+        Path directory = folder.newFolder().toPath();
+        Path path = createFile(new byte[]{1, 2});
+
+        WavSummaryCache cache = new WavSummaryCache(directory);
+        cache.get(path);
+
+        assertEquals(1, directory.toFile().list().length);
+
+        cache.invalidate(path);
+
+        assertFalse(cache.isInMemory(path));
+        assertEquals(0, directory.toFile().list().length);
+    }
+
+    private byte[] createHeader(int dataLength) {
+        return new WavFileHeaderBuilder()
+                .setBitsPerSample(16)
+                .setSampleRate(8000)
+                .setDataLength(dataLength)
+                .build();
+    }
+
+    private Path createFile(byte[] samples) throws IOException {
+        Path path = folder.newFile().toPath();
+        Files.write(path, ArrayUtils.concat(createHeader(samples.length), samples));
+        return path;
+    }
+}
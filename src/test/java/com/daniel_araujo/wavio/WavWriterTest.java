@@ -0,0 +1,198 @@
+package com.daniel_araujo.wavio;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.Assert.*;
+
+public class WavWriterTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void close_writesFileThatCanBeRead() throws IOException {
+        Path path = folder.newFile().toPath();
+
+        WavWriter writer = WavWriter.create(path, new WavReader.DataFormat(22000, 2, 16));
+        writer.write(ByteBuffer.wrap(new byte[]{1, 2, 3, 4}));
+        writer.write(ByteBuffer.wrap(new byte[]{5, 6, 7, 8}));
+        writer.close();
+
+        byte[] file = Files.readAllBytes(path);
+        assertEquals(WavWriter.HEADER_SIZE + 8, file.length);
+
+        ByteBuffer header = ByteBuffer.wrap(file).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(file.length - 8, header.getInt(4));
+
+        try (WavFile wav = WavFile.open(path)) {
+            assertEquals(22000, wav.getDataFormat().getSampleRate());
+            assertEquals(2, wav.getDataFormat().getChannels());
+            assertEquals(16, wav.getDataFormat().getBitsPerSample());
+            assertEquals(WavWriter.HEADER_SIZE, wav.getDataOffset());
+            assertEquals(8, wav.getDataLength());
+            assertEquals(ByteBuffer.wrap(new byte[]{1, 2, 3, 4, 5, 6, 7, 8}), wav.mapFrames(0, 2));
+        }
+    }
+
+    @Test
+    public void close_addsPadByteIfDataLengthIsOdd() throws IOException {
+        Path path = folder.newFile().toPath();
+
+        WavWriter writer = WavWriter.create(path, new WavReader.DataFormat(8000, 1, 8));
+        writer.write(ByteBuffer.wrap(new byte[]{1, 2, 3}));
+        writer.close();
+
+        byte[] file = Files.readAllBytes(path);
+        assertEquals(WavWriter.HEADER_SIZE + 4, file.length);
+
+        ByteBuffer header = ByteBuffer.wrap(file).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(3, header.getInt(WavWriter.HEADER_SIZE - 4));
+
+        try (WavFile wav = WavFile.open(path)) {
+            assertEquals(3, wav.getDataLength());
+        }
+    }
+
+    @Test
+    public void close_writesRf64FileIfTooBigForRiff() throws IOException {
+        Path path = folder.newFile().toPath();
+
+        WavWriter writer = WavWriter.create(path, new WavReader.DataFormat(8000, 2, 16));
+        writer.rf64Threshold = 79;
+        writer.write(ByteBuffer.wrap(new byte[]{1, 2, 3, 4, 5, 6, 7, 8}));
+        writer.close();
+
+        byte[] file = Files.readAllBytes(path);
+        ByteBuffer header = ByteBuffer.wrap(file).order(ByteOrder.LITTLE_ENDIAN);
+
+        assertEquals(RiffFourCC.RF64, header.getInt(0));
+        assertEquals(-1, header.getInt(4));
+        assertEquals(RiffFourCC.DS64, header.getInt(12));
+        assertEquals(file.length - 8, header.getLong(20));
+        assertEquals(8, header.getLong(28));
+        assertEquals(2, header.getLong(36));
+        assertEquals(-1, header.getInt(WavWriter.HEADER_SIZE - 4));
+
+        try (WavFile wav = WavFile.open(path)) {
+            assertEquals(8, wav.getDataLength());
+            assertEquals(2, wav.getFrameCount());
+        }
+    }
+
+    @Test
+    public void transferFrom_copiesSamplesFromFile() throws IOException {
+        Path source = folder.newFile().toPath();
+        Files.write(source, new byte[]{9, 9, 1, 2, 3, 4, 9});
+
+        Path path = folder.newFile().toPath();
+        WavWriter writer = WavWriter.create(path, new WavReader.DataFormat(8000, 1, 16));
+        writer.write(ByteBuffer.wrap(new byte[]{7, 8}));
+
+        try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+            assertEquals(4, writer.transferFrom(channel, 2, 4));
+        }
+
+        assertEquals(6, writer.getDataLength());
+        writer.close();
+
+        try (WavFile wav = WavFile.open(path)) {
+            assertEquals(ByteBuffer.wrap(new byte[]{7, 8, 1, 2, 3, 4}), wav.mapFrames(0, 3));
+        }
+    }
+
+    @Test
+    public void close_writesFmtWithExtensionSizeAndFactChunkForFloats() throws IOException {
+        Path path = folder.newFile().toPath();
+
+        WavWriter writer = WavWriter.create(path, new WavReader.DataFormat(8000, 2, 32,
+                WavReader.DataFormat.FORMAT_IEEE_FLOAT));
+        writer.write(ByteBuffer.wrap(new byte[24]));
+        writer.close();
+
+        byte[] file = Files.readAllBytes(path);
+        ByteBuffer header = ByteBuffer.wrap(file).order(ByteOrder.LITTLE_ENDIAN);
+
+        assertEquals(18, header.getInt(52));
+        assertEquals(3, header.getShort(56));
+        assertEquals(0, header.getShort(72));
+        assertEquals(RiffFourCC.FACT, header.getInt(74));
+        assertEquals(4, header.getInt(78));
+        assertEquals(3, header.getInt(82));
+
+        try (WavFile wav = WavFile.open(path)) {
+            assertTrue(wav.getDataFormat().isFloat());
+            assertEquals(94, wav.getDataOffset());
+            assertEquals(3, wav.getFrameCount());
+        }
+    }
+
+    @Test
+    public void close_writesExtensibleFmtWithChannelMaskAndValidBits() throws IOException {
+        Path path = folder.newFile().toPath();
+
+        WavWriter writer = WavWriter.create(path, new WavReader.DataFormat(48000, 6, 32,
+                WavReader.DataFormat.FORMAT_PCM, 24, 0x3f));
+        writer.write(ByteBuffer.wrap(new byte[48]));
+        writer.close();
+
+        byte[] file = Files.readAllBytes(path);
+        ByteBuffer header = ByteBuffer.wrap(file).order(ByteOrder.LITTLE_ENDIAN);
+
+        assertEquals(40, header.getInt(52));
+        assertEquals((short) 0xfffe, header.getShort(56));
+        assertEquals(22, header.getShort(72));
+
+        try (WavFile wav = WavFile.open(path)) {
+            WavReader.DataFormat format = wav.getDataFormat();
+            assertEquals(WavReader.DataFormat.FORMAT_PCM, format.getAudioFormat());
+            assertEquals(6, format.getChannels());
+            assertEquals(32, format.getBitsPerSample());
+            assertEquals(24, format.getValidBitsPerSample());
+            assertEquals(0x3f, format.getChannelMask());
+            assertEquals(104, wav.getDataOffset());
+            assertEquals(2, wav.getFrameCount());
+        }
+    }
+
+    @Test
+    public void close_writesFactChunkOfRf64FloatFiles() throws IOException {
+        Path path = folder.newFile().toPath();
+
+        WavWriter writer = WavWriter.create(path, new WavReader.DataFormat(8000, 1, 32,
+                WavReader.DataFormat.FORMAT_IEEE_FLOAT));
+        writer.rf64Threshold = 79;
+        writer.write(ByteBuffer.wrap(new byte[8]));
+        writer.close();
+
+        byte[] file = Files.readAllBytes(path);
+        ByteBuffer header = ByteBuffer.wrap(file).order(ByteOrder.LITTLE_ENDIAN);
+
+        assertEquals(RiffFourCC.RF64, header.getInt(0));
+        assertEquals(2, header.getLong(36));
+        assertEquals(-1, header.getInt(82));
+
+        try (WavFile wav = WavFile.open(path)) {
+            assertEquals(2, wav.getFrameCount());
+        }
+    }
+
+    /**
+     * Identifiers as read in little endian order.
+     */
+    private static class RiffFourCC {
+        static final int RF64 = ByteBuffer.wrap(new byte[]{'R', 'F', '6', '4'}).order(ByteOrder.LITTLE_ENDIAN).getInt();
+
+        static final int DS64 = ByteBuffer.wrap(new byte[]{'d', 's', '6', '4'}).order(ByteOrder.LITTLE_ENDIAN).getInt();
+
+        static final int FACT = ByteBuffer.wrap(new byte[]{'f', 'a', 'c', 't'}).order(ByteOrder.LITTLE_ENDIAN).getInt();
+    }
+}
@@ -0,0 +1,168 @@
+package com.daniel_araujo.wavio;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class WaveformPyramidTest {
+    @Test
+    public void onNoninterleavedFloatSamples_summarizesEveryLevel() {
+        WavReader reader = new WavReader();
+        WaveformPyramid pyramid = new WaveformPyramid(reader, 2, 4);
+        reader.setOnNoninterleavedFloatSamplesListener(pyramid);
+
+        reader.read(new WavFileHeaderBuilder().setBitsPerSample(16).setSampleRate(8000).build());
+        reader.read(new byte[]{0, 0x40, 0, (byte) 0xc0, 0, 0x20, 0, 0x20});
+
+        assertEquals(1, pyramid.getChannels());
+        assertEquals(8000, pyramid.getSampleRate());
+        assertEquals(4, pyramid.getFrames());
+
+        assertEquals(2, pyramid.getBucketCount(0));
+        assertEquals(-0.5f, pyramid.getMin(0, 0, 0), 0);
+        assertEquals(0.5f, pyramid.getMax(0, 0, 0), 0);
+        assertEquals(0.5f, pyramid.getRms(0, 0, 0), 0);
+        assertEquals(0.25f, pyramid.getMin(0, 0, 1), 0);
+        assertEquals(0.25f, pyramid.getMax(0, 0, 1), 0);
+        assertEquals(0.25f, pyramid.getRms(0, 0, 1), 0);
+
+        assertEquals(1, pyramid.getBucketCount(1));
+        assertEquals(-0.5f, pyramid.getMin(1, 0, 0), 0);
+        assertEquals(0.5f, pyramid.getMax(1, 0, 0), 0);
+        assertEquals((float) Math.sqrt(0.15625), pyramid.getRms(1, 0, 0), 1e-6f);
+    }
+
+    @Test
+    public void onNoninterleavedFloatSamples_bucketsSpanCalls() {
+        WavReader reader = new WavReader();
+        WaveformPyramid pyramid = new WaveformPyramid(reader, 3);
+        reader.setOnNoninterleavedFloatSamplesListener(pyramid);
+
+        reader.read(new WavFileHeaderBuilder().setBitsPerSample(8).setChannels(2).build());
+        reader.read(new byte[]{(byte) 192, (byte) 128, (byte) 64});
+        reader.read(new byte[]{(byte) 128, (byte) 128, (byte) 160});
+
+        assertEquals(1, pyramid.getBucketCount(0));
+        assertEquals(-0.5f, pyramid.getMin(0, 0, 0), 0);
+        assertEquals(0.5f, pyramid.getMax(0, 0, 0), 0);
+        assertEquals(0, pyramid.getMin(0, 1, 0), 0);
+        assertEquals(0.25f, pyramid.getMax(0, 1, 0), 0);
+    }
+
+    @Test
+    public void finish_addsPartialBuckets() {
+        WavReader reader = new WavReader();
+        WaveformPyramid pyramid = new WaveformPyramid(reader, 2, 4);
+        reader.setOnNoninterleavedFloatSamplesListener(pyramid);
+
+        reader.read(new WavFileHeaderBuilder().setBitsPerSample(16).build());
+        reader.read(new byte[]{0, 0x40, 0, (byte) 0xc0, 0, 0x20});
+
+        assertEquals(1, pyramid.getBucketCount(0));
+        assertEquals(0, pyramid.getBucketCount(1));
+
+        pyramid.finish();
+
+        assertEquals(2, pyramid.getBucketCount(0));
+        assertEquals(0.25f, pyramid.getRms(0, 0, 1), 0);
+        assertEquals(1, pyramid.getBucketCount(1));
+        assertEquals(-0.5f, pyramid.getMin(1, 0, 0), 0);
+        assertEquals(0.5f, pyramid.getMax(1, 0, 0), 0);
+    }
+
+    @Test
+    public void writeTo_readFromRestoresBuckets() {
+        WavReader reader = new WavReader();
+        WaveformPyramid pyramid = new WaveformPyramid(reader, 2, 4);
+        reader.setOnNoninterleavedFloatSamplesListener(pyramid);
+
+        reader.read(new WavFileHeaderBuilder().setBitsPerSample(16).setChannels(2).setSampleRate(44100).build());
+        reader.read(new byte[]{
+                0, 0x40, 1, 0x10,
+                0, (byte) 0xc0, 2, 0x20,
+                0, 0x20, 3, 0x30,
+                0, 0x20, 4, 0x40,
+                0, 0x10, 5, 0x50});
+        pyramid.finish();
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        pyramid.writeTo(output);
+
+        WaveformPyramid copy = WaveformPyramid.readFrom(new ByteArrayInputStream(output.toByteArray()));
+
+        assertEquals(2, copy.getChannels());
+        assertEquals(44100, copy.getSampleRate());
+        assertEquals(5, copy.getFrames());
+        assertEquals(2, copy.getLevels());
+        assertEquals(4, copy.getBucketSize(1));
+
+        for (int l = 0; l < 2; l++) {
+            assertEquals(pyramid.getBucketCount(l), copy.getBucketCount(l));
+
+            for (int b = 0; b < pyramid.getBucketCount(l); b++) {
+                for (int c = 0; c < 2; c++) {
+                    // The envelope may only grow.
+                    assertTrue(copy.getMin(l, c, b) <= pyramid.getMin(l, c, b));
+                    assertTrue(copy.getMax(l, c, b) >= pyramid.getMax(l, c, b));
+                    assertEquals(pyramid.getMin(l, c, b), copy.getMin(l, c, b), 1 / 32767.0f);
+                    assertEquals(pyramid.getMax(l, c, b), copy.getMax(l, c, b), 1 / 32767.0f);
+                    assertEquals(pyramid.getRms(l, c, b), copy.getRms(l, c, b), 1 / 32767.0f);
+                }
+            }
+        }
+    }
+
+    @Test(expected = WaveformPyramid.InvalidPyramidException.class)
+    public void readFrom_throwsExceptionIfDataIsNotAPyramid() {
+        WaveformPyramid.readFrom(new ByteArrayInputStream(new byte[]{'R', 'I', 'F', 'F', 0, 0, 0, 0}));
+    }
+
+    @Test(expected = WaveformPyramid.InvalidPyramidException.class)
+    public void readFrom_throwsExceptionIfLevelWouldOverflow() {
+        WaveformPyramid.readFrom(new ByteArrayInputStream(createHeader(65535, Long.MAX_VALUE, 1, 0x7fffffff)));
+    }
+
+    @Test(expected = WaveformPyramid.InvalidPyramidException.class)
+    public void readFrom_throwsExceptionIfLevelHasMoreBucketsThanFrames() {
+        WaveformPyramid.readFrom(new ByteArrayInputStream(createHeader(2, 100, 10, 11)));
+    }
+
+    @Test(expected = WavReader.IOException.class)
+    public void readFrom_throwsExceptionIfDataEndsBeforeBuckets() {
+        // Claims almost 2 GB of values but holds none. It must fail without allocating them.
+        WaveformPyramid.readFrom(new ByteArrayInputStream(createHeader(8, 89478484L * 256, 256, 89478484)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_throwsExceptionIfBucketSizeIsNotAMultiple() {
+        new WaveformPyramid(new WavReader(), 256, 1000);
+    }
+
+    /**
+     * Creates the start of a pyramid with a single level and no values.
+     */
+    private static byte[] createHeader(int channels, long frames, int bucketSize, int count) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(bytes);
+
+        try {
+            data.writeInt(0x57565059);
+            data.writeInt(1);
+            data.writeInt(channels);
+            data.writeInt(44100);
+            data.writeLong(frames);
+            data.writeInt(1);
+            data.writeInt(bucketSize);
+            data.writeInt(count);
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+
+        return bytes.toByteArray();
+    }
+}